@@ -0,0 +1,114 @@
+#!/bin/bash
+# ==============================================================================
+# 自行车商城微服务 - 网关 JWT 认证过滤器单请求开销基准脚本
+#
+# 请求 GET /api/admin/users 并携带普通用户（role=USER）的JWT：过滤器完成验签后直接返回 403，
+# 不会转发到下游服务，因此测得的延迟基本就是网关 JwtAuthenticationFilter 本身的开销。
+# 对比两种模式：
+# 1. distinct-tokens: 每个请求使用不同的有效Token，每次都要完整验签（等同于没有已验证Claims缓存）
+# 2. same-token     : 所有请求复用同一个Token，首次验签后命中已验证Claims缓存，不再做 HS512 运算
+# 如需对比改造前的基线，可用 JWT_VERIFIED_CACHE_ENABLED=false 重启网关后再运行本脚本。
+#
+# Token 由本脚本按网关的 jwt.secret 本地签发（HS512），需与网关配置一致。
+# 依赖：curl、python3、xargs、nc
+# 用法：CONCURRENCY=32 REQUESTS=5000 JWT_SECRET=... ./bench-gateway-jwt-v2.4.0.sh
+# ==============================================================================
+
+# --- 配置 ---
+HOST="localhost"
+GATEWAY_PORT="${GATEWAY_PORT:-8090}"
+CONCURRENCY="${CONCURRENCY:-32}"
+REQUESTS="${REQUESTS:-5000}"
+JWT_SECRET="${JWT_SECRET:-ThisIsMySuperLongAndExtremelySecureSecretKeyForHS512AlgorithmAtLeast64Chars}"
+TARGET_URL="http://${HOST}:${GATEWAY_PORT}/api/admin/users"
+WORK_DIR=$(mktemp -d)
+
+# --- 脚本颜色定义 ---
+GREEN='\033[0;32m'
+RED='\033[0;31m'
+YELLOW='\033[1;33m'
+BLUE='\033[0;34m'
+NC='\033[0m'
+
+trap 'rm -rf "${WORK_DIR}"' EXIT
+
+# --- 辅助函数：等待服务就绪 ---
+function wait_for_service {
+    local service_name=$1
+    local port=$2
+    echo -e "${YELLOW}--- 等待 ${service_name} (端口: ${port}) 启动... ---${NC}"
+    for i in {1..30}; do
+        if nc -z ${HOST} ${port}; then
+            echo -e "${GREEN}✅ ${service_name} 已就绪!${NC}"
+            return 0
+        fi
+        echo "   - [尝试 ${i}/30] 端口 ${port} 尚未就绪，2秒后重试..."
+        sleep 2
+    done
+    echo -e "${RED}❌ 等待超时: ${service_name} 未能在规定时间内启动。${NC}"
+    exit 1
+}
+
+# --- 辅助函数：签发 count 个互不相同的 USER 角色Token（每行一个） ---
+function issue_tokens {
+    JWT_SECRET="${JWT_SECRET}" python3 - "$1" <<'EOF'
+import base64, hashlib, hmac, json, os, sys, time, uuid
+
+def b64(data):
+    return base64.urlsafe_b64encode(data).rstrip(b"=").decode()
+
+secret = os.environ["JWT_SECRET"].encode()
+header = b64(json.dumps({"alg": "HS512"}, separators=(",", ":")).encode())
+now = int(time.time())
+for _ in range(int(sys.argv[1])):
+    payload = b64(json.dumps({"sub": str(uuid.uuid4()), "username": "bench", "role": "USER",
+                              "iat": now, "exp": now + 3600}, separators=(",", ":")).encode())
+    signing_input = f"{header}.{payload}".encode()
+    print(f"{header}.{payload}.{b64(hmac.new(secret, signing_input, hashlib.sha512).digest())}")
+EOF
+}
+
+# --- 辅助函数：用 tokens 文件中的Token逐个发请求，输出一行结果 ---
+function run_mode {
+    local mode=$1
+    local tokens=$2
+    local samples="${WORK_DIR}/samples-${mode}.txt"
+    local start end
+    start=$(date +%s.%N)
+    xargs -P "${CONCURRENCY}" -I{} \
+        curl -s -o /dev/null -H "Authorization: Bearer {}" "${TARGET_URL}" \
+            -w "%{http_code} %{time_total}\n" < "${tokens}" > "${samples}"
+    end=$(date +%s.%N)
+
+    local forbidden
+    forbidden=$(grep -c '^403 ' "${samples}")
+    sort -k2 -n "${samples}" | awk -v n="${REQUESTS}" -v ok="${forbidden}" -v mode="${mode}" \
+        -v start="${start}" -v end="${end}" '
+        { t[NR] = $2 }
+        END {
+            p50 = t[int((n - 1) * 0.50) + 1]; p99 = t[int((n - 1) * 0.99) + 1]
+            printf "%-16s %-9d %-12.1f %-9.2f %-9.2f\n", mode, ok, n / (end - start), p50 * 1000, p99 * 1000
+        }'
+
+    # 所有请求都应在过滤器内以 403 结束：401 说明Token与网关的 jwt.secret 不一致
+    if [[ ${forbidden} -ne ${REQUESTS} ]]; then
+        echo -e "${RED}❌ ${mode}: ${REQUESTS} 个请求中只有 ${forbidden} 个返回 403，请检查 JWT_SECRET 是否与网关一致${NC}"
+        return 1
+    fi
+}
+
+wait_for_service "Gateway Service" ${GATEWAY_PORT}
+
+issue_tokens "${REQUESTS}" > "${WORK_DIR}/distinct.txt"
+yes "$(head -n 1 "${WORK_DIR}/distinct.txt")" | head -n "${REQUESTS}" > "${WORK_DIR}/same.txt"
+
+echo -e "\n${BLUE}并发 ${CONCURRENCY}，每种模式请求 ${REQUESTS} 次${NC}"
+echo -e "${BLUE}模式             403次数   吞吐(req/s)  p50(ms)   p99(ms)${NC}"
+failed=0
+run_mode "distinct-tokens" "${WORK_DIR}/distinct.txt" || failed=1
+run_mode "same-token" "${WORK_DIR}/same.txt" || failed=1
+
+if [[ ${failed} -ne 0 ]]; then
+    exit 1
+fi
+echo -e "\n${GREEN}✅ 基准测试完成${NC}"
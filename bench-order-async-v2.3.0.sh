@@ -0,0 +1,170 @@
+#!/bin/bash
+# ==============================================================================
+# 自行车商城微服务 - 同步下单与异步下单（先受理后处理）对比基准脚本
+#
+# 对同一个商品以相同并发分别压测两种下单方式：
+# 1. sync : POST /api/orders，请求线程内完成用户校验、库存扣减并落库
+# 2. async: POST /api/orders/async 立即返回 202 和订单ID，再通过 GET /api/orders/{id}/status?waitMs= 长轮询最终状态
+#    受理延迟（accept）只统计 202/503 的返回耗时，端到端延迟（e2e）包含长轮询直到订单 ACTIVE/FAILED
+# 统计吞吐量、p50/p99 延迟以及 202/503（背压拒绝）数量，并校验：ACTIVE 订单数 == 库存减少量，且无超卖
+#
+# 依赖：curl、python3（解析JSON/生成UUID）、xargs、nc、bc
+# 用法：CONCURRENCY=64 REQUESTS=2000 STOCK=1500 ./bench-order-async-v2.3.0.sh
+# ==============================================================================
+
+# --- 配置 ---
+HOST="localhost"
+USER_SERVICE_PORT="${USER_SERVICE_PORT:-8081}"
+ORDER_SERVICE_PORT="${ORDER_SERVICE_PORT:-8083}"
+INVENTORY_SERVICE_PORT="${INVENTORY_SERVICE_PORT:-8084}"
+CONCURRENCY="${CONCURRENCY:-64}"
+REQUESTS="${REQUESTS:-2000}"
+STOCK="${STOCK:-1500}"
+WAIT_MS="${WAIT_MS:-10000}"
+WORK_DIR=$(mktemp -d)
+ORDER_URL="http://${HOST}:${ORDER_SERVICE_PORT}/api/orders"
+INVENTORY_URL="http://${HOST}:${INVENTORY_SERVICE_PORT}/api/inventorys"
+
+# --- 脚本颜色定义 ---
+GREEN='\033[0;32m'
+RED='\033[0;31m'
+YELLOW='\033[1;33m'
+BLUE='\033[0;34m'
+NC='\033[0m'
+
+trap 'rm -rf "${WORK_DIR}"' EXIT
+
+# --- 辅助函数：等待服务就绪 ---
+function wait_for_service {
+    local service_name=$1
+    local port=$2
+    echo -e "${YELLOW}--- 等待 ${service_name} (端口: ${port}) 启动... ---${NC}"
+    for i in {1..30}; do
+        if nc -z ${HOST} ${port}; then
+            echo -e "${GREEN}✅ ${service_name} 已就绪!${NC}"
+            return 0
+        fi
+        echo "   - [尝试 ${i}/30] 端口 ${port} 尚未就绪，2秒后重试..."
+        sleep 2
+    done
+    echo -e "${RED}❌ 等待超时: ${service_name} 未能在规定时间内启动。${NC}"
+    exit 1
+}
+
+# --- 辅助函数：读取商品当前库存 ---
+function current_stock {
+    curl -s "${INVENTORY_URL}/$1" | python3 -c 'import json, sys; print(json.load(sys.stdin)["stock"])'
+}
+
+# --- 辅助函数：异步下单一次，输出 "受理状态码 受理耗时 端到端耗时 最终状态" ---
+function async_order_once {
+    local accept status order_id start end final
+    start=$(date +%s.%N)
+    accept=$(curl -s -X POST "${ORDER_URL}/async" -H "Content-Type: application/json" \
+        -H "X-User-Id: ${BUYER_ID}" -d "${ORDER_BODY}" -w "\n%{http_code} %{time_total}")
+    status=$(echo "${accept}" | tail -n 1)
+    if [[ "${status%% *}" != "202" ]]; then
+        end=$(date +%s.%N)
+        echo "${status} $(echo "${end} - ${start}" | bc) REJECTED"
+        return
+    fi
+    order_id=$(echo "${accept}" | head -n 1 | python3 -c 'import json, sys; print(json.load(sys.stdin)["orderId"])')
+    final="PENDING"
+    # 长轮询直到订单离开 PENDING（订单不在本实例处理时接口立即返回，需要继续轮询）
+    while [[ "${final}" == "PENDING" ]]; do
+        final=$(curl -s "${ORDER_URL}/${order_id}/status?waitMs=${WAIT_MS}" \
+            | python3 -c 'import json, sys; print(json.load(sys.stdin)["status"])')
+        [[ "${final}" == "PENDING" ]] && sleep 0.05
+    done
+    end=$(date +%s.%N)
+    echo "${status} $(echo "${end} - ${start}" | bc) ${final}"
+}
+
+# --- 辅助函数：按第 col 列输出 p50/p99（毫秒） ---
+function percentiles {
+    local file=$1
+    local col=$2
+    sort -k"${col}" -n "${file}" | awk -v col="${col}" '
+        { t[NR] = $col }
+        END {
+            if (NR == 0) { printf "%-9s %-9s", "-", "-"; exit }
+            printf "%-9.1f %-9.1f", t[int((NR - 1) * 0.50) + 1] * 1000, t[int((NR - 1) * 0.99) + 1] * 1000
+        }'
+}
+
+# --- 辅助函数：校验 ACTIVE 订单数与库存减少量一致 ---
+function verify_stock {
+    local mode=$1
+    local active=$2
+    local before=$3
+    local after
+    after=$(current_stock "${PRODUCT_ID}")
+    if [[ $((before - after)) -ne ${active} || ${after} -lt 0 ]]; then
+        echo -e "${RED}❌ ${mode}: 库存不一致! 压测前 ${before}, ACTIVE ${active}, 压测后 ${after}${NC}" >&2
+        return 1
+    fi
+    echo "${after}"
+}
+
+wait_for_service "User Service" ${USER_SERVICE_PORT}
+wait_for_service "Order Service" ${ORDER_SERVICE_PORT}
+wait_for_service "Inventory Service" ${INVENTORY_SERVICE_PORT}
+
+# --- 准备：创建买家与临时库存记录 ---
+UNIQUE_SUFFIX="$(date +%s)-${RANDOM}"
+BUYER_ID=$(curl -s -X POST "http://${HOST}:${USER_SERVICE_PORT}/api/users" -H "Content-Type: application/json" \
+    -d "{\"userId\": \"bench-${UNIQUE_SUFFIX}\", \"username\": \"bench-${UNIQUE_SUFFIX}\", \"password\": \"password123\", \"phone\": \"139$(date +%N | cut -c -8)\", \"age\": 30}" \
+    | python3 -c 'import json, sys; print(json.load(sys.stdin)["id"])')
+PRODUCT_ID=$(python3 -c 'import uuid; print(uuid.uuid4())')
+curl -s -o /dev/null -X POST "${INVENTORY_URL}/create" -H "Content-Type: application/json" \
+    -d "{\"productId\": \"${PRODUCT_ID}\", \"stock\": $((STOCK * 2))}"
+ORDER_BODY="{\"buyerId\": \"${BUYER_ID}\", \"productId\": \"${PRODUCT_ID}\", \"quantity\": 1}"
+export ORDER_URL BUYER_ID ORDER_BODY WAIT_MS
+export -f async_order_once
+
+echo -e "\n${BLUE}并发 ${CONCURRENCY}，每种方式请求 ${REQUESTS} 次，每种方式可用库存 ${STOCK}${NC}"
+failed=0
+
+# --- 同步下单 ---
+SYNC_SAMPLES="${WORK_DIR}/sync.txt"
+stock_before=$(current_stock "${PRODUCT_ID}")
+start=$(date +%s.%N)
+seq "${REQUESTS}" | xargs -P "${CONCURRENCY}" -I{} \
+    curl -s -o /dev/null -X POST "${ORDER_URL}" -H "Content-Type: application/json" \
+        -H "X-User-Id: ${BUYER_ID}" -d "${ORDER_BODY}" -w "%{http_code} %{time_total}\n" > "${SYNC_SAMPLES}"
+end=$(date +%s.%N)
+sync_ok=$(grep -c '^200 ' "${SYNC_SAMPLES}")
+sync_tput=$(echo "${REQUESTS} / (${end} - ${start})" | bc -l)
+stock_mid=$(verify_stock "sync" "${sync_ok}" "${stock_before}") || failed=1
+
+# 把库存补回到 STOCK，使两种方式面对相同的库存
+if [[ ${failed} -eq 0 && ${stock_mid} -gt ${STOCK} ]]; then
+    curl -s -o /dev/null -X POST "${INVENTORY_URL}/decrease" -H "Content-Type: application/json" \
+        -d "{\"productId\": \"${PRODUCT_ID}\", \"quantity\": $((stock_mid - STOCK))}"
+fi
+
+# --- 异步下单 ---
+ASYNC_SAMPLES="${WORK_DIR}/async.txt"
+stock_before=$(current_stock "${PRODUCT_ID}")
+start=$(date +%s.%N)
+seq "${REQUESTS}" | xargs -P "${CONCURRENCY}" -I{} bash -c 'async_order_once' > "${ASYNC_SAMPLES}"
+end=$(date +%s.%N)
+async_tput=$(echo "${REQUESTS} / (${end} - ${start})" | bc -l)
+async_accepted=$(grep -c '^202 ' "${ASYNC_SAMPLES}")
+async_rejected=$(grep -c '^503 ' "${ASYNC_SAMPLES}")
+async_active=$(grep -c ' ACTIVE$' "${ASYNC_SAMPLES}")
+grep '^202 ' "${ASYNC_SAMPLES}" > "${WORK_DIR}/async-accepted.txt"
+verify_stock "async" "${async_active}" "${stock_before}" > /dev/null || failed=1
+
+curl -s -o /dev/null -X DELETE "${INVENTORY_URL}/${PRODUCT_ID}"
+
+echo -e "\n${BLUE}方式     成功/受理  拒绝(503)  吞吐(req/s)  受理p50   受理p99   e2e p50   e2e p99${NC}"
+printf "%-8s %-10d %-10s %-12.1f %-9s %-9s %s\n" "sync" "${sync_ok}" "-" "${sync_tput}" "-" "-" \
+    "$(percentiles "${SYNC_SAMPLES}" 2)"
+printf "%-8s %-10s %-10d %-12.1f %s %s\n" "async" "${async_accepted}(${async_active} ACTIVE)" "${async_rejected}" \
+    "${async_tput}" "$(percentiles "${ASYNC_SAMPLES}" 2)" "$(percentiles "${WORK_DIR}/async-accepted.txt" 3)"
+
+if [[ ${failed} -ne 0 ]]; then
+    exit 1
+fi
+echo -e "\n${GREEN}✅ 基准测试完成，两种方式 ACTIVE 订单数均与库存减少量一致${NC}"
@@ -0,0 +1,122 @@
+#!/bin/bash
+# ==============================================================================
+# 自行车商城微服务 - 批量库存接口编码对比基准脚本
+#
+# 对比 POST /api/inventorys/stocks 的两种编码：
+#   - JSON：请求为 UUID 字符串数组，响应为 Map<UUID,Integer>
+#   - 二进制：application/x-stock-batch（16字节UUID + varint库存，格式见 StockBatchCodec）
+#
+# 对每个规模（默认 1k / 10k / 100k 个商品ID）：
+# 1. 通过 mysql 容器批量插入对应数量的临时库存记录（保证响应中每个ID都有库存）
+# 2. 分别用两种编码各请求 ROUNDS 次，统计请求/响应字节数与 p50/p99 延迟
+# 3. 删除临时库存记录
+#
+# 依赖：curl、python3（生成测试数据）、docker（访问 mysql 容器）
+# 用法：ROUNDS=50 ./bench-stock-encoding-v2.1.0.sh
+# ==============================================================================
+
+# --- 配置 ---
+HOST="localhost"
+INVENTORY_SERVICE_PORT="${INVENTORY_SERVICE_PORT:-8083}"
+MYSQL_CONTAINER="${MYSQL_CONTAINER:-mysql}"
+SIZES=(${SIZES:-1000 10000 100000})
+ROUNDS="${ROUNDS:-50}"
+WORK_DIR=$(mktemp -d)
+BASE_URL="http://${HOST}:${INVENTORY_SERVICE_PORT}/api/inventorys/stocks"
+
+# --- 脚本颜色定义 ---
+GREEN='\033[0;32m'
+RED='\033[0;31m'
+YELLOW='\033[1;33m'
+BLUE='\033[0;34m'
+NC='\033[0m'
+
+trap 'rm -rf "${WORK_DIR}"' EXIT
+
+# --- 辅助函数：等待服务就绪 ---
+function wait_for_service {
+    local service_name=$1
+    local port=$2
+    echo -e "${YELLOW}--- 等待 ${service_name} (端口: ${port}) 启动... ---${NC}"
+    for i in {1..30}; do
+        if nc -z ${HOST} ${port}; then
+            echo -e "${GREEN}✅ ${service_name} 已就绪!${NC}"
+            return 0
+        fi
+        echo "   - [尝试 ${i}/30] 端口 ${port} 尚未就绪，2秒后重试..."
+        sleep 2
+    done
+    echo -e "${RED}❌ 等待超时: ${service_name} 未能在规定时间内启动。${NC}"
+    exit 1
+}
+
+# --- 辅助函数：生成 N 个随机UUID，输出 JSON 请求体、二进制请求体和 SQL 插入语句 ---
+function generate_fixtures {
+    local n=$1
+    python3 - "$n" "${WORK_DIR}" <<'PY'
+import json, sys, uuid
+n, work = int(sys.argv[1]), sys.argv[2]
+ids = [uuid.uuid4() for _ in range(n)]
+with open(f"{work}/ids.json", "w") as f:
+    json.dump([str(i) for i in ids], f)
+with open(f"{work}/ids.bin", "wb") as f:
+    for i in ids:
+        f.write(i.bytes)  # 大端序16字节，与 StockBatchCodec 一致
+with open(f"{work}/insert.sql", "w") as f:
+    f.write("USE inventory_db;\n")
+    for start in range(0, n, 5000):
+        rows = ",".join(
+            f"(UUID_TO_BIN('{i}'), {10 + k % 90}, 0, b'0')"
+            for k, i in enumerate(ids[start:start + 5000], start))
+        f.write(f"INSERT INTO inventory (product_id, stock, version, on_shelf) VALUES {rows};\n")
+with open(f"{work}/delete.sql", "w") as f:
+    f.write("USE inventory_db;\n")
+    for start in range(0, n, 5000):
+        keys = ",".join(f"UUID_TO_BIN('{i}')" for i in ids[start:start + 5000])
+        f.write(f"DELETE FROM inventory WHERE product_id IN ({keys});\n")
+PY
+}
+
+function run_sql {
+    docker exec -i "${MYSQL_CONTAINER}" mysql -uroot -proot 2>/dev/null < "$1"
+}
+
+# --- 辅助函数：请求 ROUNDS 次，输出 "请求字节 响应字节 p50(ms) p99(ms)" ---
+function measure {
+    local content_type=$1
+    local body_file=$2
+    local samples="${WORK_DIR}/samples.txt"
+    : > "${samples}"
+    for ((r = 0; r < ROUNDS; r++)); do
+        curl -s -o /dev/null -X POST "${BASE_URL}" \
+            -H "Content-Type: ${content_type}" -H "Accept: ${content_type}" \
+            --data-binary "@${body_file}" \
+            -w "%{size_upload} %{size_download} %{time_total}\n" >> "${samples}"
+    done
+    sort -k3 -n "${samples}" | awk -v n="${ROUNDS}" '
+        { up = $1; down = $2; t[NR] = $3 }
+        END {
+            p50 = t[int((n - 1) * 0.50) + 1]; p99 = t[int((n - 1) * 0.99) + 1]
+            printf "%d %d %.1f %.1f\n", up, down, p50 * 1000, p99 * 1000
+        }'
+}
+
+wait_for_service "Inventory Service" ${INVENTORY_SERVICE_PORT}
+
+echo -e "\n${BLUE}规模      编码     请求字节      响应字节      p50(ms)   p99(ms)${NC}"
+for n in "${SIZES[@]}"; do
+    generate_fixtures "$n"
+    run_sql "${WORK_DIR}/insert.sql" || { echo -e "${RED}❌ 插入临时库存记录失败${NC}"; exit 1; }
+
+    # 预热一轮，避免首次请求的类加载/JIT开销计入结果
+    ROUNDS=3 measure "application/json" "${WORK_DIR}/ids.json" > /dev/null
+    ROUNDS=3 measure "application/x-stock-batch" "${WORK_DIR}/ids.bin" > /dev/null
+
+    read -r up down p50 p99 <<< "$(measure "application/json" "${WORK_DIR}/ids.json")"
+    printf "%-9s %-8s %-13s %-13s %-9s %s\n" "$n" "JSON" "$up" "$down" "$p50" "$p99"
+    read -r up down p50 p99 <<< "$(measure "application/x-stock-batch" "${WORK_DIR}/ids.bin")"
+    printf "%-9s %-8s %-13s %-13s %-9s %s\n" "$n" "binary" "$up" "$down" "$p50" "$p99"
+
+    run_sql "${WORK_DIR}/delete.sql"
+done
+echo -e "\n${GREEN}✅ 基准测试完成（每种编码每个规模 ${ROUNDS} 次请求）${NC}"
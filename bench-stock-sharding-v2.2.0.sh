@@ -0,0 +1,111 @@
+#!/bin/bash
+# ==============================================================================
+# 自行车商城微服务 - 热点商品库存分桶并发扣减基准脚本
+#
+# 模拟秒杀：大量并发请求扣减同一个商品的库存，对比未分桶与分桶（默认 8 个分桶）两种模式。
+# 对每种模式：
+# 1. 创建一条临时库存记录（库存 STOCK），分桶模式下通过 PUT /api/inventorys/admin/{id}/shards 开启分桶
+# 2. 以 CONCURRENCY 并发发送 REQUESTS 次 POST /api/inventorys/decrease（每次扣 1，REQUESTS 大于 STOCK 以覆盖售罄场景）
+# 3. 统计吞吐量与 p50/p99 延迟，并校验：成功次数 == 初始库存 - 剩余库存，且成功次数不超过初始库存（无超卖）
+# 4. 删除临时库存记录
+#
+# 依赖：curl、python3（生成UUID）、xargs
+# 用法：CONCURRENCY=64 REQUESTS=3000 STOCK=2000 SHARDS=8 ./bench-stock-sharding-v2.2.0.sh
+# ==============================================================================
+
+# --- 配置 ---
+HOST="localhost"
+INVENTORY_SERVICE_PORT="${INVENTORY_SERVICE_PORT:-8084}"
+CONCURRENCY="${CONCURRENCY:-64}"
+REQUESTS="${REQUESTS:-3000}"
+STOCK="${STOCK:-2000}"
+SHARDS="${SHARDS:-8}"
+WORK_DIR=$(mktemp -d)
+BASE_URL="http://${HOST}:${INVENTORY_SERVICE_PORT}/api/inventorys"
+
+# --- 脚本颜色定义 ---
+GREEN='\033[0;32m'
+RED='\033[0;31m'
+YELLOW='\033[1;33m'
+BLUE='\033[0;34m'
+NC='\033[0m'
+
+trap 'rm -rf "${WORK_DIR}"' EXIT
+
+# --- 辅助函数：等待服务就绪 ---
+function wait_for_service {
+    local service_name=$1
+    local port=$2
+    echo -e "${YELLOW}--- 等待 ${service_name} (端口: ${port}) 启动... ---${NC}"
+    for i in {1..30}; do
+        if nc -z ${HOST} ${port}; then
+            echo -e "${GREEN}✅ ${service_name} 已就绪!${NC}"
+            return 0
+        fi
+        echo "   - [尝试 ${i}/30] 端口 ${port} 尚未就绪，2秒后重试..."
+        sleep 2
+    done
+    echo -e "${RED}❌ 等待超时: ${service_name} 未能在规定时间内启动。${NC}"
+    exit 1
+}
+
+# --- 辅助函数：读取商品当前总库存 ---
+function current_stock {
+    curl -s "${BASE_URL}/$1" | python3 -c 'import json, sys; print(json.load(sys.stdin)["stock"])'
+}
+
+# --- 辅助函数：对一种模式执行一轮压测，输出一行结果，校验失败时返回非0 ---
+function run_mode {
+    local mode=$1
+    local shards=$2
+    local product_id
+    product_id=$(python3 -c 'import uuid; print(uuid.uuid4())')
+
+    curl -s -o /dev/null -X POST "${BASE_URL}/create" -H "Content-Type: application/json" \
+        -d "{\"productId\": \"${product_id}\", \"stock\": ${STOCK}}"
+    if [[ "${shards}" -gt 0 ]]; then
+        curl -s -o /dev/null -X PUT "${BASE_URL}/admin/${product_id}/shards?count=${shards}"
+    fi
+
+    local body="{\"productId\": \"${product_id}\", \"quantity\": 1}"
+    local samples="${WORK_DIR}/samples-${mode}.txt"
+    local start end
+    start=$(date +%s.%N)
+    seq "${REQUESTS}" | xargs -P "${CONCURRENCY}" -I{} \
+        curl -s -o /dev/null -X POST "${BASE_URL}/decrease" -H "Content-Type: application/json" \
+            -d "${body}" -w "%{http_code} %{time_total}\n" > "${samples}"
+    end=$(date +%s.%N)
+
+    local remaining
+    remaining=$(current_stock "${product_id}")
+    curl -s -o /dev/null -X DELETE "${BASE_URL}/${product_id}"
+
+    local ok
+    ok=$(grep -c '^200 ' "${samples}")
+    sort -k2 -n "${samples}" | awk -v n="${REQUESTS}" -v ok="${ok}" -v mode="${mode}" \
+        -v start="${start}" -v end="${end}" -v remaining="${remaining}" '
+        { t[NR] = $2 }
+        END {
+            p50 = t[int((n - 1) * 0.50) + 1]; p99 = t[int((n - 1) * 0.99) + 1]
+            printf "%-12s %-9d %-9d %-12.1f %-9.1f %-9.1f\n", mode, ok, remaining, n / (end - start), p50 * 1000, p99 * 1000
+        }'
+
+    # 精确性校验：成功扣减次数必须等于库存减少量，且不能超过初始库存
+    if [[ $((STOCK - remaining)) -ne ${ok} || ${ok} -gt ${STOCK} || ${remaining} -lt 0 ]]; then
+        echo -e "${RED}❌ ${mode}: 库存不一致! 初始 ${STOCK}, 成功 ${ok}, 剩余 ${remaining}${NC}"
+        return 1
+    fi
+}
+
+wait_for_service "Inventory Service" ${INVENTORY_SERVICE_PORT}
+
+echo -e "\n${BLUE}并发 ${CONCURRENCY}，请求 ${REQUESTS} 次，初始库存 ${STOCK}${NC}"
+echo -e "${BLUE}模式         成功      剩余      吞吐(req/s)  p50(ms)   p99(ms)${NC}"
+failed=0
+run_mode "unsharded" 0 || failed=1
+run_mode "sharded-${SHARDS}" "${SHARDS}" || failed=1
+
+if [[ ${failed} -ne 0 ]]; then
+    exit 1
+fi
+echo -e "\n${GREEN}✅ 基准测试完成，两种模式均无超卖且库存精确${NC}"
@@ -0,0 +1,167 @@
+package com.zjsu.pjt.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.zjsu.pjt.gateway.config.EdgeCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 网关边缘响应缓存的存储（key 为 "路径?查询串"）。
+ * <p>
+ * 按响应体总字节数限制容量，每个条目在自己的有效期（取自上游 Cache-Control 或规则默认值）结束时过期。
+ * 同一个 key 同时只允许一个上游请求在途，其余未命中的请求等待它的结果（请求合并）。
+ * 清除缓存时递增代数，清除前发出、清除后才返回的上游响应不会再写入缓存。
+ */
+@Component
+@Slf4j
+public class EdgeResponseCache {
+
+    /** 缓存的一个响应 */
+    public static final class Entry {
+        private final byte[] body;
+        private final HttpHeaders headers;
+        private final String etag;
+        private final long storedAtMillis;
+        private final long ttlMillis;
+
+        public Entry(byte[] body, HttpHeaders headers, String etag, long ttlMillis) {
+            this.body = body;
+            this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+            this.etag = etag;
+            this.storedAtMillis = System.currentTimeMillis();
+            this.ttlMillis = ttlMillis;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long ageSeconds() {
+            return Math.max(0, (System.currentTimeMillis() - storedAtMillis) / 1000);
+        }
+    }
+
+    private final Cache<String, Entry> cache;
+    private final Map<String, CompletableFuture<Entry>> inflight = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public EdgeResponseCache(EdgeCacheProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxBytes())
+                .weigher((String key, Entry entry) -> entry.body.length + key.length())
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(entry.ttlMillis);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return TimeUnit.MILLISECONDS.toNanos(entry.ttlMillis);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public Entry get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * 登记一个在途的上游请求。
+     *
+     * @return null 表示调用方成为该 key 的首个请求，应请求上游并在结束后调用 {@link #finish}；
+     * 否则返回已在途请求的结果，调用方应等待它
+     */
+    public CompletableFuture<Entry> joinOrLead(String key, CompletableFuture<Entry> mine) {
+        return inflight.putIfAbsent(key, mine);
+    }
+
+    /**
+     * 首个请求结束：可缓存时写入缓存，并把结果（不可缓存时为 null）交给等待中的请求。
+     */
+    public void finish(String key, CompletableFuture<Entry> mine, Entry entry, long generationAtStart) {
+        if (entry != null && generation.get() == generationAtStart) {
+            cache.put(key, entry);
+        }
+        inflight.remove(key, mine);
+        mine.complete(entry);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * 清除路径等于 prefix 或位于 prefix 之下的所有条目，prefix 为 null 时清除全部。
+     *
+     * @return 清除的条目数
+     */
+    public int purge(String prefix) {
+        generation.incrementAndGet();
+        if (prefix == null || prefix.isEmpty() || "/".equals(prefix)) {
+            int size = (int) cache.estimatedSize();
+            cache.invalidateAll();
+            log.info("边缘缓存已全部清除，约 {} 个条目", size);
+            return size;
+        }
+        int[] removed = {0};
+        cache.asMap().keySet().removeIf(key -> {
+            boolean match = isUnder(key, prefix);
+            if (match) {
+                removed[0]++;
+            }
+            return match;
+        });
+        log.info("边缘缓存已清除前缀 {} 下的 {} 个条目", prefix, removed[0]);
+        return removed[0];
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("entries", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        result.put("inflight", inflight.size());
+        return result;
+    }
+
+    // key 的路径部分等于 prefix，或以 prefix + "/" 开头
+    private static boolean isUnder(String key, String prefix) {
+        if (!key.startsWith(prefix)) {
+            return false;
+        }
+        if (key.length() == prefix.length() || prefix.endsWith("/")) {
+            return true;
+        }
+        char next = key.charAt(prefix.length());
+        return next == '/' || next == '?';
+    }
+}
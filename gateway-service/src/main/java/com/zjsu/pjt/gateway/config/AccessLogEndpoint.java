@@ -0,0 +1,74 @@
+package com.zjsu.pjt.gateway.config;
+
+import com.zjsu.pjt.gateway.filter.AccessLogPolicies;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运行时调整各路由访问日志的 actuator 端点，无需重启：
+ * <ul>
+ *     <li>GET /actuator/accesslog：查看每个路由当前生效的抽样比例与详细模式；</li>
+ *     <li>POST /actuator/accesslog/{routeId}，请求体 {"sampleRate": 1.0, "detailed": true}：覆盖某个路由；</li>
+ *     <li>DELETE /actuator/accesslog/{routeId}：清除覆盖，恢复为配置值。</li>
+ * </ul>
+ * 框架自身日志的级别仍通过标准的 /actuator/loggers 端点调整。
+ * 端点只在管理端口（management.server.port，默认 8091，不对外映射）上提供，外部请求无法经网关端口访问。
+ */
+@Component
+@Endpoint(id = "accesslog")
+public class AccessLogEndpoint {
+
+    @Autowired
+    private AccessLogPolicies policies;
+
+    @Autowired
+    private RouteLocator routeLocator;
+
+    @ReadOperation
+    public Map<String, Object> policies() {
+        List<String> routeIds = routeLocator.getRoutes().map(route -> route.getId()).collectList().block();
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (String routeId : routeIds) {
+            routes.put(routeId, describe(routeId));
+        }
+        routes.put(AccessLogPolicies.UNROUTED, describe(AccessLogPolicies.UNROUTED));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("enabled", policies.isEnabled());
+        response.put("slowThresholdMs", policies.getSlowThresholdMs());
+        response.put("routes", routes);
+        response.put("overrides", policies.getOverrides().keySet());
+        return response;
+    }
+
+    @WriteOperation
+    public Map<String, Object> override(@Selector String routeId, @Nullable Double sampleRate, @Nullable Boolean detailed) {
+        policies.override(routeId, sampleRate, detailed);
+        return describe(routeId);
+    }
+
+    @DeleteOperation
+    public Map<String, Object> clear(@Selector String routeId) {
+        policies.clearOverride(routeId);
+        return describe(routeId);
+    }
+
+    private Map<String, Object> describe(String routeId) {
+        Map<String, Object> policy = new HashMap<>();
+        policy.put("sampleRate", policies.sampleRate(routeId));
+        policy.put("detailed", policies.isDetailed(routeId));
+        return policy;
+    }
+}
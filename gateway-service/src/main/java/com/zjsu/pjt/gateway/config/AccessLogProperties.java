@@ -0,0 +1,40 @@
+package com.zjsu.pjt.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 网关访问日志配置（gateway.access-log.*）。
+ * <p>
+ * 每个路由按 sample-rate 抽样记录访问日志，5xx 与慢请求总是记录。
+ * 路由级配置只需写要覆盖的字段，未写的字段沿用默认值；运行时还可通过 /actuator/accesslog 临时覆盖。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "gateway.access-log")
+public class AccessLogProperties {
+
+    private boolean enabled = true;
+
+    // 默认抽样比例，0 表示只记录 5xx 与慢请求，1 表示全部记录
+    private double sampleRate = 0.01;
+
+    // 详细模式额外记录查询串、客户端地址、User-Agent 与请求/响应大小
+    private boolean detailed = false;
+
+    // 超过该耗时的请求总是记录
+    private long slowThresholdMs = 1000;
+
+    // 路由ID -> 该路由的覆盖配置
+    private Map<String, RoutePolicy> routes = new HashMap<>();
+
+    @Data
+    public static class RoutePolicy {
+        private Double sampleRate;
+        private Boolean detailed;
+    }
+}
@@ -0,0 +1,35 @@
+package com.zjsu.pjt.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 网关认证过滤器的白名单与角色规则（gateway.auth.*）。
+ * <p>
+ * 作为 @ConfigurationProperties Bean，Nacos 配置变更时会被 Spring Cloud 自动重新绑定，
+ * 随后由 {@link com.zjsu.pjt.gateway.filter.AuthRuleMatcher} 重新编译，无需重启网关。
+ * 路径模式支持字面路径、整段 * 与末尾 /**；methods 为空表示任意方法。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "gateway.auth")
+public class AuthRulesProperties {
+
+    // 无需认证即可访问的规则
+    private List<Rule> whitelist = new ArrayList<>();
+
+    // 需要特定角色才能访问的规则
+    private List<Rule> roleRules = new ArrayList<>();
+
+    @Data
+    public static class Rule {
+        private String pattern;
+        private List<String> methods = new ArrayList<>();
+        // 仅角色规则使用
+        private String role;
+    }
+}
@@ -0,0 +1,44 @@
+package com.zjsu.pjt.gateway.config;
+
+import com.zjsu.pjt.gateway.cache.EdgeResponseCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 边缘缓存管理端点：
+ * <ul>
+ *     <li>GET /actuator/edgecache：查看条目数、命中/未命中次数与在途请求数；</li>
+ *     <li>DELETE /actuator/edgecache?prefix=/api/products：清除该路径前缀下的条目，不带 prefix 时清除全部。</li>
+ * </ul>
+ * 经网关完成的商品上架/下架/修改/删除会按 gateway.edge-cache.purge-on 自动清除，
+ * 本端点用于绕过网关直接修改数据后的手动清除。
+ * 端点只在管理端口（management.server.port，默认 8091，不对外映射）上提供，外部请求无法经网关端口清除缓存。
+ */
+@Component
+@Endpoint(id = "edgecache")
+public class EdgeCacheEndpoint {
+
+    @Autowired
+    private EdgeResponseCache cache;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+
+    @DeleteOperation
+    public Map<String, Object> purge(@Nullable String prefix) {
+        int removed = cache.purge(prefix);
+        Map<String, Object> response = new HashMap<>();
+        response.put("prefix", prefix == null ? "/" : prefix);
+        response.put("purged", removed);
+        return response;
+    }
+}
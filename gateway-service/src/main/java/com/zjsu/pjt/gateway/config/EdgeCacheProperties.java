@@ -0,0 +1,51 @@
+package com.zjsu.pjt.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 网关边缘响应缓存配置（gateway.edge-cache.*）。
+ * <p>
+ * 只有 rules 中列出的 GET 路径会被缓存，缓存条目在所有用户之间共享，因此只能配置与用户身份无关的响应（公开商品目录、图片）。
+ * purge-on 中的非 GET 请求成功（2xx）后，自动清除对应前缀下的缓存条目（如商品上架/下架/修改/删除）。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "gateway.edge-cache")
+public class EdgeCacheProperties {
+
+    private boolean enabled = true;
+
+    // 所有缓存条目响应体的总大小上限（字节）
+    private long maxBytes = 64L * 1024 * 1024;
+
+    // 单个响应体超过该大小时不缓存（字节）
+    private int maxEntryBytes = 1024 * 1024;
+
+    // 上游 Cache-Control 给出的有效期也不会超过该值
+    private long maxTtlSeconds = 3600;
+
+    // 并发未命中时，跟随请求等待首个上游请求的最长时间，超时后自行请求上游
+    private long collapseTimeoutMs = 5000;
+
+    private List<CacheRule> rules = new ArrayList<>();
+
+    private List<PurgeRule> purgeOn = new ArrayList<>();
+
+    @Data
+    public static class CacheRule {
+        private String pattern;
+        // 上游未给出 max-age/s-maxage 时使用的有效期
+        private long ttlSeconds = 5;
+    }
+
+    @Data
+    public static class PurgeRule {
+        private String pattern;
+        private List<String> prefixes = new ArrayList<>();
+    }
+}
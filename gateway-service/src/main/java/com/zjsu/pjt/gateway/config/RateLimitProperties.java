@@ -0,0 +1,50 @@
+package com.zjsu.pjt.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 网关本地限流配置（gateway.rate-limit.*）。
+ * <p>
+ * 每个 (路由, 用户) 一个令牌桶：已认证请求按用户ID计数，匿名请求按客户端IP计数。
+ * routes 中未列出的路由使用 defaults；replenish-rate 为 0 表示不限流。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "gateway.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // 内存中最多保留的令牌桶数量，超出时淘汰最久未使用的桶
+    private long maxBuckets = 100_000;
+
+    // 桶空闲超过该时长后被淘汰（被淘汰的桶相当于已补满），应不小于 burst-capacity / replenish-rate
+    private long idleEvictionSeconds = 300;
+
+    private Limit defaults = new Limit();
+
+    // 路由ID -> 该路由的限额
+    private Map<String, Limit> routes = new HashMap<>();
+
+    private Cluster cluster = new Cluster();
+
+    @Data
+    public static class Limit {
+        // 每秒补充的令牌数（稳定速率）
+        private double replenishRate = 0;
+        // 桶容量（允许的突发请求数）
+        private long burstCapacity = 0;
+    }
+
+    @Data
+    public static class Cluster {
+        // local: 每个网关实例各自执行完整限额；approximate: 按 Nacos 中网关实例数平分限额，使集群总体近似遵守限额
+        private String mode = "local";
+        private long refreshIntervalMs = 10_000;
+    }
+}
@@ -0,0 +1,94 @@
+package com.zjsu.pjt.gateway.filter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 结构化访问日志（每个请求一行 JSON，写入 gateway.access 日志器，由 logback-spring.xml 中的异步 Appender 输出）。
+ * <p>
+ * 按路由抽样：未抽中的请求不构造任何日志内容；5xx 与慢请求不受抽样限制，总是记录。
+ * 排在认证过滤器之前，因此认证失败（401/403）的请求同样会被统计。
+ */
+@Component
+public class AccessLogFilter implements GlobalFilter, Ordered {
+
+    private static final Logger accessLog = LoggerFactory.getLogger("gateway.access");
+
+    @Autowired
+    private AccessLogPolicies policies;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!policies.isEnabled() || !accessLog.isInfoEnabled()) {
+            return chain.filter(exchange);
+        }
+        long start = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> {
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            String routeId = routeId(exchange);
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            boolean always = (status != null && status.is5xxServerError()) || durationMs >= policies.getSlowThresholdMs();
+            double sampleRate = policies.sampleRate(routeId);
+            if (always || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+                write(exchange, routeId, status, durationMs, sampleRate);
+            }
+        });
+    }
+
+    private void write(ServerWebExchange exchange, String routeId, HttpStatusCode status, long durationMs, double sampleRate) {
+        ServerHttpRequest request = exchange.getRequest();
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("route", routeId);
+        entry.put("method", request.getMethod().name());
+        entry.put("path", request.getURI().getRawPath());
+        entry.put("status", status == null ? null : status.value());
+        entry.put("durationMs", durationMs);
+        entry.put("sampleRate", sampleRate);
+        // 认证过滤器写入的下游请求头只存在于变更后的请求上，这里读取的是原始请求，因此不记录用户身份
+        if (policies.isDetailed(routeId)) {
+            InetSocketAddress remote = request.getRemoteAddress();
+            entry.put("query", request.getURI().getRawQuery());
+            entry.put("client", remote == null ? null : remote.getHostString());
+            entry.put("userAgent", request.getHeaders().getFirst("User-Agent"));
+            entry.put("requestBytes", request.getHeaders().getContentLength());
+            entry.put("responseBytes", exchange.getResponse().getHeaders().getContentLength());
+        }
+        try {
+            accessLog.info(objectMapper.writeValueAsString(entry));
+        } catch (JsonProcessingException e) {
+            accessLog.info(entry.toString());
+        }
+    }
+
+    private static String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route == null ? AccessLogPolicies.UNROUTED : route.getId();
+    }
+
+    @Override
+    public int getOrder() {
+        // 早于 JwtAuthenticationFilter（-100）
+        return -200;
+    }
+}
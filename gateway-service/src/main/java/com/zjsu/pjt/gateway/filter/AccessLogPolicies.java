@@ -0,0 +1,82 @@
+package com.zjsu.pjt.gateway.filter;
+
+import com.zjsu.pjt.gateway.config.AccessLogProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按路由解析访问日志策略：运行时覆盖（/actuator/accesslog）优先，其次是配置 gateway.access-log.routes，最后是默认值。
+ * 运行时覆盖只保存在本实例内存中，重启后失效；需要持久化的调整应写入 Nacos 配置。
+ */
+@Component
+@Slf4j
+public class AccessLogPolicies {
+
+    /** 路由未匹配（如 404）时使用的路由ID */
+    public static final String UNROUTED = "unrouted";
+
+    @Autowired
+    private AccessLogProperties properties;
+
+    private final Map<String, AccessLogProperties.RoutePolicy> overrides = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public long getSlowThresholdMs() {
+        return properties.getSlowThresholdMs();
+    }
+
+    public double sampleRate(String routeId) {
+        AccessLogProperties.RoutePolicy override = overrides.get(routeId);
+        Double rate = override == null ? null : override.getSampleRate();
+        if (rate == null) {
+            AccessLogProperties.RoutePolicy configured = properties.getRoutes().get(routeId);
+            rate = configured == null ? null : configured.getSampleRate();
+        }
+        return rate == null ? properties.getSampleRate() : rate;
+    }
+
+    public boolean isDetailed(String routeId) {
+        AccessLogProperties.RoutePolicy override = overrides.get(routeId);
+        Boolean detailed = override == null ? null : override.getDetailed();
+        if (detailed == null) {
+            AccessLogProperties.RoutePolicy configured = properties.getRoutes().get(routeId);
+            detailed = configured == null ? null : configured.getDetailed();
+        }
+        return detailed == null ? properties.isDetailed() : detailed;
+    }
+
+    /**
+     * 运行时覆盖某个路由的策略，参数为 null 的字段保持不变。
+     *
+     * @throws IllegalArgumentException 抽样比例不在 [0, 1] 内
+     */
+    public void override(String routeId, Double sampleRate, Boolean detailed) {
+        if (sampleRate != null && (sampleRate < 0 || sampleRate > 1)) {
+            throw new IllegalArgumentException("sampleRate 必须在 0 到 1 之间: " + sampleRate);
+        }
+        overrides.compute(routeId, (id, current) -> {
+            AccessLogProperties.RoutePolicy policy = new AccessLogProperties.RoutePolicy();
+            policy.setSampleRate(sampleRate != null ? sampleRate : current == null ? null : current.getSampleRate());
+            policy.setDetailed(detailed != null ? detailed : current == null ? null : current.getDetailed());
+            return policy;
+        });
+        log.info("路由 {} 的访问日志策略已在运行时调整: sampleRate={}, detailed={}",
+                routeId, sampleRate(routeId), isDetailed(routeId));
+    }
+
+    public void clearOverride(String routeId) {
+        overrides.remove(routeId);
+        log.info("路由 {} 的访问日志运行时覆盖已清除，恢复为配置值", routeId);
+    }
+
+    public Map<String, AccessLogProperties.RoutePolicy> getOverrides() {
+        return Map.copyOf(overrides);
+    }
+}
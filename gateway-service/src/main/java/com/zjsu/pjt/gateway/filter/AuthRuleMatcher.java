@@ -0,0 +1,82 @@
+package com.zjsu.pjt.gateway.filter;
+
+import com.zjsu.pjt.gateway.config.AuthRulesProperties;
+import com.zjsu.pjt.gateway.util.PathRuleTrie;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+/**
+ * 认证过滤器的请求分类：是否在白名单内、需要什么角色。
+ * <p>
+ * 启动时把 {@link AuthRulesProperties} 编译为两棵 {@link PathRuleTrie}，每次请求只做一次按字符的树查找。
+ * Nacos 配置刷新后（属性已重新绑定，刷新作用域已刷新）重新编译并整体替换；
+ * 新规则编译失败时保留旧规则并记录错误，避免一次错误的配置推送让网关放行或拒绝所有请求。
+ */
+@Component
+@Slf4j
+public class AuthRuleMatcher {
+
+    private static final class CompiledRules {
+        private final PathRuleTrie whitelist;
+        private final PathRuleTrie roleRules;
+
+        private CompiledRules(PathRuleTrie whitelist, PathRuleTrie roleRules) {
+            this.whitelist = whitelist;
+            this.roleRules = roleRules;
+        }
+    }
+
+    @Autowired
+    private AuthRulesProperties properties;
+
+    private volatile CompiledRules rules;
+
+    @PostConstruct
+    public void init() {
+        rules = compile(properties);
+        log.info("网关认证规则已加载: 白名单 {} 条, 角色规则 {} 条",
+                properties.getWhitelist().size(), properties.getRoleRules().size());
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void reload() {
+        try {
+            rules = compile(properties);
+            log.info("网关认证规则已随配置刷新重新编译: 白名单 {} 条, 角色规则 {} 条",
+                    properties.getWhitelist().size(), properties.getRoleRules().size());
+        } catch (IllegalArgumentException e) {
+            log.error("新的网关认证规则无效，继续使用旧规则。原因: {}", e.getMessage());
+        }
+    }
+
+    public boolean isWhiteListed(String path, HttpMethod method) {
+        return rules.whitelist.matches(path, PathRuleTrie.methodBit(method));
+    }
+
+    /**
+     * @return 访问该路径所需的角色，不需要特定角色时返回 null
+     */
+    public String requiredRole(String path, HttpMethod method) {
+        return rules.roleRules.requiredRole(path, PathRuleTrie.methodBit(method));
+    }
+
+    private static CompiledRules compile(AuthRulesProperties properties) {
+        PathRuleTrie whitelist = new PathRuleTrie();
+        for (AuthRulesProperties.Rule rule : properties.getWhitelist()) {
+            whitelist.add(rule.getPattern(), PathRuleTrie.methodMask(rule.getMethods()), null);
+        }
+        PathRuleTrie roleRules = new PathRuleTrie();
+        for (AuthRulesProperties.Rule rule : properties.getRoleRules()) {
+            if (rule.getRole() == null || rule.getRole().isBlank()) {
+                throw new IllegalArgumentException("角色规则 " + rule.getPattern() + " 缺少 role");
+            }
+            roleRules.add(rule.getPattern(), PathRuleTrie.methodMask(rule.getMethods()), rule.getRole());
+        }
+        return new CompiledRules(whitelist, roleRules);
+    }
+}
@@ -0,0 +1,326 @@
+package com.zjsu.pjt.gateway.filter;
+
+import com.zjsu.pjt.gateway.cache.EdgeResponseCache;
+import com.zjsu.pjt.gateway.config.EdgeCacheProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.RequestPath;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 网关边缘响应缓存：公开商品目录与图片等与用户无关的 GET 响应直接由网关返回，不再经 lb://product-service。
+ * <ul>
+ *     <li>遵循上游 Cache-Control：no-store/no-cache/private 不缓存，s-maxage/max-age 决定有效期（不超过 max-ttl-seconds）；</li>
+ *     <li>遵循 ETag：沿用上游 ETag，上游未提供时按响应体生成弱 ETag；客户端 If-None-Match 命中时返回 304；</li>
+ *     <li>请求合并：同一 key 的并发未命中只向上游发出一个请求，其余请求等待并共享它的响应；</li>
+ *     <li>purge-on 中的写请求成功后自动清除对应前缀，另可通过管理端口上的 /actuator/edgecache 手动清除。</li>
+ * </ul>
+ * 排在认证过滤器之后，需要登录的路径仍先完成认证；缓存不区分用户，只能为与用户身份无关的路径配置规则。
+ */
+@Component
+@Slf4j
+public class EdgeCacheFilter implements GlobalFilter, Ordered {
+
+    private static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    // 缓存并在命中时回放的上游响应头；CORS 等其余响应头由网关自身的过滤器生成
+    private static final List<String> STORED_HEADERS = List.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_ENCODING, HttpHeaders.CONTENT_LANGUAGE,
+            HttpHeaders.CACHE_CONTROL, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED);
+
+    private record CacheRule(PathPattern pattern, long ttlSeconds) {
+    }
+
+    private record PurgeRule(PathPattern pattern, List<String> prefixes) {
+    }
+
+    private record CompiledRules(List<CacheRule> cacheRules, List<PurgeRule> purgeRules) {
+    }
+
+    @Autowired
+    private EdgeCacheProperties properties;
+
+    @Autowired
+    private EdgeResponseCache cache;
+
+    private volatile CompiledRules rules;
+
+    @PostConstruct
+    public void init() {
+        rules = compile(properties);
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void reload() {
+        try {
+            rules = compile(properties);
+            log.info("边缘缓存规则已随配置刷新重新编译: 缓存规则 {} 条, 清除规则 {} 条",
+                    rules.cacheRules().size(), rules.purgeRules().size());
+        } catch (RuntimeException e) {
+            log.error("新的边缘缓存规则无效，继续使用旧规则。原因: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!properties.isEnabled()) {
+            return chain.filter(exchange);
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        RequestPath path = request.getPath();
+        HttpMethod method = request.getMethod();
+        if (method == HttpMethod.HEAD || method == HttpMethod.OPTIONS) {
+            return chain.filter(exchange);
+        }
+        if (method != HttpMethod.GET) {
+            return purgeAfterWrite(exchange, chain, path);
+        }
+        CacheRule rule = cacheRule(path);
+        if (rule == null) {
+            return chain.filter(exchange);
+        }
+
+        String query = request.getURI().getRawQuery();
+        String key = query == null ? path.value() : path.value() + "?" + query;
+        // 客户端要求跳过缓存时直接请求上游，并用新响应刷新缓存
+        boolean bypass = request.getHeaders().getCacheControl() != null
+                && request.getHeaders().getCacheControl().contains("no-cache");
+        if (!bypass) {
+            EdgeResponseCache.Entry cached = cache.get(key);
+            if (cached != null) {
+                return serve(exchange, cached, "HIT");
+            }
+        }
+
+        CompletableFuture<EdgeResponseCache.Entry> mine = new CompletableFuture<>();
+        CompletableFuture<EdgeResponseCache.Entry> leader = bypass ? null : cache.joinOrLead(key, mine);
+        if (leader != null) {
+            // 跟随请求：等待首个请求的响应；首个请求的响应不可缓存、失败或等待超时时，自行请求上游
+            return Mono.fromFuture(leader)
+                    .timeout(Duration.ofMillis(properties.getCollapseTimeoutMs()))
+                    .onErrorResume(e -> Mono.empty())
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(entry -> entry.isPresent() ? serve(exchange, entry.get(), "COLLAPSED") : chain.filter(exchange));
+        }
+
+        long generation = cache.generation();
+        CapturingResponse response = new CapturingResponse(exchange.getResponse(), rule.ttlSeconds());
+        return chain.filter(exchange.mutate().response(response).build())
+                .doFinally(signal -> cache.finish(key, mine, response.captured, generation));
+    }
+
+    private Mono<Void> purgeAfterWrite(ServerWebExchange exchange, GatewayFilterChain chain, RequestPath path) {
+        List<String> prefixes = null;
+        for (PurgeRule rule : rules.purgeRules()) {
+            if (rule.pattern().matches(path.pathWithinApplication())) {
+                prefixes = rule.prefixes();
+                break;
+            }
+        }
+        if (prefixes == null) {
+            return chain.filter(exchange);
+        }
+        List<String> toPurge = prefixes;
+        return chain.filter(exchange).doOnSuccess(v -> {
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            if (status != null && status.is2xxSuccessful()) {
+                log.debug("写请求 {} {} 成功，清除边缘缓存前缀 {}", exchange.getRequest().getMethod(), path.value(), toPurge);
+                toPurge.forEach(cache::purge);
+            }
+        });
+    }
+
+    private Mono<Void> serve(ServerWebExchange exchange, EdgeResponseCache.Entry entry, String cacheStatus) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        entry.getHeaders().forEach(headers::put);
+        headers.setETag(entry.getEtag());
+        headers.set(HttpHeaders.AGE, Long.toString(entry.ageSeconds()));
+        headers.set(CACHE_STATUS_HEADER, cacheStatus);
+        if (etagMatches(exchange.getRequest().getHeaders().getIfNoneMatch(), entry.getEtag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+        response.setStatusCode(HttpStatus.OK);
+        headers.setContentLength(entry.getBody().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(entry.getBody())));
+    }
+
+    // If-None-Match 使用弱比较：忽略 W/ 前缀
+    private static boolean etagMatches(List<String> ifNoneMatch, String etag) {
+        String target = stripWeak(etag);
+        for (String candidate : ifNoneMatch) {
+            if ("*".equals(candidate) || stripWeak(candidate).equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private CacheRule cacheRule(RequestPath path) {
+        for (CacheRule rule : rules.cacheRules()) {
+            if (rule.pattern().matches(path.pathWithinApplication())) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static CompiledRules compile(EdgeCacheProperties properties) {
+        PathPatternParser parser = PathPatternParser.defaultInstance;
+        List<CacheRule> cacheRules = new ArrayList<>();
+        for (EdgeCacheProperties.CacheRule rule : properties.getRules()) {
+            cacheRules.add(new CacheRule(parser.parse(rule.getPattern()), rule.getTtlSeconds()));
+        }
+        List<PurgeRule> purgeRules = new ArrayList<>();
+        for (EdgeCacheProperties.PurgeRule rule : properties.getPurgeOn()) {
+            purgeRules.add(new PurgeRule(parser.parse(rule.getPattern()), List.copyOf(rule.getPrefixes())));
+        }
+        return new CompiledRules(List.copyOf(cacheRules), List.copyOf(purgeRules));
+    }
+
+    /**
+     * 边转发边复制上游响应体；响应可缓存且大小不超过上限时，在写完后生成缓存条目。
+     */
+    private class CapturingResponse extends ServerHttpResponseDecorator {
+
+        private final long defaultTtlSeconds;
+        private volatile EdgeResponseCache.Entry captured;
+
+        private CapturingResponse(ServerHttpResponse delegate, long defaultTtlSeconds) {
+            super(delegate);
+            this.defaultTtlSeconds = defaultTtlSeconds;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            long ttlSeconds = cacheableTtlSeconds();
+            if (ttlSeconds <= 0) {
+                return super.writeWith(body);
+            }
+            getHeaders().set(CACHE_STATUS_HEADER, "MISS");
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            boolean[] overflow = {false};
+            Flux<DataBuffer> tee = Flux.from(body).doOnNext(buffer -> {
+                int count = buffer.readableByteCount();
+                if (overflow[0] || copy.size() + count > properties.getMaxEntryBytes()) {
+                    overflow[0] = true;
+                    return;
+                }
+                byte[] chunk = new byte[count];
+                buffer.toByteBuffer(buffer.readPosition(), ByteBuffer.wrap(chunk), 0, count);
+                copy.writeBytes(chunk);
+            });
+            return super.writeWith(tee).doOnSuccess(v -> {
+                if (!overflow[0]) {
+                    captured = toEntry(copy.toByteArray(), ttlSeconds);
+                }
+            });
+        }
+
+        // 返回可缓存的有效期（秒），不可缓存时返回 0
+        private long cacheableTtlSeconds() {
+            HttpHeaders headers = getHeaders();
+            if (getStatusCode() == null || getStatusCode().value() != HttpStatus.OK.value()
+                    || headers.containsKey(HttpHeaders.SET_COOKIE)
+                    || headers.getVary().contains("*")
+                    || headers.getContentLength() > properties.getMaxEntryBytes()) {
+                return 0;
+            }
+            long ttlSeconds = defaultTtlSeconds;
+            String cacheControl = headers.getCacheControl();
+            if (cacheControl != null) {
+                long maxAge = -1;
+                for (String directive : cacheControl.toLowerCase().split(",")) {
+                    String d = directive.trim();
+                    if (d.equals("no-store") || d.equals("no-cache") || d.equals("private")) {
+                        return 0;
+                    }
+                    if (d.startsWith("s-maxage=")) {
+                        maxAge = parseSeconds(d.substring("s-maxage=".length()));
+                    } else if (d.startsWith("max-age=") && maxAge < 0) {
+                        maxAge = parseSeconds(d.substring("max-age=".length()));
+                    }
+                }
+                if (maxAge >= 0) {
+                    ttlSeconds = maxAge;
+                }
+            }
+            return Math.min(ttlSeconds, properties.getMaxTtlSeconds());
+        }
+
+        private EdgeResponseCache.Entry toEntry(byte[] body, long ttlSeconds) {
+            HttpHeaders stored = new HttpHeaders();
+            for (String name : STORED_HEADERS) {
+                List<String> values = getHeaders().get(name);
+                if (values != null) {
+                    stored.put(name, List.copyOf(values));
+                }
+            }
+            String etag = getHeaders().getETag();
+            if (etag == null) {
+                etag = "W/\"" + digest(body) + "\"";
+            }
+            return new EdgeResponseCache.Entry(body, stored, etag, ttlSeconds * 1000);
+        }
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String digest(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JVM不支持SHA-256", e);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        // 晚于 JwtAuthenticationFilter（-100），早于写回响应的 NettyWriteResponseFilter（-1）
+        return -50;
+    }
+}
@@ -12,25 +12,24 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.util.Arrays;
-import java.util.List;
 import java.util.Objects;
 
 @Component
 @Slf4j
 public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
 
+    /** 认证通过后写入 exchange 的用户ID属性，供后续过滤器（如限流）使用；客户端自带的 X-User-Id 请求头不可信 */
+    public static final String USER_ID_ATTR = "gateway.authenticatedUserId";
+
     @Autowired
     private JwtUtil jwtUtil;
 
-    private final AntPathMatcher pathMatcher = new AntPathMatcher();
-
-    // ✨ 【修改点 1】: 定义更精确的白名单结构 (不再使用)
-    // 我们将把这个逻辑直接写在 isWhiteListed 方法中，使其更清晰
+    // 白名单与角色规则来自配置 gateway.auth.*，启动时预编译，Nacos 配置变更后自动重新编译
+    @Autowired
+    private AuthRuleMatcher authRuleMatcher;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
@@ -38,8 +37,8 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
         String path = request.getURI().getPath();
         HttpMethod method = request.getMethod(); // 获取HTTP方法
 
-        // ✨ 【修改点 2】: 调用新的白名单检查方法，同时传入路径和方法
-        if (isWhiteListed(path, method)) {
+        // 白名单检查同时匹配路径和方法
+        if (authRuleMatcher.isWhiteListed(path, method)) {
             log.debug("请求 [{} {}] 匹配白名单，直接放行。", method, path);
             return chain.filter(exchange);
         }
@@ -53,26 +52,27 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
 
         String token = authHeader.substring(7);
 
-        // 3. 验证Token有效性
-        if (!jwtUtil.validateToken(token)) {
+        // 3. 验证并解析Token（同一Token只做一次签名校验，之后命中已验证Claims缓存）
+        Claims claims = jwtUtil.verifyToken(token);
+        if (claims == null) {
             log.warn("路径 {} 提供了无效的JWT Token", path);
             return handleUnauthorized(exchange, "无效的认证凭证");
         }
 
-        // 4. 解析Token，获取用户信息
-        Claims claims = jwtUtil.parseToken(token);
+        // 4. 获取用户信息
         String userId = claims.getSubject();
         String username = claims.get("username", String.class);
         String role = claims.get("role", String.class);
 
         // 5. 角色权限校验
-        if (pathMatcher.match("/api/admin/**", path)) {
-            log.debug("检测到管理员路径访问: {}", path);
-            if (!"ADMIN".equals(role)) {
-                log.warn("用户 '{}' (ID: {}) 尝试访问管理员路径 {}，但其角色为 '{}'，权限不足。", username, userId, path, role);
-                return handleForbidden(exchange, "权限不足，需要管理员角色");
+        String requiredRole = authRuleMatcher.requiredRole(path, method);
+        if (requiredRole != null) {
+            log.debug("检测到需要角色 {} 的路径访问: {}", requiredRole, path);
+            if (!requiredRole.equals(role)) {
+                log.warn("用户 '{}' (ID: {}) 尝试访问路径 {}，需要角色 '{}'，但其角色为 '{}'，权限不足。", username, userId, path, requiredRole, role);
+                return handleForbidden(exchange, "权限不足，需要" + requiredRole + "角色");
             }
-            log.info("管理员 '{}' 访问授权路径 {} 验证通过。", username, path);
+            log.debug("用户 '{}' 以角色 {} 访问授权路径 {} 验证通过。", username, requiredRole, path);
         }
 
         // 6. 将用户信息添加到请求头，转发给下游服务
@@ -83,44 +83,11 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
                 .build();
 
         ServerWebExchange modifiedExchange = exchange.mutate().request(modifiedRequest).build();
+        modifiedExchange.getAttributes().put(USER_ID_ATTR, userId);
 
         return chain.filter(modifiedExchange);
     }
 
-    /**
-     * ✨ 【修改点 3】: 重写白名单检查方法，实现 "路径 + 方法" 的精确匹配
-     * 检查请求是否匹配白名单规则
-     * @param path 请求路径
-     * @param method 请求的HTTP方法
-     * @return 如果匹配白名单则返回 true
-     */
-    private boolean isWhiteListed(String path, HttpMethod method) {
-        // 规则1: 登录接口，POST方法
-        if (pathMatcher.match("/api/auth/login", path) && method == HttpMethod.POST) {
-            return true;
-        }
-        // 规则2: 用户注册接口，POST方法
-        if (pathMatcher.match("/api/users", path) && method == HttpMethod.POST) {
-            return true;
-        }
-        // 规则3: 创建商品接口，POST方法
-        if (pathMatcher.match("/api/products", path) && method == HttpMethod.POST) {
-            return true;
-        }
-        // 规则4: 允许任何人查看商品列表，GET方法
-        if (pathMatcher.match("/api/products", path) && method == HttpMethod.GET) {
-            return true;
-        }
-// 规则5: 允许任何人获取图片资源，GET方法
-        if (pathMatcher.match("/images/**", path) && method == HttpMethod.GET) {
-            return true;
-        }
-
-        // 如果以上规则都不匹配，则不在白名单内
-        return false;
-    }
-
-
     private Mono<Void> handleUnauthorized(ServerWebExchange exchange, String message) {
         log.warn(message);
         ServerHttpResponse response = exchange.getResponse();
@@ -0,0 +1,127 @@
+package com.zjsu.pjt.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zjsu.pjt.gateway.config.RateLimitProperties;
+import com.zjsu.pjt.gateway.util.TokenBucket;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关本地限流（不依赖 Redis）：每个 (路由, 用户) 一个无锁令牌桶，超出限额返回 429 与 Retry-After。
+ * <p>
+ * 已认证请求按 JWT 过滤器解析出的用户ID计数，匿名（白名单）请求按客户端IP计数；
+ * 令牌桶保存在有容量上限的 Caffeine 缓存中，空闲的桶自动淘汰。
+ * cluster.mode=approximate 时按 Nacos 中当前网关实例数平分每个限额：负载均衡把请求大致均匀地分到各实例时，
+ * 集群总体近似遵守配置的限额，实例增减后在一个刷新周期内自动调整。
+ */
+@Component
+@Slf4j
+public class RateLimitFilter implements GlobalFilter, Ordered {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimitProperties properties;
+    private final DiscoveryClient discoveryClient;
+    private final String applicationName;
+    private final Cache<String, TokenBucket> buckets;
+
+    // 参与平分限额的网关实例数，local 模式下恒为 1
+    private volatile int replicas = 1;
+
+    public RateLimitFilter(RateLimitProperties properties,
+                           DiscoveryClient discoveryClient,
+                           @Value("${spring.application.name}") String applicationName) {
+        this.properties = properties;
+        this.discoveryClient = discoveryClient;
+        this.applicationName = applicationName;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxBuckets())
+                .expireAfterAccess(Duration.ofSeconds(properties.getIdleEvictionSeconds()))
+                .build();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (!properties.isEnabled() || route == null) {
+            return chain.filter(exchange);
+        }
+        RateLimitProperties.Limit limit = properties.getRoutes().getOrDefault(route.getId(), properties.getDefaults());
+        if (limit.getReplenishRate() <= 0 || limit.getBurstCapacity() <= 0) {
+            return chain.filter(exchange);
+        }
+
+        int share = replicas;
+        long emissionIntervalNanos = (long) (NANOS_PER_SECOND * share / limit.getReplenishRate());
+        long burstCapacity = Math.max(1, limit.getBurstCapacity() / share);
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(route.getId() + '|' + principal(exchange), key -> new TokenBucket(now));
+        long waitNanos = bucket.tryAcquire(now, emissionIntervalNanos, burstCapacity);
+        if (waitNanos == 0) {
+            return chain.filter(exchange);
+        }
+
+        log.debug("请求 {} 超出路由 {} 的限额，需等待 {} ms", exchange.getRequest().getPath(), route.getId(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        long retryAfterSeconds = Math.max(1, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return response.setComplete();
+    }
+
+    private static String principal(ServerWebExchange exchange) {
+        String userId = exchange.getAttribute(JwtAuthenticationFilter.USER_ID_ATTR);
+        if (userId != null) {
+            return "user:" + userId;
+        }
+        InetSocketAddress remote = exchange.getRequest().getRemoteAddress();
+        return "ip:" + (remote == null ? "unknown" : remote.getAddress() == null ? remote.getHostString()
+                : remote.getAddress().getHostAddress());
+    }
+
+    /**
+     * approximate 模式下定期从 Nacos 读取网关实例数。读取失败时保留上一次的值。
+     */
+    @Scheduled(initialDelayString = "${gateway.rate-limit.cluster.refresh-interval-ms:10000}",
+            fixedDelayString = "${gateway.rate-limit.cluster.refresh-interval-ms:10000}")
+    public void refreshReplicas() {
+        if (!"approximate".equalsIgnoreCase(properties.getCluster().getMode())) {
+            replicas = 1;
+            return;
+        }
+        try {
+            int discovered = Math.max(1, discoveryClient.getInstances(applicationName).size());
+            if (discovered != replicas) {
+                log.info("网关实例数由 {} 变为 {}，按实例数平分限流额度", replicas, discovered);
+                replicas = discovered;
+            }
+        } catch (Exception e) {
+            log.warn("读取网关实例数失败，继续按 {} 个实例平分限额。原因: {}", replicas, e.getMessage());
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        // 晚于 JwtAuthenticationFilter（-100），以便按用户计数；早于边缘缓存（-50），缓存命中同样计入限额
+        return -90;
+    }
+}
@@ -0,0 +1,203 @@
+package com.zjsu.pjt.gateway.util;
+
+import org.springframework.http.HttpMethod;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 按 HTTP 方法区分的路径规则前缀树（逐字符），在启动或配置刷新时编译一次，之后只读、可被多线程共享。
+ * <p>
+ * 支持的路径模式（与 AntPathMatcher 对这些写法的语义一致）：
+ * <ul>
+ *     <li>字面路径，如 {@code /api/users}；</li>
+ *     <li>{@code *} 匹配一整段（非空且不含 '/'），如 {@code /api/products/*}；</li>
+ *     <li>末尾的 {@code /**} 匹配该前缀本身及其下的任意路径，如 {@code /api/admin/**}。</li>
+ * </ul>
+ * 匹配只沿路径逐字符前进，只在带通配符的节点上回溯，耗时与路径长度成正比且不分配对象。
+ * 多条规则同时命中时，字面路径优先于 {@code *}，{@code *} 优先于 {@code /**}。
+ */
+public final class PathRuleTrie {
+
+    /** 方法掩码：匹配任意方法 */
+    public static final int ANY_METHOD = -1;
+
+    private static final HttpMethod[] METHODS = {
+            HttpMethod.GET, HttpMethod.HEAD, HttpMethod.POST, HttpMethod.PUT,
+            HttpMethod.PATCH, HttpMethod.DELETE, HttpMethod.OPTIONS, HttpMethod.TRACE
+    };
+
+    /** 一条规则编译后的结果：允许的方法掩码与所需角色（白名单规则没有角色） */
+    private static final class Terminal {
+        private int methodMask;
+        private String role;
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private Node star;
+        private Terminal exact;
+        private Terminal anySuffix;
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node addChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            Node node = new Node();
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = node;
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+    }
+
+    private final Node root = new Node();
+
+    /**
+     * 把 HTTP 方法名列表转换为方法掩码，列表为空表示任意方法。
+     *
+     * @throws IllegalArgumentException 方法名无法识别
+     */
+    public static int methodMask(Collection<String> methods) {
+        if (methods == null || methods.isEmpty()) {
+            return ANY_METHOD;
+        }
+        int mask = 0;
+        for (String name : methods) {
+            String trimmed = name.trim();
+            if ("*".equals(trimmed)) {
+                return ANY_METHOD;
+            }
+            int bit = methodBit(HttpMethod.valueOf(trimmed.toUpperCase()));
+            if (bit == 1 << METHODS.length) {
+                throw new IllegalArgumentException("不支持的HTTP方法: " + name);
+            }
+            mask |= bit;
+        }
+        return mask;
+    }
+
+    /** 请求方法对应的掩码位，非标准方法统一映射到一个保留位（只能命中 ANY_METHOD 规则） */
+    public static int methodBit(HttpMethod method) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i] == method) {
+                return 1 << i;
+            }
+        }
+        return 1 << METHODS.length;
+    }
+
+    /**
+     * 加入一条规则。同一路径模式多次加入时合并方法掩码；角色规则的同一路径模式只能对应一个角色。
+     *
+     * @param role 所需角色，白名单规则传 null
+     * @throws IllegalArgumentException 路径模式不受支持或角色冲突
+     */
+    public void add(String pattern, int methodMask, String role) {
+        if (pattern == null || !pattern.startsWith("/")) {
+            throw new IllegalArgumentException("路径模式必须以 / 开头: " + pattern);
+        }
+        boolean anySuffix = pattern.endsWith("/**");
+        String body = anySuffix ? pattern.substring(0, pattern.length() - 3) : pattern;
+        Node node = root;
+        int i = 0;
+        while (i < body.length()) {
+            char c = body.charAt(i);
+            if (c == '*' && body.charAt(i - 1) == '/' && (i + 1 == body.length() || body.charAt(i + 1) == '/')) {
+                if (node.star == null) {
+                    node.star = new Node();
+                }
+                node = node.star;
+                i++;
+                continue;
+            }
+            if (c == '*' || c == '?' || c == '{' || c == '}') {
+                throw new IllegalArgumentException("不支持的路径模式（只支持字面路径、整段 * 与末尾 /**）: " + pattern);
+            }
+            node = node.addChild(c);
+            i++;
+        }
+        Terminal terminal;
+        if (anySuffix) {
+            terminal = node.anySuffix == null ? (node.anySuffix = new Terminal()) : node.anySuffix;
+        } else {
+            terminal = node.exact == null ? (node.exact = new Terminal()) : node.exact;
+        }
+        if (terminal.role != null && role != null && !terminal.role.equals(role)) {
+            throw new IllegalArgumentException("路径模式 " + pattern + " 同时配置了角色 " + terminal.role + " 和 " + role);
+        }
+        terminal.methodMask |= methodMask;
+        if (role != null) {
+            terminal.role = role;
+        }
+    }
+
+    /**
+     * 是否有规则同时匹配该路径和方法。
+     */
+    public boolean matches(String path, int methodBit) {
+        return find(root, path, 0, methodBit) != null;
+    }
+
+    /**
+     * 第一条同时匹配该路径和方法的规则所需的角色，没有规则匹配时返回 null。
+     */
+    public String requiredRole(String path, int methodBit) {
+        Terminal terminal = find(root, path, 0, methodBit);
+        return terminal == null ? null : terminal.role;
+    }
+
+    private static Terminal find(Node node, String path, int i, int methodBit) {
+        int length = path.length();
+        // 没有通配符的节点只有一条出路，直接沿字面字符前进，不递归
+        while (node.star == null && node.anySuffix == null) {
+            if (i == length) {
+                return accept(node.exact, methodBit);
+            }
+            node = node.child(path.charAt(i++));
+            if (node == null) {
+                return null;
+            }
+        }
+
+        Terminal found;
+        if (i == length) {
+            found = accept(node.exact, methodBit);
+        } else {
+            Node child = node.child(path.charAt(i));
+            found = child == null ? null : find(child, path, i + 1, methodBit);
+        }
+        if (found == null && node.star != null && i < length) {
+            int segmentEnd = i;
+            while (segmentEnd < length && path.charAt(segmentEnd) != '/') {
+                segmentEnd++;
+            }
+            if (segmentEnd > i) {
+                found = find(node.star, path, segmentEnd, methodBit);
+            }
+        }
+        if (found == null && (i == length || path.charAt(i) == '/')) {
+            found = accept(node.anySuffix, methodBit);
+        }
+        return found;
+    }
+
+    private static Terminal accept(Terminal terminal, int methodBit) {
+        return terminal != null && (terminal.methodMask & methodBit) != 0 ? terminal : null;
+    }
+}
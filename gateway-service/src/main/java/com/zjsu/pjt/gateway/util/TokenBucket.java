@@ -0,0 +1,41 @@
+package com.zjsu.pjt.gateway.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶，按 GCRA（通用信元速率算法）实现：整个桶的状态只有一个“理论到达时间”（TAT），用一次 CAS 更新。
+ * <p>
+ * 每放行一个请求，TAT 向后推进一个发放间隔（1 / 速率）；TAT 领先当前时间超过 burstCapacity 个间隔时拒绝。
+ * 与“令牌数 + 上次补充时间”的令牌桶等价，但不需要锁，也不在请求路径上分配对象。
+ * 速率与容量由调用方每次传入，配置变更后立即对已有的桶生效。
+ */
+public final class TokenBucket {
+
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(long nowNanos) {
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * 尝试取一个令牌。
+     *
+     * @param emissionIntervalNanos 每个令牌的发放间隔（纳秒），即 1 秒 / 补充速率
+     * @param burstCapacity         桶容量，即允许的最大突发请求数
+     * @return 0 表示放行，否则为还需等待的纳秒数
+     */
+    public long tryAcquire(long nowNanos, long emissionIntervalNanos, long burstCapacity) {
+        long tolerance = emissionIntervalNanos * burstCapacity;
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, nowNanos) + emissionIntervalNanos;
+            long wait = next - nowNanos - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -1,11 +1,24 @@
 package com.zjsu.pjt.inventory.controller;
 
+import com.zjsu.pjt.inventory.dto.InventoryEvent;
 import com.zjsu.pjt.inventory.dto.InventoryUpdateRequest;
+import com.zjsu.pjt.inventory.dto.StockHoldRequest;
+import com.zjsu.pjt.inventory.dto.StockChangeView;
+import com.zjsu.pjt.inventory.service.InventoryEventConsumer;
 import com.zjsu.pjt.inventory.service.InventoryService;
+import com.zjsu.pjt.inventory.service.MemoryStockEngine;
+import com.zjsu.pjt.inventory.service.OnShelfSnapshotService;
+import com.zjsu.pjt.inventory.service.ShardedStockService;
+import com.zjsu.pjt.inventory.service.StockHoldService;
+import com.zjsu.pjt.inventory.model.StockHold;
+import com.zjsu.pjt.inventory.util.StockBatchCodec;
 import com.zjsu.pjt.inventory.model.Inventory;
 import com.zjsu.pjt.inventory.dto.InventoryCreateRequest;
+import com.zjsu.pjt.inventory.exception.InsufficientStockException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
@@ -15,6 +28,8 @@ import com.zjsu.pjt.inventory.repository.InventoryRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
+import org.springframework.format.annotation.DateTimeFormat;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,6 +40,16 @@ public class InventoryController {
 
     private final InventoryService inventoryService;
 
+    private final OnShelfSnapshotService onShelfSnapshotService;
+
+    private final ShardedStockService shardedStockService;
+
+    private final MemoryStockEngine memoryStockEngine;
+
+    private final StockHoldService stockHoldService;
+
+    private final InventoryEventConsumer inventoryEventConsumer;
+
     @Autowired
     private Environment environment;
 
@@ -39,25 +64,70 @@ public class InventoryController {
         return ResponseEntity.ok(stockMap);
     }
 
-    // 获取所有已上架商品的ID列表
+    // 批量获取库存的二进制版本：请求/响应均为 application/x-stock-batch 紧凑编码，格式见 StockBatchCodec
+    @PostMapping(value = "/stocks", consumes = StockBatchCodec.MEDIA_TYPE, produces = StockBatchCodec.MEDIA_TYPE)
+    @Operation(summary = "根据商品ID列表批量获取库存（紧凑二进制编码）")
+    public ResponseEntity<byte[]> getStocksByProductIdsBinary(@RequestBody byte[] packedProductIds) {
+        List<UUID> productIds;
+        try {
+            productIds = StockBatchCodec.decodeIds(packedProductIds);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        Map<UUID, Integer> stockMap = inventoryService.getStocksByProductIds(productIds);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(StockBatchCodec.MEDIA_TYPE))
+                .body(StockBatchCodec.encodeStocks(stockMap));
+    }
+
+    // 库存变更流：返回 since 之后库存发生变化的商品ID，商品服务据此失效其库存缓存
+    @GetMapping("/stock-changes")
+    @Operation(summary = "获取指定时间点之后库存发生变更的商品ID列表")
+    public ResponseEntity<Map<String, Object>> getStockChanges(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("port", environment.getProperty("local.server.port"));
+
+        if (since == null) {
+            // 首次同步：调用方尚无水位线，只返回当前最新的变更时间作为起点
+            responseBody.put("data", List.of());
+            responseBody.put("watermark", inventoryService.getLatestStockChangeTime());
+            return ResponseEntity.ok(responseBody);
+        }
+
+        List<StockChangeView> changes = inventoryService.getStockChangesSince(since);
+        responseBody.put("data", changes.stream().map(StockChangeView::productId).collect(Collectors.toList()));
+        if (!changes.isEmpty()) {
+            // 水位线取本批次中最大的变更时间（查询已按变更时间升序）
+            responseBody.put("watermark", changes.get(changes.size() - 1).stockUpdatedAt());
+        }
+        return ResponseEntity.ok(responseBody);
+    }
+
+    // 获取所有已上架商品的ID列表（支持 If-None-Match 条件请求）
     @GetMapping("/on-shelf-product-ids")
     @Operation(summary = "获取所有已上架商品的Product ID列表")
-    public ResponseEntity<Map<String, Object>> getOnShelfProductIds() { // 1. 修改返回类型为 ResponseEntity<Map<...>>
-        // 2. 获取真实的 ID 列表
-        List<UUID> idList = inventoryRepository.findByOnShelfTrue().stream()
-                .map(Inventory::getProductId)
-                .collect(Collectors.toList());
+    public ResponseEntity<Map<String, Object>> getOnShelfProductIds(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // 1. 读取内存中的上架快照，只有上架集合变化后才会重建
+        OnShelfSnapshotService.Snapshot snapshot = onShelfSnapshotService.getSnapshot();
+
+        // 2. 调用方持有的版本与当前一致，返回 304，不再传输ID列表
+        if (snapshot.etag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.etag()).build();
+        }
 
         // 3. 获取当前服务的端口号
         String port = environment.getProperty("local.server.port");
 
-        // 4. 构建包含 data 和 port 的响应体
+        // 4. 构建包含 data、version 和 port 的响应体，ID 列表直接复用快照中的不可变列表
         Map<String, Object> responseBody = new HashMap<>();
-        responseBody.put("data", idList); // 将 ID 列表放入 "data" 字段
+        responseBody.put("data", snapshot.productIds()); // 将 ID 列表放入 "data" 字段
+        responseBody.put("version", snapshot.etag()); // 快照版本，与 ETag 响应头一致
         responseBody.put("port", port); // 将端口信息放入 "port" 字段
 
         // 5. 返回包装后的 Map
-        return ResponseEntity.ok(responseBody);
+        return ResponseEntity.ok().eTag(snapshot.etag()).body(responseBody);
     }
 
     // 用于更新上架状态的内部接口
@@ -115,10 +185,55 @@ public class InventoryController {
     @PutMapping("/admin/stock")
     @Operation(summary = "管理员直接修改库存数量")
     public ResponseEntity<Void> updateStockByAdmin(@RequestBody InventoryUpdateRequest request) {
-        inventoryService.updateStock(request.getProductId(), request.getQuantity());
+        try {
+            inventoryService.updateStock(request.getProductId(), request.getQuantity());
+        } catch (IllegalStateException e) {
+            // 内存库存模式下不允许直接设置库存
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         return ResponseEntity.ok().build();
     }
 
+    // 为热点商品开启内存库存模式：各实例领取额度后在内存中扣减，后台批量写回数据库
+    @PutMapping("/admin/{productId}/memory-stock")
+    @Operation(summary = "管理员开启或关闭商品的内存库存模式")
+    public ResponseEntity<Map<String, Object>> configureMemoryStock(@PathVariable UUID productId,
+                                                                    @RequestParam boolean enabled) {
+        try {
+            memoryStockEngine.configure(productId, enabled);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+        }
+
+        String port = environment.getProperty("local.server.port");
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("message", "Memory stock mode updated successfully.");
+        responseBody.put("memoryStock", enabled);
+        responseBody.put("port", port);
+
+        return ResponseEntity.ok(responseBody);
+    }
+
+    // 为秒杀等热点商品开启库存分桶，count=0 关闭分桶；调整前后总库存不变
+    @PutMapping("/admin/{productId}/shards")
+    @Operation(summary = "管理员设置商品的库存分桶数")
+    public ResponseEntity<Map<String, Object>> configureSharding(@PathVariable UUID productId,
+                                                                 @RequestParam int count) {
+        try {
+            shardedStockService.configureSharding(productId, count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+        }
+
+        String port = environment.getProperty("local.server.port");
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("message", "Sharding updated successfully.");
+        responseBody.put("shardCount", count);
+        responseBody.put("port", port);
+
+        return ResponseEntity.ok(responseBody);
+    }
+
     @DeleteMapping("/{productId}")
     @Operation(summary = "根据商品ID删除库存记录")
     public ResponseEntity<Void> deleteInventoryRecord(@PathVariable UUID productId) {
@@ -141,12 +256,45 @@ public class InventoryController {
 
             return ResponseEntity.ok(responseBody);
 
-        } catch (Exception e) {
-            // 保持原有的错误处理逻辑
+        } catch (InsufficientStockException | IllegalArgumentException e) {
+            // 只有库存不足、商品不存在或参数错误返回 400；数据库、锁超时、库存日志等异常交给全局处理返回 500，
+            // 调用方可以用同一个幂等键重试
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
         }
     }
 
+    // 批量扣减库存（购物车结算）：同一事务内扣减全部商品，任一商品库存不足则全部不扣
+    @PostMapping("/decrease-batch")
+    public ResponseEntity<Map<String, Object>> decreaseStockBatch(@RequestBody List<InventoryUpdateRequest> requests) {
+        try {
+            inventoryService.decreaseStockBatch(requests);
+
+            String port = environment.getProperty("local.server.port");
+            Map<String, Object> responseBody = new HashMap<>();
+            responseBody.put("message", "Stock decreased successfully.");
+            responseBody.put("port", port);
+
+            return ResponseEntity.ok(responseBody);
+
+        } catch (InsufficientStockException | IllegalArgumentException e) {
+            // 与单个扣减接口保持一致的错误处理
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // 批量增加库存（整单取消或下单失败补偿）
+    @PostMapping("/increase-batch")
+    public ResponseEntity<Map<String, Object>> increaseStockBatch(@RequestBody List<InventoryUpdateRequest> requests) {
+        inventoryService.increaseStockBatch(requests);
+
+        String port = environment.getProperty("local.server.port");
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("message", "Stock increased successfully.");
+        responseBody.put("port", port);
+
+        return ResponseEntity.ok(responseBody);
+    }
+
     // 增加库存的接口
     @PostMapping("/increase")
     public ResponseEntity<Map<String, Object>> increaseStock(@RequestBody InventoryUpdateRequest request) { // 1. 修改返回类型
@@ -160,4 +308,65 @@ public class InventoryController {
 
         return ResponseEntity.ok(responseBody);
     }
+
+    // 接收其他服务事务发件箱批量投递的库存事件，返回已确认的事件ID，未确认的由发送方重投
+    @PostMapping("/events")
+    @Operation(summary = "批量接收库存事件（内部接口）")
+    public ResponseEntity<Map<String, Object>> consumeEvents(@RequestBody List<InventoryEvent> events) {
+        List<UUID> acknowledged = inventoryEventConsumer.consume(events);
+
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("data", acknowledged);
+        responseBody.put("port", environment.getProperty("local.server.port"));
+        return ResponseEntity.ok(responseBody);
+    }
+
+    // 创建有时限的库存预留：立即扣减库存，到期未确认时自动归还
+    @PostMapping("/holds")
+    @Operation(summary = "创建库存预留")
+    public ResponseEntity<Map<String, Object>> createHold(@RequestBody StockHoldRequest request) {
+        StockHold hold;
+        try {
+            hold = stockHoldService.createHold(request.getProductId(), request.getQuantity(), request.getTtlSeconds());
+        } catch (InsufficientStockException | IllegalArgumentException e) {
+            // 参数错误、库存不足或商品不存在，与扣减接口的错误处理一致
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(holdResponse(hold));
+    }
+
+    @GetMapping("/holds/{holdId}")
+    @Operation(summary = "查询库存预留")
+    public ResponseEntity<Map<String, Object>> getHold(@PathVariable UUID holdId) {
+        return ResponseEntity.ok(holdResponse(stockHoldService.getHold(holdId)));
+    }
+
+    // 确认预留（如支付成功），确认后扣减正式生效
+    @PostMapping("/holds/{holdId}/confirm")
+    @Operation(summary = "确认库存预留")
+    public ResponseEntity<Map<String, Object>> confirmHold(@PathVariable UUID holdId) {
+        try {
+            return ResponseEntity.ok(holdResponse(stockHoldService.confirmHold(holdId)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // 释放预留（如取消结算、支付失败），立即归还库存
+    @DeleteMapping("/holds/{holdId}")
+    @Operation(summary = "释放库存预留")
+    public ResponseEntity<Map<String, Object>> releaseHold(@PathVariable UUID holdId) {
+        try {
+            return ResponseEntity.ok(holdResponse(stockHoldService.releaseHold(holdId)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> holdResponse(StockHold hold) {
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("data", hold);
+        responseBody.put("port", environment.getProperty("local.server.port"));
+        return responseBody;
+    }
 }
@@ -0,0 +1,18 @@
+package com.zjsu.pjt.inventory.dto;
+
+import lombok.Data;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 其他服务通过事务发件箱投递的库存事件，eventId 全局唯一，重复投递只处理一次。
+ * 同一 aggregateId 的事件按投递顺序处理，前一个失败时其后的事件不处理，由发送方重投。
+ */
+@Data
+public class InventoryEvent {
+    private UUID eventId;
+    private String type; // PRODUCT_CREATED / PRODUCT_DELETED / STOCK_RELEASED
+    private UUID aggregateId; // 商品ID、订单ID或结算ID
+    private UUID productId; // PRODUCT_CREATED / PRODUCT_DELETED 使用
+    private List<InventoryUpdateRequest> items; // STOCK_RELEASED 使用：需要归还的商品及数量
+}
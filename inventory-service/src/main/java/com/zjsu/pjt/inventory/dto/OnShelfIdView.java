@@ -0,0 +1,9 @@
+package com.zjsu.pjt.inventory.dto;
+
+import java.util.UUID;
+
+/**
+ * 上架商品ID只读投影，id 为库存记录主键，用作分块（keyset）遍历的游标。
+ */
+public record OnShelfIdView(Long id, UUID productId) {
+}
@@ -0,0 +1,9 @@
+package com.zjsu.pjt.inventory.dto;
+
+import java.util.UUID;
+
+/**
+ * 库存只读投影：只包含商品ID和库存数量，由 JPQL 构造表达式直接生成，不进入持久化上下文。
+ */
+public record ProductStockView(UUID productId, Integer stock) {
+}
@@ -0,0 +1,10 @@
+package com.zjsu.pjt.inventory.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 库存变更流只读投影：商品ID及其最后一次库存变更时间。
+ */
+public record StockChangeView(UUID productId, LocalDateTime stockUpdatedAt) {
+}
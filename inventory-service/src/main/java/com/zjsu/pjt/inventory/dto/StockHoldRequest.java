@@ -0,0 +1,11 @@
+package com.zjsu.pjt.inventory.dto;
+
+import lombok.Data;
+import java.util.UUID;
+
+@Data
+public class StockHoldRequest {
+    private UUID productId;
+    private Integer quantity;
+    private Long ttlSeconds; // 可选，不传时使用默认有效期
+}
@@ -0,0 +1,14 @@
+package com.zjsu.pjt.inventory.exception;
+
+import java.util.UUID;
+
+/**
+ * 库存不足或商品不存在，扣减被明确拒绝。与数据库、锁等待超时、库存日志写入失败等基础设施异常区分开：
+ * 前者返回 4xx，调用方不应重试；后者返回 5xx，调用方可以用同一个幂等键重试。
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    public InsufficientStockException(UUID productId) {
+        super("库存不足或商品不存在: " + productId);
+    }
+}
@@ -3,10 +3,13 @@ package com.zjsu.pjt.inventory.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "inventory")
+@Table(name = "inventory", indexes = {
+        @Index(name = "idx_inventory_stock_updated_at", columnList = "stockUpdatedAt")
+})
 @Data
 @NoArgsConstructor
 public class Inventory {
@@ -27,6 +30,14 @@ public class Inventory {
     @Column(nullable = false)
     private boolean onShelf = false; // 上架状态，默认为false（下架）
 
+    private LocalDateTime stockUpdatedAt; // 库存最后变更时间（数据库时钟），供商品服务的库存缓存增量失效使用
+
+    @Column(nullable = false)
+    private int shardCount = 0; // 库存分桶数，0 表示未分桶；分桶后库存主要存放在 inventory_shard 中
+
+    @Column(nullable = false)
+    private boolean memoryStock = false; // 内存库存模式：各实例领取额度后在内存中扣减，见 inventory_quota
+
     public Inventory(UUID productId, Integer stock) {
         this.productId = productId;
         this.stock = stock;
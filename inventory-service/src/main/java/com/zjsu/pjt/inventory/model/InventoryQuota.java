@@ -0,0 +1,53 @@
+package com.zjsu.pjt.inventory.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 内存库存模式下，某个库存服务实例从主记录领取的库存额度。
+ * <p>
+ * 额度在该实例内存中扣减，由后台任务定期写回 quota（同时记录已包含到的日志版本 logVersion），
+ * 实例崩溃重启后以 quota 为基础，回放本地日志中版本号大于 logVersion 的记录即可恢复精确额度。
+ * 商品总库存 = inventory.stock + 所有实例的额度之和。
+ */
+@Entity
+@Table(name = "inventory_quota",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_inventory_quota_product_instance", columnNames = {"productId", "instanceId"})
+        },
+        indexes = {
+                @Index(name = "idx_inventory_quota_updated_at", columnList = "updatedAt"),
+                @Index(name = "idx_inventory_quota_instance", columnList = "instanceId")
+        })
+@Data
+@NoArgsConstructor
+public class InventoryQuota {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id; // 主键
+
+    @Column(nullable = false)
+    private UUID productId; // 关联的商品ID
+
+    @Column(nullable = false, length = 64)
+    private String instanceId; // 持有额度的库存服务实例
+
+    @Column(nullable = false)
+    private Integer quota; // 最近一次写回时该实例持有的额度
+
+    @Column(nullable = false)
+    private Long logVersion; // quota 已包含到的日志版本号
+
+    private LocalDateTime updatedAt; // 最后写回时间（数据库时钟），并入库存变更流
+
+    public InventoryQuota(UUID productId, String instanceId) {
+        this.productId = productId;
+        this.instanceId = instanceId;
+        this.quota = 0;
+        this.logVersion = 0L;
+    }
+}
@@ -0,0 +1,46 @@
+package com.zjsu.pjt.inventory.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 热点商品的库存分桶。开启分桶后，商品库存分散在 shardCount 个分桶行中，
+ * 扣减只锁其中一行，并发下单不再全部排队等待同一行锁。
+ * 商品总库存 = inventory.stock + 所有分桶库存之和。
+ */
+@Entity
+@Table(name = "inventory_shard",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_inventory_shard_product_bucket", columnNames = {"productId", "bucket"})
+        },
+        indexes = {
+                @Index(name = "idx_inventory_shard_stock_updated_at", columnList = "stockUpdatedAt")
+        })
+@Data
+@NoArgsConstructor
+public class InventoryShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id; // 主键
+
+    @Column(nullable = false)
+    private UUID productId; // 关联的商品ID
+
+    @Column(nullable = false)
+    private Integer bucket; // 分桶序号，从 0 开始
+
+    @Column(nullable = false)
+    private Integer stock; // 该分桶中的库存数量
+
+    private LocalDateTime stockUpdatedAt; // 分桶库存最后变更时间（数据库时钟），并入库存变更流
+
+    public InventoryShard(UUID productId, Integer bucket, Integer stock) {
+        this.productId = productId;
+        this.bucket = bucket;
+        this.stock = stock;
+    }
+}
@@ -0,0 +1,41 @@
+package com.zjsu.pjt.inventory.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 已处理的库存事件，与事件的业务效果在同一事务中写入；重复投递的事件因唯一键冲突被识别并跳过。
+ */
+@Entity
+@Table(name = "processed_event",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_processed_event_event_id", columnNames = {"eventId"})
+        },
+        indexes = {
+                @Index(name = "idx_processed_event_processed_at", columnList = "processedAt")
+        })
+@Data
+@NoArgsConstructor
+public class ProcessedEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id; // 主键
+
+    @Column(nullable = false)
+    private UUID eventId; // 发送方生成的事件ID
+
+    @Column(nullable = false, length = 32)
+    private String type; // 事件类型
+
+    @Column(nullable = false)
+    private LocalDateTime processedAt = LocalDateTime.now(); // 处理时间，超过保留期后清理
+
+    public ProcessedEvent(UUID eventId, String type) {
+        this.eventId = eventId;
+        this.type = type;
+    }
+}
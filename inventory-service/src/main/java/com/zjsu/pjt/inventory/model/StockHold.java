@@ -0,0 +1,57 @@
+package com.zjsu.pjt.inventory.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 有时限的库存预留。创建时即从库存中扣减，在 expiresAt 之前确认（confirmed）则扣减生效，
+ * 主动释放（released）或超时（expired）则把数量归还库存。
+ * <p>
+ * 到期扫描只走 (status, expiresAt) 索引的范围查询，未到期的预留再多也不会被扫描到。
+ */
+@Entity
+@Table(name = "stock_hold",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_stock_hold_hold_id", columnNames = {"holdId"})
+        },
+        indexes = {
+                @Index(name = "idx_stock_hold_status_expires_at", columnList = "status, expiresAt")
+        })
+@Data
+@NoArgsConstructor
+public class StockHold {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id; // 主键
+
+    @Column(nullable = false)
+    private UUID holdId; // 对外暴露的预留ID
+
+    @Column(nullable = false)
+    private UUID productId; // 关联的商品ID
+
+    @Column(nullable = false)
+    private Integer quantity; // 预留数量
+
+    @Column(nullable = false, length = 16)
+    private String status = "held"; // 预留状态：held / confirmed / released / expired
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt; // 到期时间，到期前未确认的预留由后台任务归还库存
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now(); // 创建时间
+
+    private LocalDateTime updatedAt; // 最后一次状态变更时间
+
+    public StockHold(UUID holdId, UUID productId, Integer quantity, LocalDateTime expiresAt) {
+        this.holdId = holdId;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+}
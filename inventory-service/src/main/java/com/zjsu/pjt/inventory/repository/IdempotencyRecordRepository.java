@@ -0,0 +1,35 @@
+package com.zjsu.pjt.inventory.repository;
+
+import com.zjsu.pjt.inventory.model.IdempotencyRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByScopeAndIdempotencyKey(String scope, String idempotencyKey);
+
+    // 接管租约已过期的 processing 记录，条件更新保证只有一个重试者接管成功
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.expiresAt = :lease " +
+            "WHERE r.id = :id AND r.status = 'processing' AND r.expiresAt < :now")
+    int takeOver(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("lease") LocalDateTime lease);
+
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = 'completed', r.responseStatus = :responseStatus, " +
+            "r.responseContentType = :contentType, r.responseBody = :body, r.expiresAt = :expiresAt WHERE r.id = :id")
+    int complete(@Param("id") Long id, @Param("responseStatus") Integer responseStatus,
+                 @Param("contentType") String contentType, @Param("body") String body,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+
+    // 已过期的记录ID，分批清理
+    @Query("SELECT r.id FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    List<Long> findExpiredIds(@Param("now") LocalDateTime now, Pageable pageable);
+}
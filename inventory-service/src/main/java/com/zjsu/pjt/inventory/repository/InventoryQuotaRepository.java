@@ -0,0 +1,60 @@
+package com.zjsu.pjt.inventory.repository;
+
+import com.zjsu.pjt.inventory.dto.ProductStockView;
+import com.zjsu.pjt.inventory.dto.StockChangeView;
+import com.zjsu.pjt.inventory.model.InventoryQuota;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface InventoryQuotaRepository extends JpaRepository<InventoryQuota, Long> {
+
+    List<InventoryQuota> findByInstanceId(String instanceId);
+
+    Optional<InventoryQuota> findByProductIdAndInstanceId(UUID productId, String instanceId);
+
+    // 领取或归还额度（delta 可为负），只由持有该额度的实例在其额度锁内调用
+    @Modifying
+    @Query("UPDATE InventoryQuota q SET q.quota = q.quota + :delta, q.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE q.productId = :productId AND q.instanceId = :instanceId")
+    int addQuota(@Param("productId") UUID productId, @Param("instanceId") String instanceId, @Param("delta") Integer delta);
+
+    // 写回内存中的额度快照及其对应的日志版本
+    @Modifying
+    @Query("UPDATE InventoryQuota q SET q.quota = :quota, q.logVersion = :logVersion, q.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE q.productId = :productId AND q.instanceId = :instanceId")
+    int saveSnapshot(@Param("productId") UUID productId, @Param("instanceId") String instanceId,
+                     @Param("quota") Integer quota, @Param("logVersion") Long logVersion);
+
+    @Modifying
+    @Query("DELETE FROM InventoryQuota q WHERE q.productId = :productId AND q.instanceId = :instanceId")
+    int deleteByProductIdAndInstanceId(@Param("productId") UUID productId, @Param("instanceId") String instanceId);
+
+    @Modifying
+    @Query("DELETE FROM InventoryQuota q WHERE q.productId = :productId")
+    int deleteByProductId(@Param("productId") UUID productId);
+
+    // 批量汇总各实例持有的额度，调用方负责把ID列表切分为有限大小的块
+    @Query("SELECT new com.zjsu.pjt.inventory.dto.ProductStockView(q.productId, CAST(SUM(q.quota) AS Integer)) " +
+            "FROM InventoryQuota q WHERE q.productId IN :productIds GROUP BY q.productId")
+    List<ProductStockView> sumQuotaByProductIdIn(@Param("productIds") Collection<UUID> productIds);
+
+    @Query("SELECT COALESCE(SUM(q.quota), 0) FROM InventoryQuota q WHERE q.productId = :productId")
+    long sumQuotaByProductId(@Param("productId") UUID productId);
+
+    // 某时间点之后额度写回过的商品，每个商品只返回其最新的写回时间
+    @Query("SELECT new com.zjsu.pjt.inventory.dto.StockChangeView(q.productId, MAX(q.updatedAt)) " +
+            "FROM InventoryQuota q WHERE q.updatedAt > :since GROUP BY q.productId")
+    List<StockChangeView> findQuotaChangesAfter(@Param("since") LocalDateTime since);
+
+    @Query("SELECT MAX(q.updatedAt) FROM InventoryQuota q")
+    LocalDateTime findLatestUpdatedAt();
+}
@@ -1,10 +1,18 @@
 package com.zjsu.pjt.inventory.repository;
 
+import com.zjsu.pjt.inventory.dto.OnShelfIdView;
+import com.zjsu.pjt.inventory.dto.ProductStockView;
+import com.zjsu.pjt.inventory.dto.StockChangeView;
 import com.zjsu.pjt.inventory.model.Inventory;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.UUID;
 import java.util.List;
 import org.springframework.data.repository.query.Param;
@@ -16,7 +24,7 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
 
 
     @Modifying
-    @Query("UPDATE Inventory i SET i.stock = :stock WHERE i.productId = :productId")
+    @Query("UPDATE Inventory i SET i.stock = :stock, i.stockUpdatedAt = CURRENT_TIMESTAMP WHERE i.productId = :productId")
     int updateStockByProductId(@Param("productId") UUID productId, @Param("stock") Integer stock);
 
     // 根据商品ID查找库存
@@ -24,6 +32,23 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
 
     List<Inventory> findByProductIdIn(List<UUID> productIds);
 
+    // --- 只读投影查询：只取需要的列，直接构造 record，不加载托管实体、不做脏检查 ---
+
+    // 批量查询库存，调用方负责把ID列表切分为有限大小的块
+    @Query("SELECT new com.zjsu.pjt.inventory.dto.ProductStockView(i.productId, i.stock) " +
+            "FROM Inventory i WHERE i.productId IN :productIds")
+    List<ProductStockView> findStockViewsByProductIdIn(@Param("productIds") Collection<UUID> productIds);
+
+    // 按主键游标分块读取上架商品ID（keyset 分页，不使用 OFFSET）
+    @Query("SELECT new com.zjsu.pjt.inventory.dto.OnShelfIdView(i.id, i.productId) " +
+            "FROM Inventory i WHERE i.onShelf = true AND i.id > :afterId ORDER BY i.id")
+    List<OnShelfIdView> findOnShelfIdChunk(@Param("afterId") Long afterId, Pageable pageable);
+
+    // 查询某时间点之后库存发生过变更的商品（走 idx_inventory_stock_updated_at 索引）
+    @Query("SELECT new com.zjsu.pjt.inventory.dto.StockChangeView(i.productId, i.stockUpdatedAt) " +
+            "FROM Inventory i WHERE i.stockUpdatedAt > :since ORDER BY i.stockUpdatedAt")
+    List<StockChangeView> findStockChangesAfter(@Param("since") LocalDateTime since);
+
 
     // 查询所有上架状态为true的库存记录
     List<Inventory> findByOnShelfTrue();
@@ -31,14 +56,45 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
     // 【关键】使用原子操作扣减库存，防止超卖
     // 返回值int表示更新的行数。如果为1，表示扣减成功；如果为0，表示库存不足或商品不存在
     @Modifying
-    @Query("UPDATE Inventory i SET i.stock = i.stock - :quantity WHERE i.productId = :productId AND i.stock >= :quantity")
+    @Query("UPDATE Inventory i SET i.stock = i.stock - :quantity, i.stockUpdatedAt = CURRENT_TIMESTAMP WHERE i.productId = :productId AND i.stock >= :quantity")
     int decreaseStock(UUID productId, Integer quantity);
 
     // 增加库存（例如取消订单时）
     @Modifying
-    @Query("UPDATE Inventory i SET i.stock = i.stock + :quantity WHERE i.productId = :productId")
+    @Query("UPDATE Inventory i SET i.stock = i.stock + :quantity, i.stockUpdatedAt = CURRENT_TIMESTAMP WHERE i.productId = :productId")
     void increaseStock(UUID productId, Integer quantity);
 
+    // 当前最新的库存变更时间，作为调用方首次同步的起始水位线
+    @Query("SELECT MAX(i.stockUpdatedAt) FROM Inventory i")
+    LocalDateTime findLatestStockUpdatedAt();
+
+    // --- 库存分桶 ---
+
+    // 查询商品的分桶数（普通一致性读，不加锁），商品不存在时为空
+    @Query("SELECT i.shardCount FROM Inventory i WHERE i.productId = :productId")
+    Optional<Integer> findShardCountByProductId(@Param("productId") UUID productId);
+
+    // 锁定商品的库存主记录。需要同时锁定分桶的操作一律先锁主记录、再按分桶序号锁分桶
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Inventory i WHERE i.productId = :productId")
+    Optional<Inventory> findByProductIdForUpdate(@Param("productId") UUID productId);
+
+    @Modifying
+    @Query("UPDATE Inventory i SET i.shardCount = :shardCount WHERE i.productId = :productId")
+    int updateShardCount(@Param("productId") UUID productId, @Param("shardCount") int shardCount);
+
+    @Query("SELECT i.productId FROM Inventory i WHERE i.shardCount > 0")
+    List<UUID> findShardedProductIds();
+
+    // --- 内存库存模式 ---
+
+    @Modifying
+    @Query("UPDATE Inventory i SET i.memoryStock = :enabled WHERE i.productId = :productId")
+    int updateMemoryStock(@Param("productId") UUID productId, @Param("enabled") boolean enabled);
+
+    @Query("SELECT i.productId FROM Inventory i WHERE i.memoryStock = true")
+    List<UUID> findMemoryStockProductIds();
+
     // 根据商品ID删除库存记录
     void deleteByProductId(UUID productId);
 
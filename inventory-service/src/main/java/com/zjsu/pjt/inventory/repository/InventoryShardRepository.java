@@ -0,0 +1,65 @@
+package com.zjsu.pjt.inventory.repository;
+
+import com.zjsu.pjt.inventory.dto.ProductStockView;
+import com.zjsu.pjt.inventory.dto.StockChangeView;
+import com.zjsu.pjt.inventory.model.InventoryShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface InventoryShardRepository extends JpaRepository<InventoryShard, Long> {
+
+    // 在单个分桶上原子扣减，条件与 InventoryRepository.decreaseStock 相同，保证分桶库存不会为负
+    @Modifying
+    @Query("UPDATE InventoryShard s SET s.stock = s.stock - :quantity, s.stockUpdatedAt = CURRENT_TIMESTAMP " +
+            "WHERE s.productId = :productId AND s.bucket = :bucket AND s.stock >= :quantity")
+    int decreaseStock(@Param("productId") UUID productId, @Param("bucket") Integer bucket, @Param("quantity") Integer quantity);
+
+    @Modifying
+    @Query("UPDATE InventoryShard s SET s.stock = s.stock + :quantity, s.stockUpdatedAt = CURRENT_TIMESTAMP " +
+            "WHERE s.productId = :productId AND s.bucket = :bucket")
+    int increaseStock(@Param("productId") UUID productId, @Param("bucket") Integer bucket, @Param("quantity") Integer quantity);
+
+    @Modifying
+    @Query("UPDATE InventoryShard s SET s.stock = :stock, s.stockUpdatedAt = CURRENT_TIMESTAMP " +
+            "WHERE s.productId = :productId AND s.bucket = :bucket")
+    int updateStock(@Param("productId") UUID productId, @Param("bucket") Integer bucket, @Param("stock") Integer stock);
+
+    // 按分桶序号顺序加行锁，所有需要锁定全部分桶的操作都经由此方法，加锁顺序一致
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM InventoryShard s WHERE s.productId = :productId ORDER BY s.bucket")
+    List<InventoryShard> findByProductIdForUpdate(@Param("productId") UUID productId);
+
+    // 按分桶序号读取各分桶库存（普通一致性读，不加锁），供再平衡判断是否需要加锁调整
+    @Query("SELECT s.stock FROM InventoryShard s WHERE s.productId = :productId ORDER BY s.bucket")
+    List<Integer> findBucketStocks(@Param("productId") UUID productId);
+
+    // 批量汇总分桶库存，调用方负责把ID列表切分为有限大小的块
+    @Query("SELECT new com.zjsu.pjt.inventory.dto.ProductStockView(s.productId, CAST(SUM(s.stock) AS Integer)) " +
+            "FROM InventoryShard s WHERE s.productId IN :productIds GROUP BY s.productId")
+    List<ProductStockView> sumStockByProductIdIn(@Param("productIds") Collection<UUID> productIds);
+
+    @Query("SELECT COALESCE(SUM(s.stock), 0) FROM InventoryShard s WHERE s.productId = :productId")
+    long sumStockByProductId(@Param("productId") UUID productId);
+
+    // 某时间点之后分桶库存发生过变更的商品，每个商品只返回其最新的变更时间
+    @Query("SELECT new com.zjsu.pjt.inventory.dto.StockChangeView(s.productId, MAX(s.stockUpdatedAt)) " +
+            "FROM InventoryShard s WHERE s.stockUpdatedAt > :since GROUP BY s.productId")
+    List<StockChangeView> findStockChangesAfter(@Param("since") LocalDateTime since);
+
+    @Query("SELECT MAX(s.stockUpdatedAt) FROM InventoryShard s")
+    LocalDateTime findLatestStockUpdatedAt();
+
+    @Modifying
+    @Query("DELETE FROM InventoryShard s WHERE s.productId = :productId")
+    int deleteByProductId(@Param("productId") UUID productId);
+}
@@ -0,0 +1,21 @@
+package com.zjsu.pjt.inventory.repository;
+
+import com.zjsu.pjt.inventory.model.ProcessedEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, Long> {
+
+    boolean existsByEventId(UUID eventId);
+
+    // 超过保留期的记录ID，分批清理
+    @Query("SELECT e.id FROM ProcessedEvent e WHERE e.processedAt < :cutoff")
+    List<Long> findIdsProcessedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+}
@@ -0,0 +1,52 @@
+package com.zjsu.pjt.inventory.repository;
+
+import com.zjsu.pjt.inventory.model.StockHold;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface StockHoldRepository extends JpaRepository<StockHold, Long> {
+
+    Optional<StockHold> findByHoldId(UUID holdId);
+
+    // 确认预留：只有仍处于 held 且未到期的预留可以确认
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StockHold h SET h.status = 'confirmed', h.updatedAt = :now " +
+            "WHERE h.holdId = :holdId AND h.status = 'held' AND h.expiresAt > :now")
+    int confirm(@Param("holdId") UUID holdId, @Param("now") LocalDateTime now);
+
+    // 结束预留（released / expired），条件更新保证每个预留只归还一次库存
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StockHold h SET h.status = :status, h.updatedAt = :now " +
+            "WHERE h.holdId = :holdId AND h.status = 'held'")
+    int finish(@Param("holdId") UUID holdId, @Param("status") String status, @Param("now") LocalDateTime now);
+
+    // 批量标记到期，调用方已用 findDueForUpdate 锁住这些行
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StockHold h SET h.status = 'expired', h.updatedAt = :now WHERE h.id IN :ids AND h.status = 'held'")
+    int markExpired(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // 到期未确认的预留，按到期时间升序取一批并加锁；SKIP LOCKED 使多个实例的扫描任务各取不同的行
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT h FROM StockHold h WHERE h.status = 'held' AND h.expiresAt <= :now ORDER BY h.expiresAt")
+    List<StockHold> findDueForUpdate(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // 已结束且到期时间早于 cutoff 的预留ID，分批清理
+    @Query("SELECT h.id FROM StockHold h WHERE h.status IN :statuses AND h.expiresAt < :cutoff")
+    List<Long> findFinishedIdsBefore(@Param("statuses") Collection<String> statuses,
+                                     @Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+}
@@ -0,0 +1,118 @@
+package com.zjsu.pjt.inventory.service;
+
+import com.zjsu.pjt.inventory.model.IdempotencyRecord;
+import com.zjsu.pjt.inventory.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 幂等键存储，记录保存在数据库中，多个实例共享，同一个键无论落到哪个实例都只执行一次。
+ * <p>
+ * 每个方法各自一个短事务：占用键的插入必须先于业务事务提交，并发的重复请求才能立即看到它。
+ * 记录按 ttl-seconds 过期并由定时任务分批删除，表的大小只与 ttl 内的请求量有关。
+ */
+@Service
+@Slf4j
+public class IdempotencyStore {
+
+    public enum Outcome {
+        ACQUIRED,    // 本请求获得执行权
+        REPLAY,      // 原请求已完成，返回其响应
+        IN_PROGRESS, // 原请求仍在执行
+        MISMATCH     // 同一个键对应了不同的请求体
+    }
+
+    public record Claim(Outcome outcome, IdempotencyRecord record) {
+    }
+
+    private static final int PURGE_BATCH_SIZE = 500;
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final TransactionTemplate transaction;
+    private final long ttlSeconds;
+    private final long leaseSeconds;
+
+    public IdempotencyStore(IdempotencyRecordRepository recordRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${inventory.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                            @Value("${inventory.idempotency.lease-seconds:30}") long leaseSeconds) {
+        this.recordRepository = recordRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.ttlSeconds = ttlSeconds;
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    /**
+     * 尝试占用幂等键。键不存在时插入 processing 记录并获得执行权；
+     * 已存在时按记录状态返回重放、执行中或请求体不一致，租约已过期的 processing 记录由本请求接管。
+     */
+    public Claim claim(String scope, String key, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            IdempotencyRecord created = transaction.execute(status -> recordRepository.saveAndFlush(
+                    new IdempotencyRecord(scope, key, requestHash, now.plusSeconds(leaseSeconds))));
+            return new Claim(Outcome.ACQUIRED, created);
+        } catch (DataIntegrityViolationException e) {
+            // 唯一键冲突：该键已被占用，按已有记录处理
+        }
+        IdempotencyRecord existing = recordRepository.findByScopeAndIdempotencyKey(scope, key).orElse(null);
+        if (existing == null) {
+            // 冲突后记录恰好被清理，视为仍在执行，由调用方稍后重试
+            return new Claim(Outcome.IN_PROGRESS, null);
+        }
+        if (!existing.getRequestHash().equals(requestHash)) {
+            return new Claim(Outcome.MISMATCH, existing);
+        }
+        if ("completed".equals(existing.getStatus())) {
+            return new Claim(Outcome.REPLAY, existing);
+        }
+        Integer taken = transaction.execute(status ->
+                recordRepository.takeOver(existing.getId(), now, now.plusSeconds(leaseSeconds)));
+        if (taken != null && taken == 1) {
+            log.warn("幂等键 {} ({}) 的原请求执行超时，由本次请求接管", key, scope);
+            return new Claim(Outcome.ACQUIRED, existing);
+        }
+        return new Claim(Outcome.IN_PROGRESS, existing);
+    }
+
+    /**
+     * 保存原始响应，此后同一个键的请求直接重放该响应。
+     */
+    public void complete(IdempotencyRecord record, int responseStatus, String contentType, String body) {
+        transaction.executeWithoutResult(status -> recordRepository.complete(record.getId(), responseStatus,
+                contentType, body, LocalDateTime.now().plusSeconds(ttlSeconds)));
+    }
+
+    /**
+     * 放弃幂等键（请求以服务端错误结束，业务已回滚），允许调用方用同一个键重试。
+     */
+    public void abandon(IdempotencyRecord record) {
+        transaction.executeWithoutResult(status -> recordRepository.deleteAllByIdInBatch(List.of(record.getId())));
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        try {
+            List<Long> ids;
+            do {
+                LocalDateTime now = LocalDateTime.now();
+                ids = recordRepository.findExpiredIds(now, PageRequest.of(0, PURGE_BATCH_SIZE));
+                if (!ids.isEmpty()) {
+                    List<Long> batch = ids;
+                    transaction.executeWithoutResult(status -> recordRepository.deleteAllByIdInBatch(batch));
+                }
+            } while (ids.size() == PURGE_BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("清理过期幂等键失败，下一轮重试。原因: {}", e.getMessage());
+        }
+    }
+}
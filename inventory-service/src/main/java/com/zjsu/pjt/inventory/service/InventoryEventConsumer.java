@@ -0,0 +1,124 @@
+package com.zjsu.pjt.inventory.service;
+
+import com.zjsu.pjt.inventory.dto.InventoryEvent;
+import com.zjsu.pjt.inventory.model.ProcessedEvent;
+import com.zjsu.pjt.inventory.repository.InventoryRepository;
+import com.zjsu.pjt.inventory.repository.ProcessedEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 库存事件的幂等消费者：商品服务、订单服务通过各自的事务发件箱批量投递事件，这里逐个处理。
+ * <p>
+ * 每个事件一个事务，先写入 processed_event 再执行业务效果，两者同时提交或同时回滚；
+ * 重复投递的事件（发送方重试、多个中继实例同时投递）只确认、不重复执行。
+ */
+@Service
+@Slf4j
+public class InventoryEventConsumer {
+
+    public static final String PRODUCT_CREATED = "PRODUCT_CREATED";
+    public static final String PRODUCT_DELETED = "PRODUCT_DELETED";
+    public static final String STOCK_RELEASED = "STOCK_RELEASED";
+
+    private static final int PURGE_BATCH_SIZE = 500;
+
+    private final InventoryService inventoryService;
+    private final InventoryRepository inventoryRepository;
+    private final ProcessedEventRepository processedEventRepository;
+    private final TransactionTemplate transaction;
+    private final long retentionDays;
+
+    public InventoryEventConsumer(InventoryService inventoryService,
+                                  InventoryRepository inventoryRepository,
+                                  ProcessedEventRepository processedEventRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${inventory.events.retention-days:7}") long retentionDays) {
+        this.inventoryService = inventoryService;
+        this.inventoryRepository = inventoryRepository;
+        this.processedEventRepository = processedEventRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * 按顺序处理一批事件。某个事件失败后，同一 aggregateId 的后续事件本批不再处理，保证同一对象的事件不乱序。
+     *
+     * @return 已确认的事件ID（包括此前已处理过的重复事件），发送方据此从发件箱中删除
+     */
+    public List<UUID> consume(List<InventoryEvent> events) {
+        List<UUID> acknowledged = new ArrayList<>(events.size());
+        Set<UUID> blocked = new HashSet<>();
+        for (InventoryEvent event : events) {
+            if (event.getEventId() == null || event.getType() == null) {
+                log.warn("忽略缺少 eventId 或 type 的库存事件: {}", event);
+                continue;
+            }
+            if (event.getAggregateId() != null && blocked.contains(event.getAggregateId())) {
+                continue;
+            }
+            try {
+                transaction.executeWithoutResult(status -> apply(event));
+                acknowledged.add(event.getEventId());
+            } catch (RuntimeException e) {
+                if (e instanceof DataIntegrityViolationException && processedEventRepository.existsByEventId(event.getEventId())) {
+                    // 另一个实例同时处理了同一事件
+                    acknowledged.add(event.getEventId());
+                    continue;
+                }
+                log.warn("库存事件 {} ({}) 处理失败，等待发送方重投。原因: {}", event.getEventId(), event.getType(), e.getMessage());
+                if (event.getAggregateId() != null) {
+                    blocked.add(event.getAggregateId());
+                }
+            }
+        }
+        return acknowledged;
+    }
+
+    private void apply(InventoryEvent event) {
+        if (processedEventRepository.existsByEventId(event.getEventId())) {
+            return;
+        }
+        processedEventRepository.saveAndFlush(new ProcessedEvent(event.getEventId(), event.getType()));
+        switch (event.getType()) {
+            case PRODUCT_CREATED -> {
+                if (inventoryRepository.findByProductId(event.getProductId()).isEmpty()) {
+                    inventoryService.createInventory(event.getProductId(), 0);
+                }
+            }
+            case PRODUCT_DELETED -> inventoryService.deleteInventory(event.getProductId());
+            case STOCK_RELEASED -> inventoryService.increaseStockBatch(event.getItems());
+            default -> throw new IllegalArgumentException("未知的库存事件类型: " + event.getType());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.events.purge-interval-ms:3600000}")
+    public void purgeProcessed() {
+        try {
+            List<Long> ids;
+            do {
+                ids = processedEventRepository.findIdsProcessedBefore(LocalDateTime.now().minusDays(retentionDays),
+                        PageRequest.of(0, PURGE_BATCH_SIZE));
+                if (!ids.isEmpty()) {
+                    List<Long> batch = ids;
+                    transaction.executeWithoutResult(status -> processedEventRepository.deleteAllByIdInBatch(batch));
+                }
+            } while (ids.size() == PURGE_BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("清理已处理库存事件失败，下一轮重试。原因: {}", e.getMessage());
+        }
+    }
+}
@@ -1,14 +1,41 @@
 package com.zjsu.pjt.inventory.service;
 
+import com.zjsu.pjt.inventory.dto.InventoryUpdateRequest;
+import com.zjsu.pjt.inventory.dto.OnShelfIdView;
+import com.zjsu.pjt.inventory.dto.ProductStockView;
+import com.zjsu.pjt.inventory.dto.StockChangeView;
+import com.zjsu.pjt.inventory.repository.InventoryQuotaRepository;
 import com.zjsu.pjt.inventory.repository.InventoryRepository;
+import com.zjsu.pjt.inventory.repository.InventoryShardRepository;
+import com.zjsu.pjt.inventory.util.DecrementCoalescer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import java.util.UUID;
 import com.zjsu.pjt.inventory.exception.ResourceNotFoundException;
+import com.zjsu.pjt.inventory.exception.InsufficientStockException;
 import com.zjsu.pjt.inventory.model.Inventory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map; // 导入 Map
-import java.util.stream.Collectors;
+import java.util.SortedMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.List;
 
 @Service
@@ -17,16 +44,140 @@ public class InventoryService {
 
     private final InventoryRepository inventoryRepository;
 
+    private final ApplicationEventPublisher eventPublisher;
 
+    // 热点商品的分桶库存，未开启分桶的商品不受影响
+    private final ShardedStockService shardedStockService;
+
+    private final InventoryShardRepository shardRepository;
+
+    // 热点商品的内存库存，命中时扣减不访问数据库
+    private final MemoryStockEngine memoryStockEngine;
+
+    private final InventoryQuotaRepository quotaRepository;
+
+    private final PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // 库存增减走编程式事务：内存库存命中时不开启事务、不占用数据库连接
+    // 扣减使用 READ COMMITTED：分桶扣减未命中的条件更新会立即释放行锁，见 ShardedStockService
+    private TransactionTemplate decreaseTransaction;
+
+    private TransactionTemplate increaseTransaction;
+
+    // 同一商品的并发扣减合并：window-micros 内到达的请求（最多 max-batch 个）在一个事务中按到达顺序分配库存
+    @Value("${inventory.decrease-coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Value("${inventory.decrease-coalescing.window-micros:2000}")
+    private long coalescingWindowMicros;
+
+    @Value("${inventory.decrease-coalescing.max-batch:64}")
+    private int coalescingMaxBatch;
+
+    private DecrementCoalescer decrementCoalescer;
+
+    // 已知开启了分桶的商品：绕过扣减合并，直接走分桶快路径。仅作路由提示，扣减时仍会重新读取分桶数
+    private final Set<UUID> shardedProducts = ConcurrentHashMap.newKeySet();
+
+    // 只读批量查询的分块大小：限制单条 SQL 的 IN 参数个数和单次加载的行数
+    private static final int READ_CHUNK_SIZE = 1000;
+
+    @PostConstruct
+    void initTransactionTemplates() {
+        decreaseTransaction = new TransactionTemplate(transactionManager);
+        decreaseTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        increaseTransaction = new TransactionTemplate(transactionManager);
+        if (coalescingEnabled) {
+            decrementCoalescer = new DecrementCoalescer(TimeUnit.MICROSECONDS.toNanos(coalescingWindowMicros),
+                    Math.max(1, coalescingMaxBatch), this::applyDecrementBatch);
+        }
+    }
+
+    /**
+     * 批量查询库存。按 READ_CHUNK_SIZE 分块执行投影查询，只读取 (productId, stock) 两列，
+     * 避免超大 IN 列表拖垮执行计划，也不会把整批结果物化为托管实体。
+     * 开启分桶的商品再加上各分桶库存之和、内存库存模式的商品再加上各实例额度之和（同一只读事务内读取，快照一致）。
+     */
     @Transactional(readOnly = true)
     public Map<UUID, Integer> getStocksByProductIds(List<UUID> productIds) {
-        return inventoryRepository.findByProductIdIn(productIds).stream()
-                .collect(Collectors.toMap(Inventory::getProductId, Inventory::getStock));
+        Map<UUID, Integer> stockMap = new HashMap<>(productIds.size() * 4 / 3 + 1);
+        for (int from = 0; from < productIds.size(); from += READ_CHUNK_SIZE) {
+            List<UUID> chunk = productIds.subList(from, Math.min(from + READ_CHUNK_SIZE, productIds.size()));
+            for (ProductStockView view : inventoryRepository.findStockViewsByProductIdIn(chunk)) {
+                stockMap.put(view.productId(), view.stock());
+            }
+            for (ProductStockView shardSum : shardRepository.sumStockByProductIdIn(chunk)) {
+                stockMap.merge(shardSum.productId(), shardSum.stock(), Integer::sum);
+            }
+            for (ProductStockView quotaSum : quotaRepository.sumQuotaByProductIdIn(chunk)) {
+                stockMap.merge(quotaSum.productId(), quotaSum.stock(), Integer::sum);
+            }
+        }
+        return stockMap;
+    }
+
+    /**
+     * 按主键顺序分块遍历所有上架商品ID，每块最多 READ_CHUNK_SIZE 行，内存占用与上架商品总数无关。
+     *
+     * @param consumer 逐个接收上架商品ID
+     */
+    @Transactional(readOnly = true)
+    public void forEachOnShelfProductId(Consumer<UUID> consumer) {
+        Long afterId = 0L;
+        PageRequest chunk = PageRequest.of(0, READ_CHUNK_SIZE);
+        List<OnShelfIdView> rows;
+        do {
+            rows = inventoryRepository.findOnShelfIdChunk(afterId, chunk);
+            for (OnShelfIdView row : rows) {
+                consumer.accept(row.productId());
+            }
+            if (!rows.isEmpty()) {
+                afterId = rows.get(rows.size() - 1).id();
+            }
+        } while (rows.size() == READ_CHUNK_SIZE);
+    }
+
+    /**
+     * 查询指定时间点之后发生过库存变更的商品ID，供商品服务的库存近端缓存做增量失效。
+     *
+     * @param since 上次同步到的水位线（不含）
+     * @return 变更记录列表，按变更时间升序（包含分桶库存和内存库存额度写回的变更）
+     */
+    @Transactional(readOnly = true)
+    public List<StockChangeView> getStockChangesSince(LocalDateTime since) {
+        List<StockChangeView> changes = new ArrayList<>(inventoryRepository.findStockChangesAfter(since));
+        List<StockChangeView> shardChanges = shardRepository.findStockChangesAfter(since);
+        List<StockChangeView> quotaChanges = quotaRepository.findQuotaChangesAfter(since);
+        if (!shardChanges.isEmpty() || !quotaChanges.isEmpty()) {
+            changes.addAll(shardChanges);
+            changes.addAll(quotaChanges);
+            changes.sort(Comparator.comparing(StockChangeView::stockUpdatedAt));
+        }
+        return changes;
+    }
+
+    @Transactional(readOnly = true)
+    public LocalDateTime getLatestStockChangeTime() {
+        LocalDateTime latest = later(inventoryRepository.findLatestStockUpdatedAt(), shardRepository.findLatestStockUpdatedAt());
+        return later(latest, quotaRepository.findLatestUpdatedAt());
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null || (b != null && b.isAfter(a))) {
+            return b;
+        }
+        return a;
     }
 
     @Transactional
     public void deleteInventory(UUID productId) {
+        shardRepository.deleteByProductId(productId);
+        quotaRepository.deleteByProductId(productId);
         inventoryRepository.deleteByProductId(productId);
+        eventPublisher.publishEvent(new OnShelfChangedEvent(productId));
     }
 
     // 更新上架状态的业务方法
@@ -36,6 +187,7 @@ public class InventoryService {
         if (updatedRows == 0) {
             throw new ResourceNotFoundException("找不到商品ID为 " + productId + " 的库存记录，无法更新上架状态。");
         }
+        eventPublisher.publishEvent(new OnShelfChangedEvent(productId));
     }
 
     @Transactional
@@ -43,6 +195,16 @@ public class InventoryService {
         if (newStock < 0) {
             throw new IllegalArgumentException("库存数量不能为负数。");
         }
+        Inventory inventory = inventoryRepository.findByProductId(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("找不到商品ID为 " + productId + " 的库存记录，无法更新库存。"));
+        if (inventory.isMemoryStock()) {
+            // 各实例额度中的库存只能由各实例自己扣减或归还，无法在此直接设为某个总量
+            throw new IllegalStateException("商品 " + productId + " 已开启内存库存模式，请先关闭后再直接修改库存。");
+        }
+        if (inventory.getShardCount() > 0) {
+            shardedStockService.updateTotal(productId, newStock);
+            return;
+        }
         int updatedRows = inventoryRepository.updateStockByProductId(productId, newStock);
         if (updatedRows == 0) {
             throw new ResourceNotFoundException("找不到商品ID为 " + productId + " 的库存记录，无法更新库存。");
@@ -53,13 +215,21 @@ public class InventoryService {
      * 根据商品ID获取库存信息。
      *
      * @param productId 商品的UUID
-     * @return 对应的库存对象
+     * @return 对应的库存对象，开启分桶或内存库存模式的商品 stock 为总库存
      * @throws ResourceNotFoundException 如果找不到该商品的库存记录
      */
     @Transactional(readOnly = true) // 这是一个只读操作，标记为 readOnly 可以优化性能
     public Inventory getInventoryByProductId(UUID productId) {
-        return inventoryRepository.findByProductId(productId)
+        Inventory inventory = inventoryRepository.findByProductId(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Inventory not found for product id: " + productId));
+        if (inventory.getShardCount() > 0 || inventory.isMemoryStock()) {
+            // 先脱离持久化上下文，再把分桶库存和各实例额度汇总到返回对象上，不会写回数据库
+            entityManager.detach(inventory);
+            inventory.setStock(Math.toIntExact(inventory.getStock()
+                    + shardRepository.sumStockByProductId(productId)
+                    + quotaRepository.sumQuotaByProductId(productId)));
+        }
+        return inventory;
     }
 
     @Transactional
@@ -71,20 +241,170 @@ public class InventoryService {
         // 创建新的库存对象
         Inventory newInventory = new Inventory(productId, initialStock);
         // 保存到数据库并返回
-        return inventoryRepository.save(newInventory);
+        Inventory saved = inventoryRepository.save(newInventory);
+        eventPublisher.publishEvent(new OnShelfChangedEvent(productId));
+        return saved;
     }
 
-    @Transactional
+    /**
+     * 扣减库存。本实例对该商品开启了内存库存时直接在内存额度中扣减，否则在数据库事务中扣减；
+     * 开启扣减合并时，同一商品的并发请求合并为一个事务，每个调用方仍得到各自的结果。
+     * 开启分桶的商品不参与合并：分桶快路径本身就让并发扣减分散到不同的行上，合并反而会把它们串行化。
+     */
     public void decreaseStock(UUID productId, Integer quantity) {
-        int updatedRows = inventoryRepository.decreaseStock(productId, quantity);
-        if (updatedRows == 0) {
-            // 如果更新行数为0，说明库存不足或商品ID不存在
-            throw new RuntimeException("库存不足或商品不存在: " + productId);
+        MemoryStockEngine.Outcome outcome = memoryStockEngine.tryDecrease(productId, quantity);
+        boolean decreased = switch (outcome) {
+            case RESERVED -> true;
+            case INSUFFICIENT -> false;
+            case NOT_MANAGED -> decrementCoalescer != null && !shardedProducts.contains(productId)
+                    ? decrementCoalescer.decrease(productId, quantity)
+                    : Boolean.TRUE.equals(decreaseTransaction.execute(status -> tryDecreaseStock(productId, quantity)));
+        };
+        if (!decreased) {
+            // 如果扣减失败，说明库存不足或商品ID不存在
+            throw new InsufficientStockException(productId);
         }
     }
 
-    @Transactional
+    /**
+     * 增加库存。在调用方事务中执行时（如释放预留与预留状态同一事务）走数据库路径，与调用方一起提交或回滚，
+     * 内存额度只在没有外层事务时直接增加。
+     */
     public void increaseStock(UUID productId, Integer quantity) {
-        inventoryRepository.increaseStock(productId, quantity);
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                || !memoryStockEngine.tryIncrease(productId, quantity)) {
+            increaseTransaction.executeWithoutResult(status -> doIncreaseStock(productId, quantity));
+        }
+    }
+
+    /**
+     * 批量扣减库存（购物车结算）：在同一个事务中扣减多个商品，任一商品库存不足则整体回滚。
+     * 同一商品的多行先合并，再按商品ID顺序逐行加锁扣减；所有批量事务的加锁顺序一致，不会相互死锁。
+     * 内存库存模式的商品先在内存额度中扣减，数据库部分失败时归还这些额度。
+     */
+    public void decreaseStockBatch(List<InventoryUpdateRequest> items) {
+        Map<UUID, Integer> reserved = new TreeMap<>();
+        Map<UUID, Integer> databaseItems = new TreeMap<>();
+        try {
+            for (Map.Entry<UUID, Integer> item : mergeByProductId(items).entrySet()) {
+                switch (memoryStockEngine.tryDecrease(item.getKey(), item.getValue())) {
+                    case RESERVED -> reserved.put(item.getKey(), item.getValue());
+                    case INSUFFICIENT -> throw new InsufficientStockException(item.getKey());
+                    case NOT_MANAGED -> databaseItems.put(item.getKey(), item.getValue());
+                }
+            }
+            if (!databaseItems.isEmpty()) {
+                decreaseTransaction.executeWithoutResult(status -> {
+                    for (Map.Entry<UUID, Integer> item : databaseItems.entrySet()) {
+                        if (!tryDecreaseStock(item.getKey(), item.getValue())) {
+                            // 抛出异常使整个事务回滚，之前已扣减的商品一并恢复
+                            throw new InsufficientStockException(item.getKey());
+                        }
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            reserved.forEach(this::increaseStock);
+            throw e;
+        }
+    }
+
+    /**
+     * 批量增加库存（整单取消或下单失败补偿），加锁顺序与批量扣减一致。
+     * 在调用方事务中执行时（如事件消费与 processed_event 同一事务）全部走数据库路径：内存额度的增加无法随事务回滚，
+     * 事务回滚后事件重投会再加一次；加回主记录的库存同样计入总量，之后由各实例领取额度。
+     */
+    public void increaseStockBatch(List<InventoryUpdateRequest> items) {
+        boolean inCallerTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        Map<UUID, Integer> databaseItems = new TreeMap<>();
+        mergeByProductId(items).forEach((productId, quantity) -> {
+            if (inCallerTransaction || !memoryStockEngine.tryIncrease(productId, quantity)) {
+                databaseItems.put(productId, quantity);
+            }
+        });
+        if (!databaseItems.isEmpty()) {
+            increaseTransaction.executeWithoutResult(status -> databaseItems.forEach(this::doIncreaseStock));
+        }
+    }
+
+    /**
+     * 在一个事务中处理同一商品合并后的一批扣减：锁定库存主记录后按到达顺序逐个分配，
+     * 能满足的请求成功、库存不够的请求失败（不影响其后数量更小的请求），最后用一条条件更新扣减成功请求的总量。
+     * 商品刚开启分桶、本实例还不知道时，立即结束该事务释放主记录锁，这一批再逐个走普通的分桶扣减
+     * （各自一个事务，不锁主记录），并记下该商品，此后它的扣减不再进入合并。
+     */
+    private boolean[] applyDecrementBatch(UUID productId, int[] quantities) {
+        boolean[] result = decreaseTransaction.execute(status -> {
+            boolean[] granted = new boolean[quantities.length];
+            Inventory inventory = inventoryRepository.findByProductIdForUpdate(productId).orElse(null);
+            if (inventory == null) {
+                return granted;
+            }
+            if (inventory.getShardCount() > 0) {
+                return null;
+            }
+            int remaining = inventory.getStock();
+            int total = 0;
+            for (int i = 0; i < quantities.length; i++) {
+                if (quantities[i] <= remaining) {
+                    granted[i] = true;
+                    remaining -= quantities[i];
+                    total += quantities[i];
+                }
+            }
+            if (total > 0 && inventoryRepository.decreaseStock(productId, total) != 1) {
+                // 主记录已加锁，条件更新不应失败；失败时回滚整批，所有调用方收到异常
+                throw new IllegalStateException("合并扣减库存失败: " + productId);
+            }
+            return granted;
+        });
+        if (result != null) {
+            return result;
+        }
+        shardedProducts.add(productId);
+        boolean[] granted = new boolean[quantities.length];
+        for (int i = 0; i < quantities.length; i++) {
+            int quantity = quantities[i];
+            granted[i] = Boolean.TRUE.equals(decreaseTransaction.execute(status -> tryDecreaseStock(productId, quantity)));
+        }
+        return granted;
+    }
+
+    // 未分桶的商品在主记录上做条件更新；开启分桶的商品交给 ShardedStockService
+    private boolean tryDecreaseStock(UUID productId, int quantity) {
+        int shardCount = inventoryRepository.findShardCountByProductId(productId).orElse(-1);
+        if (shardCount < 0) {
+            return false;
+        }
+        if (shardCount == 0) {
+            // 分桶已关闭，之后的扣减重新参与合并
+            shardedProducts.remove(productId);
+            return inventoryRepository.decreaseStock(productId, quantity) == 1;
+        }
+        return shardedStockService.decrease(productId, shardCount, quantity);
+    }
+
+    private void doIncreaseStock(UUID productId, int quantity) {
+        int shardCount = inventoryRepository.findShardCountByProductId(productId).orElse(0);
+        if (shardCount > 0) {
+            shardedStockService.increase(productId, shardCount, quantity);
+        } else {
+            inventoryRepository.increaseStock(productId, quantity);
+        }
+    }
+
+    // 合并同一商品的数量，并按商品ID排序，确定加锁顺序
+    private SortedMap<UUID, Integer> mergeByProductId(List<InventoryUpdateRequest> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("库存变更明细不能为空。");
+        }
+        SortedMap<UUID, Integer> merged = new TreeMap<>();
+        for (InventoryUpdateRequest item : items) {
+            if (item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("库存变更明细不合法: " + item);
+            }
+            merged.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return merged;
     }
 }
@@ -0,0 +1,428 @@
+package com.zjsu.pjt.inventory.service;
+
+import com.zjsu.pjt.inventory.model.InventoryQuota;
+import com.zjsu.pjt.inventory.repository.InventoryRepository;
+import com.zjsu.pjt.inventory.util.ReservationLog;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 热点商品的内存库存引擎（按商品开启，见 inventory.memoryStock）。
+ * <p>
+ * 库存服务通常有多个实例，因此内存中的计数不是商品的全部库存，而是本实例从主记录领取的一段额度：
+ * <ul>
+ *     <li>扣减：对额度做无锁 CAS，成功后追加一条日志记录（组提交落盘）即返回，不访问数据库、不加行锁；</li>
+ *     <li>领取：额度不足时按 refill-chunk 从主记录领取一批（一次数据库事务），主记录也不足时判定库存不足；</li>
+ *     <li>写回：后台任务每 flush-interval-ms 把所有变化过的额度在一个事务中批量写回 inventory_quota，
+ *     多余或长时间未使用的额度归还主记录，供其他实例领取；</li>
+ *     <li>恢复：启动时以 inventory_quota 中最后写回的额度为基础，回放本地日志中版本号更大的记录，得到崩溃前的精确额度。</li>
+ * </ul>
+ * 商品总库存 = inventory.stock + 各实例额度之和，对外读取的库存最多滞后一个写回周期。
+ * 领取与写回都在额度锁内进行，扣减与增加只做 CAS，不受其影响。
+ * <p>
+ * 每个额度的状态为一个 long：高 32 位为版本号（每条日志记录加一），低 32 位为额度；额度为 {@link #CLOSED} 表示已停用，
+ * 此时请求回退到数据库路径。版本号与额度在同一次 CAS 中修改，写回的 (额度, 版本) 快照总是一致的。
+ */
+@Service
+@Slf4j
+public class MemoryStockEngine {
+
+    public enum Outcome {
+        RESERVED,      // 已从内存额度中扣减
+        INSUFFICIENT,  // 额度和主记录库存都不足
+        NOT_MANAGED    // 本实例未对该商品开启内存库存，调用方走数据库路径
+    }
+
+    private static final int CLOSED = -1;
+
+    private final InventoryRepository inventoryRepository;
+    private final MemoryStockStore store;
+    private final ReservationLog reservationLog;
+    private final String instanceId;
+    private final int refillChunk;
+    private final long idleReturnNanos;
+    private final boolean releaseOnShutdown;
+
+    private final Map<UUID, Counter> counters = new ConcurrentHashMap<>();
+
+    // 启动恢复完成前不接管任何商品，请求全部走数据库路径
+    private volatile boolean ready;
+
+    private static final class Counter {
+        private final AtomicLong state;
+        private final ReentrantLock lock = new ReentrantLock();
+        // 最近一次写回的状态，仅在 lock 内读写
+        private long flushedState;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private Counter(long state, long flushedState) {
+            this.state = new AtomicLong(state);
+            this.flushedState = flushedState;
+        }
+    }
+
+    public MemoryStockEngine(InventoryRepository inventoryRepository,
+                             MemoryStockStore store,
+                             @Value("${inventory.memory-stock.log-dir:./data/stock-log}") String logDir,
+                             @Value("${inventory.memory-stock.fsync:true}") boolean fsync,
+                             @Value("${inventory.memory-stock.instance-id:inventory-local}") String instanceId,
+                             @Value("${inventory.memory-stock.refill-chunk:50}") int refillChunk,
+                             @Value("${inventory.memory-stock.idle-return-ms:30000}") long idleReturnMs,
+                             @Value("${inventory.memory-stock.release-on-shutdown:true}") boolean releaseOnShutdown) {
+        this.inventoryRepository = inventoryRepository;
+        this.store = store;
+        this.reservationLog = new ReservationLog(Path.of(logDir), instanceId, fsync);
+        this.instanceId = instanceId;
+        this.refillChunk = refillChunk;
+        this.idleReturnNanos = TimeUnit.MILLISECONDS.toNanos(idleReturnMs);
+        this.releaseOnShutdown = releaseOnShutdown;
+    }
+
+    /**
+     * 从内存额度中扣减库存。额度不足时同步领取一批，返回 RESERVED 前记录已写入本地日志。
+     */
+    public Outcome tryDecrease(UUID productId, int quantity) {
+        Counter counter = counters.get(productId);
+        if (counter == null) {
+            return Outcome.NOT_MANAGED;
+        }
+        while (true) {
+            long state = counter.state.get();
+            int quota = quotaOf(state);
+            if (quota == CLOSED) {
+                return Outcome.NOT_MANAGED;
+            }
+            if (quota >= quantity) {
+                int version = versionOf(state) + 1;
+                if (counter.state.compareAndSet(state, pack(version, quota - quantity))) {
+                    counter.lastUsedNanos = System.nanoTime();
+                    appendOrUndo(productId, counter, version, -quantity);
+                    return Outcome.RESERVED;
+                }
+                continue;
+            }
+            int taken = refill(productId, counter, quantity);
+            if (taken < 0) {
+                return Outcome.NOT_MANAGED;
+            }
+            if (taken == 0) {
+                return Outcome.INSUFFICIENT;
+            }
+        }
+    }
+
+    /**
+     * 把库存加回内存额度（取消订单、下单失败补偿）。
+     *
+     * @return 本实例未对该商品开启内存库存时返回 false，调用方走数据库路径
+     */
+    public boolean tryIncrease(UUID productId, int quantity) {
+        Counter counter = counters.get(productId);
+        if (counter == null) {
+            return false;
+        }
+        while (true) {
+            long state = counter.state.get();
+            int quota = quotaOf(state);
+            if (quota == CLOSED) {
+                return false;
+            }
+            int version = versionOf(state) + 1;
+            if (counter.state.compareAndSet(state, pack(version, quota + quantity))) {
+                appendOrUndo(productId, counter, version, quantity);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 管理员开启或关闭商品的内存库存模式，本实例立即生效，其他实例在下一次模式同步时生效。
+     */
+    public synchronized void configure(UUID productId, boolean enabled) {
+        store.updateMode(productId, enabled);
+        if (!ready) {
+            return;
+        }
+        if (enabled) {
+            activate(productId);
+        } else {
+            deactivate(productId);
+        }
+    }
+
+    /**
+     * 启动恢复：以最后写回的额度为基础回放本地日志，写回恢复结果后再按当前模式接管或归还额度。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void recover() {
+        Map<UUID, InventoryQuota> rows = new HashMap<>();
+        for (InventoryQuota row : store.loadQuotas(instanceId)) {
+            rows.put(row.getProductId(), row);
+        }
+        Map<UUID, long[]> recovered = new HashMap<>(); // productId -> {额度, 版本}
+        rows.forEach((productId, row) -> recovered.put(productId, new long[]{row.getQuota(), row.getLogVersion()}));
+
+        int[] replayed = {0};
+        reservationLog.replay(entry -> {
+            InventoryQuota row = rows.get(entry.productId());
+            long version = Integer.toUnsignedLong(entry.version());
+            // 没有额度行的记录属于已停用的商品，其额度在停用时已归还
+            if (row == null || version <= row.getLogVersion()) {
+                return;
+            }
+            long[] state = recovered.get(entry.productId());
+            state[0] += entry.delta();
+            state[1] = Math.max(state[1], version);
+            replayed[0]++;
+        });
+        reservationLog.open();
+
+        recovered.forEach((productId, state) ->
+                counters.put(productId, new Counter(pack((int) state[1], (int) state[0]), ~0L)));
+        ready = true;
+        log.info("内存库存恢复完成：{} 个商品额度，回放 {} 条日志记录。", counters.size(), replayed[0]);
+
+        // 先把恢复结果写回并清理旧日志，再与当前模式对齐
+        flush();
+        syncModes();
+    }
+
+    /**
+     * 与数据库中的模式开关对齐：接管新开启的商品，归还已关闭商品的额度。
+     */
+    @Scheduled(fixedDelayString = "${inventory.memory-stock.mode-refresh-interval-ms:5000}")
+    public synchronized void syncModes() {
+        if (!ready) {
+            return;
+        }
+        try {
+            Set<UUID> enabled = new HashSet<>(inventoryRepository.findMemoryStockProductIds());
+            for (UUID productId : enabled) {
+                if (!counters.containsKey(productId)) {
+                    activate(productId);
+                }
+            }
+            for (UUID productId : new ArrayList<>(counters.keySet())) {
+                if (!enabled.contains(productId)) {
+                    deactivate(productId);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("内存库存模式同步失败，下一轮重试。原因: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 后台写回：批量写回变化过的额度，然后归还多余或闲置的额度。
+     */
+    @Scheduled(fixedDelayString = "${inventory.memory-stock.flush-interval-ms:200}")
+    public void writeBehind() {
+        if (!ready) {
+            return;
+        }
+        try {
+            flush();
+            returnSurplus();
+        } catch (Exception e) {
+            log.warn("内存库存写回失败，下一轮重试。原因: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (ready) {
+            ready = false;
+            try {
+                if (releaseOnShutdown) {
+                    // 正常停机时归还全部额度，避免实例下线后库存被长期占用
+                    for (UUID productId : new ArrayList<>(counters.keySet())) {
+                        deactivate(productId);
+                    }
+                }
+                flush();
+            } catch (Exception e) {
+                log.error("停机时写回内存库存失败，将在下次启动时通过日志恢复。原因: {}", e.getMessage());
+            }
+        }
+        reservationLog.close();
+    }
+
+    /**
+     * 切换日志段后，在一个事务中写回所有变化过的额度；写回成功后旧日志段中的记录都已包含在数据库里，可以删除。
+     * 旧段中的每条记录都在切换前完成了 CAS，因此其版本号不大于本次写回的版本号。
+     */
+    private synchronized void flush() {
+        List<Path> oldSegments = reservationLog.rotate();
+        Map<UUID, Counter> sorted = new TreeMap<>(counters);
+        List<Counter> locked = new ArrayList<>(sorted.size());
+        try {
+            List<MemoryStockStore.QuotaSnapshot> snapshots = new ArrayList<>();
+            Map<Counter, Long> states = new HashMap<>();
+            for (Map.Entry<UUID, Counter> entry : sorted.entrySet()) {
+                Counter counter = entry.getValue();
+                counter.lock.lock();
+                locked.add(counter);
+                long state = counter.state.get();
+                if (quotaOf(state) != CLOSED && state != counter.flushedState) {
+                    snapshots.add(new MemoryStockStore.QuotaSnapshot(
+                            entry.getKey(), quotaOf(state), Integer.toUnsignedLong(versionOf(state))));
+                    states.put(counter, state);
+                }
+            }
+            if (!snapshots.isEmpty()) {
+                store.saveSnapshots(instanceId, snapshots);
+                states.forEach((counter, state) -> counter.flushedState = state);
+            }
+        } finally {
+            locked.forEach(counter -> counter.lock.unlock());
+        }
+        reservationLog.delete(oldSegments);
+    }
+
+    // 额度超过一批的部分归还主记录；闲置超过 idle-return-ms 的额度全部归还
+    private void returnSurplus() {
+        long now = System.nanoTime();
+        for (Map.Entry<UUID, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            int keep = now - counter.lastUsedNanos > idleReturnNanos ? 0 : refillChunk;
+            if (quotaOf(counter.state.get()) <= keep) {
+                continue;
+            }
+            counter.lock.lock();
+            try {
+                int surplus = takeUnlogged(counter, keep);
+                if (surplus > 0) {
+                    try {
+                        store.giveBack(entry.getKey(), instanceId, surplus);
+                    } catch (RuntimeException e) {
+                        addUnlogged(counter, surplus);
+                        throw e;
+                    }
+                }
+            } finally {
+                counter.lock.unlock();
+            }
+        }
+    }
+
+    // 在额度锁内领取额度。返回 -1 表示已停用；0 表示主记录也没有库存；正数表示可以重试扣减
+    private int refill(UUID productId, Counter counter, int quantity) {
+        counter.lock.lock();
+        try {
+            int quota = quotaOf(counter.state.get());
+            if (quota == CLOSED) {
+                return -1;
+            }
+            if (quota >= quantity) {
+                return quota; // 等待锁期间已被其他线程领取
+            }
+            int taken = store.take(productId, instanceId, Math.max(refillChunk, quantity - quota));
+            if (taken > 0) {
+                addUnlogged(counter, taken);
+            }
+            return taken;
+        } finally {
+            counter.lock.unlock();
+        }
+    }
+
+    private void activate(UUID productId) {
+        // 先写回并清理旧日志，避免该商品之前停用时残留的记录在崩溃恢复时被误回放
+        flush();
+        InventoryQuota row = store.openQuota(productId, instanceId);
+        long state = pack((int) (long) row.getLogVersion(), row.getQuota());
+        counters.put(productId, new Counter(state, state));
+        log.info("商品 {} 已在本实例开启内存库存，实例: {}", productId, instanceId);
+    }
+
+    private void deactivate(UUID productId) {
+        Counter counter = counters.get(productId);
+        if (counter == null) {
+            return;
+        }
+        counter.lock.lock();
+        try {
+            long state;
+            do {
+                state = counter.state.get();
+            } while (!counter.state.compareAndSet(state, pack(versionOf(state), CLOSED)));
+            try {
+                store.release(productId, instanceId, Math.max(quotaOf(state), 0));
+            } catch (RuntimeException e) {
+                // 停用期间没有任何扣减或增加能成功，原样恢复即可
+                counter.state.set(state);
+                throw e;
+            }
+            counters.remove(productId);
+        } finally {
+            counter.lock.unlock();
+        }
+        log.info("商品 {} 已在本实例关闭内存库存，额度已归还。", productId);
+    }
+
+    // 日志写入失败时撤销刚才的 CAS，调用方收到异常，库存不会凭空减少
+    private void appendOrUndo(UUID productId, Counter counter, int version, int delta) {
+        try {
+            reservationLog.append(productId, version, delta);
+        } catch (RuntimeException e) {
+            addUnlogged(counter, -delta);
+            throw e;
+        }
+    }
+
+    // 领取、归还额度不写日志、不改版本号：这部分变化已在同一把额度锁内直接体现在 inventory_quota 中
+    private static void addUnlogged(Counter counter, int delta) {
+        long state;
+        do {
+            state = counter.state.get();
+            if (quotaOf(state) == CLOSED) {
+                return;
+            }
+        } while (!counter.state.compareAndSet(state, pack(versionOf(state), quotaOf(state) + delta)));
+    }
+
+    // 取走超过 keep 的额度，返回取走的数量
+    private static int takeUnlogged(Counter counter, int keep) {
+        long state;
+        int surplus;
+        do {
+            state = counter.state.get();
+            surplus = quotaOf(state) - keep;
+            if (quotaOf(state) == CLOSED || surplus <= 0) {
+                return 0;
+            }
+        } while (!counter.state.compareAndSet(state, pack(versionOf(state), keep)));
+        return surplus;
+    }
+
+    private static long pack(int version, int quota) {
+        return ((long) version << 32) | (quota & 0xFFFFFFFFL);
+    }
+
+    private static int versionOf(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static int quotaOf(long state) {
+        return (int) state;
+    }
+}
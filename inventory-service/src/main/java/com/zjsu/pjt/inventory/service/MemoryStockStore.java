@@ -0,0 +1,109 @@
+package com.zjsu.pjt.inventory.service;
+
+import com.zjsu.pjt.inventory.exception.ResourceNotFoundException;
+import com.zjsu.pjt.inventory.model.Inventory;
+import com.zjsu.pjt.inventory.model.InventoryQuota;
+import com.zjsu.pjt.inventory.repository.InventoryQuotaRepository;
+import com.zjsu.pjt.inventory.repository.InventoryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 内存库存模式的数据库操作，每个方法一个独立事务，只由 {@link MemoryStockEngine} 调用。
+ * <p>
+ * 额度在主记录与实例额度行之间转移时，一律先锁库存主记录、再更新额度行，与分桶库存的加锁顺序一致。
+ */
+@Service
+@RequiredArgsConstructor
+public class MemoryStockStore {
+
+    private final InventoryRepository inventoryRepository;
+
+    private final InventoryQuotaRepository quotaRepository;
+
+    /**
+     * 写回额度快照：quota 为内存中的额度，logVersion 为该额度已包含到的日志版本。
+     */
+    public record QuotaSnapshot(UUID productId, int quota, long logVersion) {
+    }
+
+    /**
+     * 开启或关闭商品的内存库存模式。各实例在下一次模式同步时领取或归还各自的额度。
+     */
+    @Transactional
+    public void updateMode(UUID productId, boolean enabled) {
+        Inventory inventory = inventoryRepository.findByProductIdForUpdate(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("找不到商品ID为 " + productId + " 的库存记录，无法设置内存库存模式。"));
+        if (enabled && inventory.getShardCount() > 0) {
+            throw new IllegalArgumentException("该商品已开启库存分桶，请先关闭分桶后再开启内存库存模式。");
+        }
+        inventoryRepository.updateMemoryStock(productId, enabled);
+    }
+
+    @Transactional(readOnly = true)
+    public List<InventoryQuota> loadQuotas(String instanceId) {
+        return quotaRepository.findByInstanceId(instanceId);
+    }
+
+    /**
+     * 为本实例创建该商品的额度行（初始额度为 0），已存在时直接返回。
+     */
+    @Transactional
+    public InventoryQuota openQuota(UUID productId, String instanceId) {
+        return quotaRepository.findByProductIdAndInstanceId(productId, instanceId)
+                .orElseGet(() -> quotaRepository.save(new InventoryQuota(productId, instanceId)));
+    }
+
+    /**
+     * 从主记录领取额度：最多领取 want，主记录库存不足时有多少领多少。
+     *
+     * @return 实际领取的数量；商品不存在或已关闭内存库存模式时为 0
+     */
+    @Transactional
+    public int take(UUID productId, String instanceId, int want) {
+        Inventory inventory = inventoryRepository.findByProductIdForUpdate(productId).orElse(null);
+        if (inventory == null || !inventory.isMemoryStock()) {
+            return 0;
+        }
+        int taken = Math.min(inventory.getStock(), want);
+        if (taken > 0) {
+            inventoryRepository.decreaseStock(productId, taken);
+            quotaRepository.addQuota(productId, instanceId, taken);
+        }
+        return taken;
+    }
+
+    /**
+     * 把本实例多余的额度归还到主记录。
+     */
+    @Transactional
+    public void giveBack(UUID productId, String instanceId, int amount) {
+        inventoryRepository.increaseStock(productId, amount);
+        quotaRepository.addQuota(productId, instanceId, -amount);
+    }
+
+    /**
+     * 停用本实例上该商品的内存库存：剩余额度全部归还主记录，并删除额度行。
+     */
+    @Transactional
+    public void release(UUID productId, String instanceId, int quota) {
+        if (quota > 0) {
+            inventoryRepository.increaseStock(productId, quota);
+        }
+        quotaRepository.deleteByProductIdAndInstanceId(productId, instanceId);
+    }
+
+    /**
+     * 在一个事务中写回一批额度快照（调用方按商品ID排序）。
+     */
+    @Transactional
+    public void saveSnapshots(String instanceId, List<QuotaSnapshot> snapshots) {
+        for (QuotaSnapshot snapshot : snapshots) {
+            quotaRepository.saveSnapshot(snapshot.productId(), instanceId, snapshot.quota(), snapshot.logVersion());
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.zjsu.pjt.inventory.service;
+
+import java.util.UUID;
+
+/**
+ * 上架集合可能发生变化的事件（上下架、创建、删除库存记录时发布）。
+ * 由 OnShelfSnapshotService 在事务提交后监听，用于使上架快照失效。
+ */
+public record OnShelfChangedEvent(UUID productId) {
+}
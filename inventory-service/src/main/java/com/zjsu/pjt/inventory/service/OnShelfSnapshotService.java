@@ -0,0 +1,103 @@
+package com.zjsu.pjt.inventory.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已上架商品ID集合的不可变内存快照。
+ * <p>
+ * 上架集合只会在上下架、创建、删除库存记录时变化，因此快照只在这些事务提交后失效，
+ * 下一次读取时才重建（多次连续变更只触发一次重建）。
+ * 快照的 ETag 由排序后的ID内容计算，多个库存服务实例对同一集合会给出相同的 ETag，
+ * 负载均衡下的条件请求（If-None-Match）依然有效。
+ * 其他实例上发生的变更由 refresh-interval-ms 兜底刷新。
+ * <p>
+ * 失效通过递增代数（generation）实现：快照记录开始读库时的代数，代数已变化的快照不再使用。
+ * 这样在提交前开始读库、提交后才完成的重建，不会把旧集合当作最新快照保存下来。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OnShelfSnapshotService {
+
+    private final InventoryService inventoryService;
+
+    @Value("${inventory.on-shelf-snapshot.refresh-interval-ms:5000}")
+    private long refreshIntervalMs;
+
+    private volatile Snapshot snapshot;
+
+    // 每次上架集合变更提交后递增
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 上架快照：productIds 为不可变列表，可被所有请求共享而无需复制；generation 为开始读库时的代数。
+     */
+    public record Snapshot(List<UUID> productIds, String etag, long builtAtMillis, long generation) {
+    }
+
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            return current;
+        }
+        return rebuild();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onShelfChanged(OnShelfChangedEvent event) {
+        log.debug("商品 {} 的上架状态已变更，上架快照失效。", event.productId());
+        generation.incrementAndGet();
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current != null && current.generation() == generation.get()
+                && System.currentTimeMillis() - current.builtAtMillis() < refreshIntervalMs;
+    }
+
+    private synchronized Snapshot rebuild() {
+        Snapshot current = snapshot;
+        // 等待锁期间可能已被其他线程重建
+        if (isFresh(current)) {
+            return current;
+        }
+        // 先取代数再读库：读库期间若有变更提交，这份快照的代数随即过期，下一次读取会重新构建
+        long generationAtStart = generation.get();
+        List<UUID> collected = new ArrayList<>();
+        inventoryService.forEachOnShelfProductId(collected::add);
+        collected.sort(null);
+        List<UUID> ids = List.copyOf(collected);
+        Snapshot rebuilt = new Snapshot(ids, computeEtag(ids), System.currentTimeMillis(), generationAtStart);
+        if (current == null || !current.etag().equals(rebuilt.etag())) {
+            log.info("上架快照已重建，共 {} 个商品，ETag: {}", ids.size(), rebuilt.etag());
+        }
+        snapshot = rebuilt;
+        return rebuilt;
+    }
+
+    private static String computeEtag(List<UUID> sortedIds) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (UUID id : sortedIds) {
+                digest.update(id.toString().getBytes(StandardCharsets.US_ASCII));
+            }
+            // 取前16字节即可区分不同集合
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
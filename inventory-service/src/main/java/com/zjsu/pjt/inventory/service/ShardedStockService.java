@@ -0,0 +1,229 @@
+package com.zjsu.pjt.inventory.service;
+
+import com.zjsu.pjt.inventory.exception.ResourceNotFoundException;
+import com.zjsu.pjt.inventory.model.Inventory;
+import com.zjsu.pjt.inventory.model.InventoryShard;
+import com.zjsu.pjt.inventory.repository.InventoryRepository;
+import com.zjsu.pjt.inventory.repository.InventoryShardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 热点商品的分桶库存（按商品开启）。
+ * <p>
+ * 秒杀时大量请求扣减同一商品，单行条件更新会让所有事务排队等待同一把行锁。开启分桶后：
+ * <ul>
+ *     <li>快路径：从随机分桶开始，依次在最多 fast-path-attempts 个分桶上做条件更新，成功即结束，事务只持有一个分桶的行锁；</li>
+ *     <li>慢路径：这些分桶都不够扣时（库存所剩无几或分布不均），先锁库存主记录，再按分桶序号锁定全部分桶，
+ *     按总量判断是否足够并依次从各分桶扣除；</li>
+ *     <li>再平衡：{@link StockShardRebalancer} 定期把库存在各分桶间重新均分，让快路径保持高命中率。</li>
+ * </ul>
+ * 每一次扣减都是带 stock >= quantity 条件的更新，主记录和分桶任何时刻都不会为负，总库存精确且不会超卖。
+ * 商品总库存 = inventory.stock + 所有分桶库存之和；分桶期间归还到主记录的库存同样计入总量，由再平衡并入分桶。
+ * <p>
+ * 快路径依赖 READ COMMITTED 隔离级别：未命中的条件更新会立即释放行锁，进入慢路径前不持有该商品的任何分桶锁；
+ * 慢路径与所有管理操作都按“主记录 → 分桶序号”的顺序加锁，不会相互死锁。
+ * 除带 {@code @Transactional} 的方法外，其余方法都必须在调用方事务中执行。
+ */
+@Service
+@Slf4j
+public class ShardedStockService {
+
+    private final InventoryRepository inventoryRepository;
+    private final InventoryShardRepository shardRepository;
+    private final int maxShards;
+    private final int fastPathAttempts;
+
+    public ShardedStockService(InventoryRepository inventoryRepository,
+                               InventoryShardRepository shardRepository,
+                               @Value("${inventory.sharding.max-shards:64}") int maxShards,
+                               @Value("${inventory.sharding.fast-path-attempts:3}") int fastPathAttempts) {
+        this.inventoryRepository = inventoryRepository;
+        this.shardRepository = shardRepository;
+        this.maxShards = maxShards;
+        this.fastPathAttempts = fastPathAttempts;
+    }
+
+    /**
+     * 扣减分桶库存。
+     *
+     * @param shardCount 调用方读到的分桶数（可能已过期，慢路径会在锁内重新确认）
+     * @return 库存不足或商品不存在时返回 false
+     */
+    public boolean decrease(UUID productId, int shardCount, int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(shardCount);
+        int attempts = Math.min(shardCount, fastPathAttempts);
+        for (int i = 0; i < attempts; i++) {
+            if (shardRepository.decreaseStock(productId, (start + i) % shardCount, quantity) == 1) {
+                return true;
+            }
+        }
+        return decreaseLocked(productId, quantity);
+    }
+
+    /**
+     * 增加分桶库存：随机放入一个分桶；分桶刚被关闭或缩减时放回主记录，总量同样不会丢失。
+     */
+    public void increase(UUID productId, int shardCount, int quantity) {
+        int bucket = ThreadLocalRandom.current().nextInt(shardCount);
+        if (shardRepository.increaseStock(productId, bucket, quantity) == 0) {
+            inventoryRepository.increaseStock(productId, quantity);
+        }
+    }
+
+    /**
+     * 管理员直接设置分桶商品的总库存，新库存均分到各分桶。
+     */
+    public void updateTotal(UUID productId, int newStock) {
+        Inventory inventory = inventoryRepository.findByProductIdForUpdate(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("找不到商品ID为 " + productId + " 的库存记录，无法更新库存。"));
+        if (inventory.getShardCount() == 0) {
+            inventoryRepository.updateStockByProductId(productId, newStock);
+            return;
+        }
+        redistribute(inventory, shardRepository.findByProductIdForUpdate(productId), newStock);
+    }
+
+    /**
+     * 开启、调整或关闭商品的库存分桶。调整前后总库存不变。
+     *
+     * @param shardCount 分桶数，0 表示关闭分桶，库存全部并回主记录
+     */
+    @Transactional
+    public void configureSharding(UUID productId, int shardCount) {
+        if (shardCount < 0 || shardCount > maxShards) {
+            throw new IllegalArgumentException("分桶数必须在 0 到 " + maxShards + " 之间。");
+        }
+        Inventory inventory = inventoryRepository.findByProductIdForUpdate(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("找不到商品ID为 " + productId + " 的库存记录，无法设置分桶。"));
+        if (shardCount > 0 && inventory.isMemoryStock()) {
+            throw new IllegalArgumentException("该商品已开启内存库存模式，请先关闭后再设置分桶。");
+        }
+        List<InventoryShard> shards = shardRepository.findByProductIdForUpdate(productId);
+        long total = totalOf(inventory, shards);
+
+        shardRepository.deleteByProductId(productId);
+        if (shardCount == 0) {
+            inventoryRepository.updateStockByProductId(productId, Math.toIntExact(total));
+        } else {
+            inventoryRepository.updateStockByProductId(productId, 0);
+            shardRepository.saveAll(split(productId, total, shardCount));
+        }
+        inventoryRepository.updateShardCount(productId, shardCount);
+        log.info("商品 {} 库存分桶数由 {} 调整为 {}，总库存 {}", productId, inventory.getShardCount(), shardCount, total);
+    }
+
+    /**
+     * 再平衡：锁定主记录和全部分桶后，把总库存重新均分到各分桶。商品未分桶或已关闭分桶时不做任何事。
+     */
+    @Transactional
+    public void rebalance(UUID productId) {
+        Inventory inventory = inventoryRepository.findByProductIdForUpdate(productId).orElse(null);
+        if (inventory == null || inventory.getShardCount() == 0) {
+            return;
+        }
+        List<InventoryShard> shards = shardRepository.findByProductIdForUpdate(productId);
+        long total = totalOf(inventory, shards);
+        redistribute(inventory, shards, total);
+        log.debug("商品 {} 库存分桶已再平衡，总库存 {}", productId, total);
+    }
+
+    /**
+     * 判断分桶是否需要再平衡：主记录上有零散库存、分桶数与配置不符，或最少的分桶不足平均值的一半。
+     *
+     * @param mainStock    主记录上的库存
+     * @param bucketStocks 按分桶序号排列的各分桶库存
+     */
+    public static boolean needsRebalance(int shardCount, int mainStock, List<Integer> bucketStocks) {
+        if (mainStock > 0 || bucketStocks.size() != shardCount) {
+            return true;
+        }
+        long total = 0;
+        int min = Integer.MAX_VALUE;
+        for (int stock : bucketStocks) {
+            total += stock;
+            min = Math.min(min, stock);
+        }
+        return (long) min * 2 * shardCount < total;
+    }
+
+    // 慢路径：锁定主记录并在锁内重新确认分桶数，再按分桶序号锁定全部分桶，按总量扣减
+    private boolean decreaseLocked(UUID productId, int quantity) {
+        Inventory inventory = inventoryRepository.findByProductIdForUpdate(productId).orElse(null);
+        if (inventory == null) {
+            return false;
+        }
+        if (inventory.getShardCount() == 0) {
+            // 分桶已被关闭，库存已并回主记录
+            return inventoryRepository.decreaseStock(productId, quantity) == 1;
+        }
+        List<InventoryShard> shards = shardRepository.findByProductIdForUpdate(productId);
+        if (totalOf(inventory, shards) < quantity) {
+            return false;
+        }
+
+        // 先扣主记录上的零散库存，再依次从各分桶扣除；均已加锁，条件更新必然成功
+        int remaining = quantity;
+        int fromMain = Math.min(remaining, inventory.getStock());
+        if (fromMain > 0) {
+            inventoryRepository.decreaseStock(productId, fromMain);
+            remaining -= fromMain;
+        }
+        for (InventoryShard shard : shards) {
+            if (remaining == 0) {
+                break;
+            }
+            int take = Math.min(remaining, shard.getStock());
+            if (take > 0) {
+                shardRepository.decreaseStock(productId, shard.getBucket(), take);
+                remaining -= take;
+            }
+        }
+        return true;
+    }
+
+    // 在已锁定主记录和全部分桶的前提下，把 total 均分到各分桶并清空主记录
+    private void redistribute(Inventory inventory, List<InventoryShard> shards, long total) {
+        UUID productId = inventory.getProductId();
+        int shardCount = inventory.getShardCount();
+        if (shards.size() != shardCount) {
+            // 分桶行与分桶数不一致（如人工修改过数据），整体重建
+            shardRepository.deleteByProductId(productId);
+            shardRepository.saveAll(split(productId, total, shardCount));
+        } else {
+            for (InventoryShard shard : shards) {
+                int target = shareOf(total, shardCount, shard.getBucket());
+                if (shard.getStock() != target) {
+                    shardRepository.updateStock(productId, shard.getBucket(), target);
+                }
+            }
+        }
+        if (inventory.getStock() != 0) {
+            inventoryRepository.updateStockByProductId(productId, 0);
+        }
+    }
+
+    private static List<InventoryShard> split(UUID productId, long total, int shardCount) {
+        List<InventoryShard> shards = new ArrayList<>(shardCount);
+        for (int bucket = 0; bucket < shardCount; bucket++) {
+            shards.add(new InventoryShard(productId, bucket, shareOf(total, shardCount, bucket)));
+        }
+        return shards;
+    }
+
+    // 均分后第 bucket 个分桶应有的库存，余数分给序号较小的分桶
+    private static int shareOf(long total, int shardCount, int bucket) {
+        return Math.toIntExact(total / shardCount + (bucket < total % shardCount ? 1 : 0));
+    }
+
+    private static long totalOf(Inventory inventory, List<InventoryShard> shards) {
+        return inventory.getStock() + shards.stream().mapToLong(InventoryShard::getStock).sum();
+    }
+}
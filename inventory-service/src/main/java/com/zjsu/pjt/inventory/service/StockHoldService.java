@@ -0,0 +1,155 @@
+package com.zjsu.pjt.inventory.service;
+
+import com.zjsu.pjt.inventory.dto.InventoryUpdateRequest;
+import com.zjsu.pjt.inventory.exception.ResourceNotFoundException;
+import com.zjsu.pjt.inventory.model.StockHold;
+import com.zjsu.pjt.inventory.repository.StockHoldRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 有时限的库存预留：创建时扣减库存，确认后扣减生效，释放或超时后归还库存。
+ * <p>
+ * 状态只通过 "status = 'held'" 条件更新离开 held，确认、释放与到期扫描并发时只有一方生效，库存不会重复归还。
+ * 时间统一取本服务的应用时钟，多个实例之间的时钟偏差只影响到期判断的精度，不影响库存数量。
+ */
+@Service
+@Slf4j
+public class StockHoldService {
+
+    public static final String HELD = "held";
+    public static final String CONFIRMED = "confirmed";
+    public static final String RELEASED = "released";
+    public static final String EXPIRED = "expired";
+
+    private final InventoryService inventoryService;
+    private final StockHoldRepository holdRepository;
+    private final long defaultTtlSeconds;
+    private final long maxTtlSeconds;
+
+    public StockHoldService(InventoryService inventoryService,
+                            StockHoldRepository holdRepository,
+                            @Value("${inventory.holds.default-ttl-seconds:900}") long defaultTtlSeconds,
+                            @Value("${inventory.holds.max-ttl-seconds:86400}") long maxTtlSeconds) {
+        this.inventoryService = inventoryService;
+        this.holdRepository = holdRepository;
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.maxTtlSeconds = maxTtlSeconds;
+    }
+
+    /**
+     * 创建预留：先扣减库存（沿用单个扣减的全部路径），再写入预留记录；写入失败时归还库存。
+     * 两步之间实例崩溃只会少算库存，不会超卖。
+     *
+     * @param ttlSeconds 有效期（秒），为 null 时使用默认有效期
+     */
+    public StockHold createHold(UUID productId, Integer quantity, Long ttlSeconds) {
+        if (productId == null || quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("预留的商品ID不能为空，数量必须大于0。");
+        }
+        long ttl = ttlSeconds == null ? defaultTtlSeconds : ttlSeconds;
+        if (ttl <= 0 || ttl > maxTtlSeconds) {
+            throw new IllegalArgumentException("预留有效期必须在 1 到 " + maxTtlSeconds + " 秒之间。");
+        }
+        inventoryService.decreaseStock(productId, quantity);
+        try {
+            return holdRepository.save(new StockHold(UUID.randomUUID(), productId, quantity,
+                    LocalDateTime.now().plusSeconds(ttl)));
+        } catch (RuntimeException e) {
+            inventoryService.increaseStock(productId, quantity);
+            throw e;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public StockHold getHold(UUID holdId) {
+        return holdRepository.findByHoldId(holdId)
+                .orElseThrow(() -> new ResourceNotFoundException("找不到ID为 " + holdId + " 的库存预留。"));
+    }
+
+    /**
+     * 确认预留，扣减正式生效。重复确认直接返回；已释放或已到期的预留不能确认。
+     */
+    @Transactional
+    public StockHold confirmHold(UUID holdId) {
+        holdRepository.confirm(holdId, LocalDateTime.now());
+        StockHold hold = getHold(holdId);
+        if (!CONFIRMED.equals(hold.getStatus())) {
+            throw new IllegalStateException("预留 " + holdId + " 已" + describe(hold) + "，无法确认。");
+        }
+        return hold;
+    }
+
+    /**
+     * 释放预留并归还库存（同一事务内，内存库存模式的商品也加回数据库主记录，事务回滚时一并撤销）。
+     * 重复释放直接返回；已确认的预留不能释放。
+     */
+    @Transactional
+    public StockHold releaseHold(UUID holdId) {
+        StockHold hold = getHold(holdId);
+        if (holdRepository.finish(holdId, RELEASED, LocalDateTime.now()) == 1) {
+            inventoryService.increaseStock(hold.getProductId(), hold.getQuantity());
+            return getHold(holdId);
+        }
+        hold = getHold(holdId);
+        if (CONFIRMED.equals(hold.getStatus())) {
+            throw new IllegalStateException("预留 " + holdId + " 已确认，无法释放。");
+        }
+        return hold;
+    }
+
+    /**
+     * 处理一批到期未确认的预留：加锁取出最早到期的至多 batchSize 条，标记为 expired，
+     * 按商品合并数量后批量归还库存，全部在一个事务中完成（归还走数据库路径，事务回滚时不会留下已归还的内存额度）。
+     *
+     * @return 本批处理的预留数，小于 batchSize 说明当前没有更多到期预留
+     */
+    @Transactional
+    public int expireDue(int batchSize) {
+        LocalDateTime now = LocalDateTime.now();
+        List<StockHold> due = holdRepository.findDueForUpdate(now, PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(due.size());
+        List<InventoryUpdateRequest> returns = new ArrayList<>(due.size());
+        for (StockHold hold : due) {
+            ids.add(hold.getId());
+            InventoryUpdateRequest item = new InventoryUpdateRequest();
+            item.setProductId(hold.getProductId());
+            item.setQuantity(hold.getQuantity());
+            returns.add(item);
+        }
+        holdRepository.markExpired(ids, now);
+        inventoryService.increaseStockBatch(returns);
+        return due.size();
+    }
+
+    /**
+     * 删除一批到期时间早于 retentionHours 小时前的已结束预留。
+     *
+     * @return 本批删除的条数
+     */
+    @Transactional
+    public int purgeFinished(long retentionHours, int batchSize) {
+        List<Long> ids = holdRepository.findFinishedIdsBefore(List.of(CONFIRMED, RELEASED, EXPIRED),
+                LocalDateTime.now().minusHours(retentionHours), PageRequest.of(0, batchSize));
+        if (!ids.isEmpty()) {
+            holdRepository.deleteAllByIdInBatch(ids);
+        }
+        return ids.size();
+    }
+
+    private static String describe(StockHold hold) {
+        // held 但已超过 expiresAt 的预留等同于过期，由扫描任务归还库存
+        return RELEASED.equals(hold.getStatus()) ? "释放" : "过期";
+    }
+}
@@ -0,0 +1,52 @@
+package com.zjsu.pjt.inventory.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 库存预留到期扫描任务：每轮按到期时间分批归还超时未确认的预留，再清理一批保留期外的已结束预留。
+ * <p>
+ * 每批都是 (status, expiresAt) 索引上的有限范围查询，耗时与到期数量成正比，与预留总数无关。
+ * 多个实例同时扫描时靠 SKIP LOCKED 各取不同的预留，互不阻塞。
+ */
+@Component
+@Slf4j
+public class StockHoldSweeper {
+
+    // 单轮最多处理的批数，到期积压时留给下一轮继续，避免一轮占用调度线程过久
+    private static final int MAX_BATCHES_PER_SWEEP = 20;
+
+    private final StockHoldService stockHoldService;
+    private final int batchSize;
+    private final long retentionHours;
+
+    public StockHoldSweeper(StockHoldService stockHoldService,
+                            @Value("${inventory.holds.sweep-batch-size:500}") int batchSize,
+                            @Value("${inventory.holds.retention-hours:72}") long retentionHours) {
+        this.stockHoldService = stockHoldService;
+        this.batchSize = Math.max(1, batchSize);
+        this.retentionHours = retentionHours;
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.holds.sweep-interval-ms:1000}")
+    public void sweep() {
+        try {
+            int expired = 0;
+            for (int i = 0; i < MAX_BATCHES_PER_SWEEP; i++) {
+                int count = stockHoldService.expireDue(batchSize);
+                expired += count;
+                if (count < batchSize) {
+                    break;
+                }
+            }
+            if (expired > 0) {
+                log.info("已归还 {} 个到期库存预留", expired);
+            }
+            stockHoldService.purgeFinished(retentionHours, batchSize);
+        } catch (Exception e) {
+            log.warn("库存预留到期扫描失败，下一轮重试。原因: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.zjsu.pjt.inventory.service;
+
+import com.zjsu.pjt.inventory.model.Inventory;
+import com.zjsu.pjt.inventory.repository.InventoryRepository;
+import com.zjsu.pjt.inventory.repository.InventoryShardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 库存分桶再平衡任务：定期检查所有开启分桶的商品，分布明显不均时重新均分。
+ * <p>
+ * 先用不加锁的读判断是否需要调整，只有需要时才进入 {@link ShardedStockService#rebalance(UUID)} 加锁重算，
+ * 分布均匀的商品不会因为巡检而阻塞下单。多个实例同时巡检时在主记录行锁上串行，结果相同。
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class StockShardRebalancer {
+
+    private final InventoryRepository inventoryRepository;
+    private final InventoryShardRepository shardRepository;
+    private final ShardedStockService shardedStockService;
+
+    @Scheduled(fixedDelayString = "${inventory.sharding.rebalance-interval-ms:2000}")
+    public void sweep() {
+        for (UUID productId : inventoryRepository.findShardedProductIds()) {
+            try {
+                Inventory inventory = inventoryRepository.findByProductId(productId).orElse(null);
+                if (inventory == null || inventory.getShardCount() == 0) {
+                    continue;
+                }
+                List<Integer> bucketStocks = shardRepository.findBucketStocks(productId);
+                if (ShardedStockService.needsRebalance(inventory.getShardCount(), inventory.getStock(), bucketStocks)) {
+                    shardedStockService.rebalance(productId);
+                }
+            } catch (Exception e) {
+                log.warn("商品 {} 库存分桶再平衡失败，下一轮重试。原因: {}", productId, e.getMessage());
+            }
+        }
+    }
+}
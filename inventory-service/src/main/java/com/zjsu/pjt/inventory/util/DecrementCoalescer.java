@@ -0,0 +1,155 @@
+package com.zjsu.pjt.inventory.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一商品并发扣减请求的合并器。
+ * <p>
+ * 每个商品一条队列，队首请求的线程担任 leader：若队列中已有其他请求在等待，最多再等待 window 或凑满 maxBatch 个请求，
+ * 然后把这一批请求按到达顺序交给 {@link BatchHandler} 一次处理（一个事务），其余线程只等待自己的结果。
+ * leader 处理完后把队首请求提升为下一任 leader，处理期间新到达的请求自然形成下一批。
+ * 单独到达的请求不等待，直接成批（批大小为 1）处理，不增加空闲时的延迟。
+ * <p>
+ * 不使用额外线程：批处理在 leader 的请求线程中执行，调用方看到的仍是同步调用。
+ */
+public final class DecrementCoalescer {
+
+    /**
+     * 一次处理一批扣减请求。
+     */
+    public interface BatchHandler {
+        /**
+         * @param quantities 按到达顺序排列的扣减数量
+         * @return 与 quantities 一一对应的结果，true 表示扣减成功
+         */
+        boolean[] apply(UUID productId, int[] quantities);
+    }
+
+    private static final class Pending {
+        private final int quantity;
+        private boolean leader;
+        private boolean done;
+        private boolean granted;
+        private RuntimeException error;
+
+        private Pending(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+
+    private static final class Lane {
+        private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+        private boolean draining;
+    }
+
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BatchHandler handler;
+    private final Map<UUID, Lane> lanes = new ConcurrentHashMap<>();
+
+    public DecrementCoalescer(long windowNanos, int maxBatch, BatchHandler handler) {
+        this.windowNanos = windowNanos;
+        this.maxBatch = maxBatch;
+        this.handler = handler;
+    }
+
+    /**
+     * 提交一个扣减请求并等待结果。
+     *
+     * @return true 表示扣减成功，false 表示库存不足或商品不存在
+     */
+    public boolean decrease(UUID productId, int quantity) {
+        Pending pending = new Pending(quantity);
+        Lane lane = lanes.computeIfAbsent(productId, id -> new Lane());
+        boolean interrupted = false;
+        List<Pending> batch;
+        synchronized (lane) {
+            lane.queue.add(pending);
+            if (!lane.draining) {
+                lane.draining = true;
+                pending.leader = true;
+            } else if (lane.queue.size() >= maxBatch) {
+                lane.notifyAll(); // 叫醒正在等待凑批的 leader
+            }
+            while (!pending.leader && !pending.done) {
+                try {
+                    lane.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (!pending.done) {
+                interrupted |= lingerForBatch(lane);
+                batch = new ArrayList<>(Math.min(lane.queue.size(), maxBatch));
+                while (batch.size() < maxBatch && !lane.queue.isEmpty()) {
+                    batch.add(lane.queue.poll());
+                }
+            } else {
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            process(productId, lane, batch);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (pending.error != null) {
+            throw pending.error;
+        }
+        return pending.granted;
+    }
+
+    // 已有其他请求排队时，等待更多请求加入，直到凑满一批或窗口结束（在 lane 锁内调用）
+    private boolean lingerForBatch(Lane lane) {
+        boolean interrupted = false;
+        if (lane.queue.size() < 2) {
+            return false;
+        }
+        long deadline = System.nanoTime() + windowNanos;
+        long remaining;
+        while (lane.queue.size() < maxBatch && (remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.timedWait(lane, remaining);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        return interrupted;
+    }
+
+    private void process(UUID productId, Lane lane, List<Pending> batch) {
+        int[] quantities = new int[batch.size()];
+        for (int i = 0; i < quantities.length; i++) {
+            quantities[i] = batch.get(i).quantity;
+        }
+        boolean[] granted = null;
+        RuntimeException error = null;
+        try {
+            granted = handler.apply(productId, quantities);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        synchronized (lane) {
+            for (int i = 0; i < batch.size(); i++) {
+                Pending pending = batch.get(i);
+                pending.done = true;
+                pending.error = error;
+                pending.granted = granted != null && granted[i];
+            }
+            if (lane.queue.isEmpty()) {
+                lane.draining = false;
+                lanes.remove(productId, lane);
+            } else {
+                lane.queue.peek().leader = true;
+            }
+            lane.notifyAll();
+        }
+    }
+}
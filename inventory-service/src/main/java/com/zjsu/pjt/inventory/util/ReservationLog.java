@@ -0,0 +1,302 @@
+package com.zjsu.pjt.inventory.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 内存库存的本地追加日志（write-ahead log）。
+ * <p>
+ * 每条记录固定 28 字节：16 字节商品ID + 4 字节版本号 + 4 字节库存变化量 + 4 字节 CRC32（校验前 24 字节）。
+ * 日志按段（segment）存放，文件名为 {instanceId}-{段序号}.log；崩溃时写了一半的尾部记录 CRC 校验失败，回放时丢弃。
+ * <p>
+ * 采用组提交：{@link #append} 先把记录放入内存缓冲区，再由第一个进入同步的线程把缓冲区中所有记录一次写盘并 fsync，
+ * 排在后面的线程发现自己的记录已落盘便直接返回，高并发下多条记录共享一次 fsync。
+ * 调用方只有在 append 返回后才能向客户端确认扣减成功。
+ * 一批记录写盘或 fsync 失败时，文件截断回写入前的长度，这一批中所有记录的 append 都抛出异常（不只是执行写盘的线程），
+ * 调用方据此撤销对应的内存变更。
+ */
+public final class ReservationLog implements AutoCloseable {
+
+    public static final int RECORD_BYTES = 28;
+
+    private static final String SUFFIX = ".log";
+
+    // 最多保留的写盘失败批次，只用于通知仍在等待的 append 调用方
+    private static final int MAX_FAILED_BATCHES = 1024;
+
+    /**
+     * 回放时读到的一条记录。
+     */
+    public record Entry(UUID productId, int version, int delta) {
+    }
+
+    // 写盘失败的一批记录：票号从键（起始票号）到 upTo
+    private record FailedBatch(long upTo, IOException cause) {
+    }
+
+    private final Path directory;
+    private final String instanceId;
+    private final boolean fsync;
+
+    // 待写盘的记录，受 this 保护；pending 中是票号 (taken, appended] 的记录
+    private ByteBuffer pending = ByteBuffer.allocate(64 * RECORD_BYTES);
+    private long appended;
+    private long taken;
+
+    // 以下字段受 syncLock 保护
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private long segment;
+    private final TreeMap<Long, FailedBatch> failedBatches = new TreeMap<>();
+    private volatile long durable;
+    // 最近一次写盘失败批次的最大票号，先于之后成功批次的 durable 写入
+    private volatile long failedUpTo;
+
+    public ReservationLog(Path directory, String instanceId, boolean fsync) {
+        this.directory = directory;
+        this.instanceId = instanceId;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法创建库存日志目录: " + directory, e);
+        }
+    }
+
+    /**
+     * 按段序号读取本实例现有的全部日志段，逐条回放。必须在 {@link #open()} 之前调用。
+     *
+     * @return 现有日志段，恢复完成并持久化后可交给 {@link #delete(List)} 删除
+     */
+    public List<Path> replay(Consumer<Entry> consumer) {
+        List<Path> segments = existingSegments();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        for (Path path : segments) {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (true) {
+                    record.clear();
+                    while (record.hasRemaining() && in.read(record) > 0) {
+                        // 读满一条记录
+                    }
+                    if (record.hasRemaining()) {
+                        break; // 文件结束或尾部记录不完整
+                    }
+                    record.flip();
+                    Entry entry = decode(record);
+                    if (entry == null) {
+                        break; // 校验失败：崩溃时未写完的尾部
+                    }
+                    consumer.accept(entry);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取库存日志失败: " + path, e);
+            }
+            segment = Math.max(segment, segmentNumber(path));
+        }
+        return segments;
+    }
+
+    /**
+     * 打开一个新的日志段开始写入。
+     */
+    public void open() {
+        synchronized (syncLock) {
+            openNextSegment();
+        }
+    }
+
+    /**
+     * 追加一条记录并等待其落盘。
+     */
+    public void append(UUID productId, int version, int delta) {
+        long ticket;
+        synchronized (this) {
+            if (pending.remaining() < RECORD_BYTES) {
+                ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            encode(pending, productId, version, delta);
+            ticket = ++appended;
+        }
+        sync(ticket);
+    }
+
+    /**
+     * 切换到新的日志段。调用方在此之后把内存状态持久化到数据库，成功后即可删除返回的旧段。
+     *
+     * @return 切换前的全部旧日志段
+     */
+    public List<Path> rotate() {
+        synchronized (syncLock) {
+            writePending();
+            closeChannel();
+            List<Path> old = existingSegments();
+            openNextSegment();
+            return old;
+        }
+    }
+
+    public void delete(List<Path> segments) {
+        for (Path path : segments) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("删除库存日志失败: " + path, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (syncLock) {
+            writePending();
+            closeChannel();
+        }
+    }
+
+    // 组提交：拿到同步锁后若自己的记录已被前一个线程写盘则直接返回，在前一个线程写盘失败的批次中则抛出同样的异常，
+    // 否则把缓冲区中全部记录一次写盘。先读 durable 再读 failedUpTo：读到某次成功后的 durable，就一定能看到它之前的失败
+    private void sync(long ticket) {
+        if (durable >= ticket && ticket > failedUpTo) {
+            return;
+        }
+        synchronized (syncLock) {
+            Map.Entry<Long, FailedBatch> failed = failedBatches.floorEntry(ticket);
+            if (failed != null && ticket <= failed.getValue().upTo()) {
+                throw new UncheckedIOException("写入库存日志失败", failed.getValue().cause());
+            }
+            if (durable >= ticket) {
+                return;
+            }
+            writePending();
+        }
+    }
+
+    private void writePending() {
+        ByteBuffer batch;
+        long from;
+        long upTo;
+        synchronized (this) {
+            if (pending.position() == 0) {
+                return;
+            }
+            batch = pending;
+            from = taken + 1;
+            upTo = appended;
+            taken = appended;
+            pending = ByteBuffer.allocate(batch.capacity());
+        }
+        batch.flip();
+        long start = -1;
+        try {
+            start = channel.size();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            // 截掉可能写了一半的这一批，避免调用方已撤销的变更在崩溃恢复时被回放
+            if (start >= 0) {
+                try {
+                    channel.truncate(start);
+                } catch (IOException truncateFailure) {
+                    e.addSuppressed(truncateFailure);
+                }
+            }
+            failedBatches.put(from, new FailedBatch(upTo, e));
+            if (failedBatches.size() > MAX_FAILED_BATCHES) {
+                failedBatches.pollFirstEntry();
+            }
+            failedUpTo = upTo;
+            throw new UncheckedIOException("写入库存日志失败", e);
+        }
+        durable = upTo;
+    }
+
+    private void openNextSegment() {
+        segment++;
+        Path path = directory.resolve(instanceId + "-" + segment + SUFFIX);
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法打开库存日志: " + path, e);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("关闭库存日志失败", e);
+        }
+        channel = null;
+    }
+
+    private List<Path> existingSegments() {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, instanceId + "-*" + SUFFIX)) {
+            for (Path path : stream) {
+                if (segmentNumber(path) > 0) {
+                    segments.add(path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法列出库存日志: " + directory, e);
+        }
+        segments.sort((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)));
+        return segments;
+    }
+
+    private long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        String number = name.substring(instanceId.length() + 1, name.length() - SUFFIX.length());
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void encode(ByteBuffer buffer, UUID productId, int version, int delta) {
+        int start = buffer.position();
+        buffer.putLong(productId.getMostSignificantBits());
+        buffer.putLong(productId.getLeastSignificantBits());
+        buffer.putInt(version);
+        buffer.putInt(delta);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start, RECORD_BYTES - 4);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private static Entry decode(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, RECORD_BYTES - 4);
+        UUID productId = new UUID(record.getLong(), record.getLong());
+        int version = record.getInt();
+        int delta = record.getInt();
+        if (record.getInt() != (int) crc.getValue()) {
+            return null;
+        }
+        return new Entry(productId, version, delta);
+    }
+}
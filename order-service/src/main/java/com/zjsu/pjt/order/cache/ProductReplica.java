@@ -0,0 +1,142 @@
+package com.zjsu.pjt.order.cache;
+
+import com.zjsu.pjt.order.client.ProductClient;
+import com.zjsu.pjt.order.dto.ProductChangeFeed;
+import com.zjsu.pjt.order.dto.ProductClientDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 订单服务内的商品信息副本（productId -> 品牌/型号/分类/价格/图片）。
+ * <p>
+ * 订单列表、导出等只读场景直接读本地副本，不再同步调用商品服务，延迟与商品服务是否健康无关。
+ * 副本通过商品服务的变更流（GET /api/products/changes）维护：
+ * <ul>
+ *     <li>启动后先按主键分页全量拉取一次（预热）；</li>
+ *     <li>之后定期从 (水位线 - 重叠窗口) 开始增量拉取，重叠窗口用于覆盖提交晚于时间戳的事务，重复读取是无害的。</li>
+ * </ul>
+ * 已删除的商品会保留在副本中，历史订单仍能显示当时的商品信息。
+ */
+@Component
+@Slf4j
+public class ProductReplica {
+
+    private final ProductClient productClient;
+    private final int pageSize;
+    private final Duration pollOverlap;
+
+    private final Map<UUID, ProductClientDTO> products = new ConcurrentHashMap<>();
+
+    // 已同步到的商品修改时间（商品服务数据库时钟），为 null 表示尚未完成预热
+    private volatile LocalDateTime watermark;
+
+    public ProductReplica(ProductClient productClient,
+                          @Value("${order.product-replica.page-size:500}") int pageSize,
+                          @Value("${order.product-replica.poll-overlap-ms:5000}") long pollOverlapMs) {
+        this.productClient = productClient;
+        this.pageSize = pageSize;
+        this.pollOverlap = Duration.ofMillis(pollOverlapMs);
+    }
+
+    /**
+     * 读取本地副本中的商品信息，未同步到的商品返回 null。
+     */
+    public ProductClientDTO get(UUID productId) {
+        return products.get(productId);
+    }
+
+    public boolean isWarm() {
+        return watermark != null;
+    }
+
+    /**
+     * 同步商品副本。首次执行即为启动预热；商品服务不可用时本轮跳过，下一轮重试，已有副本继续提供服务。
+     */
+    @Scheduled(fixedDelayString = "${order.product-replica.poll-interval-ms:5000}")
+    public synchronized void sync() {
+        try {
+            if (watermark == null) {
+                warmUp();
+            } else {
+                pollChanges();
+            }
+        } catch (ProductServiceUnavailableException e) {
+            log.warn("商品服务不可用，本轮商品副本同步跳过。");
+        } catch (Exception e) {
+            log.warn("商品副本同步失败，下一轮重试。原因: {}", e.getMessage());
+        }
+    }
+
+    // 全量预热：按主键分页读取全部商品。读到空页才结束：商品服务会把每页大小限制在自己的上限内，
+    // 返回条数少于 page-size 不代表已读完
+    private void warmUp() {
+        LocalDateTime latest = null;
+        UUID afterId = null;
+        int loaded = 0;
+        List<ProductClientDTO> page;
+        do {
+            page = fetch(null, afterId);
+            for (ProductClientDTO product : page) {
+                products.put(product.getId(), product);
+                if (product.getUpdatedAt() != null && (latest == null || product.getUpdatedAt().isAfter(latest))) {
+                    latest = product.getUpdatedAt();
+                }
+            }
+            loaded += page.size();
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (!page.isEmpty());
+
+        // 预热期间发生的修改由之后增量同步的重叠窗口覆盖
+        watermark = latest == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : latest;
+        log.info("商品副本预热完成，共 {} 个商品，起始水位线: {}", loaded, watermark);
+    }
+
+    // 增量同步：从 (水位线 - 重叠窗口) 开始，按 (updatedAt, id) 翻页直到读到空页
+    private void pollChanges() {
+        LocalDateTime since = watermark.minus(pollOverlap);
+        UUID afterId = null;
+        LocalDateTime latest = watermark;
+        List<ProductClientDTO> page;
+        do {
+            page = fetch(since, afterId);
+            for (ProductClientDTO product : page) {
+                products.put(product.getId(), product);
+            }
+            if (!page.isEmpty()) {
+                ProductClientDTO last = page.get(page.size() - 1);
+                since = last.getUpdatedAt();
+                afterId = last.getId();
+                if (since.isAfter(latest)) {
+                    latest = since;
+                }
+            }
+        } while (!page.isEmpty());
+
+        watermark = latest;
+    }
+
+    private List<ProductClientDTO> fetch(LocalDateTime since, UUID afterId) {
+        ResponseEntity<ProductChangeFeed> response = productClient.getProductChanges(
+                since == null ? null : since.toString(), afterId, pageSize);
+        ProductChangeFeed feed = response.getBody();
+        if (feed == null || ProductChangeFeed.FALLBACK_PORT.equals(feed.getPort()) || feed.getData() == null) {
+            throw new ProductServiceUnavailableException();
+        }
+        return feed.getData();
+    }
+
+    private static class ProductServiceUnavailableException extends RuntimeException {
+    }
+}
@@ -0,0 +1,37 @@
+package com.zjsu.pjt.order.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * 已确认存在的用户ID缓存。
+ * <p>
+ * 来源有两个：网关校验 JWT 后转发的 X-User-Id（令牌只会签发给已注册用户），以及用户服务的查询结果。
+ * 命中缓存的下单请求无需再调用用户服务。条目在 ttl-ms 后过期，用户被删除后最多在这段时间内仍被视为存在。
+ */
+@Component
+public class VerifiedUserCache {
+
+    private final Cache<UUID, Boolean> verified;
+
+    public VerifiedUserCache(@Value("${order.verified-user-cache.max-size:100000}") long maxSize,
+                             @Value("${order.verified-user-cache.ttl-ms:600000}") long ttlMs) {
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    public boolean isVerified(UUID userId) {
+        return verified.getIfPresent(userId) != null;
+    }
+
+    public void markVerified(UUID userId) {
+        verified.put(userId, Boolean.TRUE);
+    }
+}
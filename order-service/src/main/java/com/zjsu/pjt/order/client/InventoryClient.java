@@ -1,10 +1,12 @@
 package com.zjsu.pjt.order.client;
 
+import com.zjsu.pjt.order.dto.InventoryEvent;
 import com.zjsu.pjt.order.dto.InventoryUpdateRequest;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -20,19 +22,51 @@ public interface InventoryClient {
      * 调用 inventory-service 扣减指定商品的库存。
      * 路径和参数必须与 InventoryController 中的定义完全匹配。
      *
+     * @param idempotencyKey 本次扣减的幂等键，Feign 重试或对冲请求重复发送时库存服务只扣减一次
      * @param request 包含商品ID和扣减数量的请求体
      * @return 返回一个包含操作结果和端口信息的Map
      */
     @PostMapping("/api/inventorys/decrease")
-    ResponseEntity<Map<String, Object>> decreaseStock(@RequestBody InventoryUpdateRequest request);
+    ResponseEntity<Map<String, Object>> decreaseStock(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                                      @RequestBody InventoryUpdateRequest request);
 
 
     /**
      * 调用 inventory-service 增加指定商品的库存 (用于取消订单时的库存回滚)。
+     * @param idempotencyKey 本次回滚的幂等键，重复发送时库存服务只增加一次
      * @param request 包含商品ID和增加数量的请求体
      * @return 包含操作结果的响应实体
      */
     @PostMapping("/api/inventorys/increase")
-    ResponseEntity<Map<String, Object>> increaseStock(@RequestBody InventoryUpdateRequest request);
+    ResponseEntity<Map<String, Object>> increaseStock(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                                      @RequestBody InventoryUpdateRequest request);
+
+    /**
+     * 调用 inventory-service 批量扣减库存（购物车结算），库存服务在一个事务中完成，任一商品不足则全部不扣。
+     * @param idempotencyKey 本次结算扣减的幂等键，重复发送时库存服务只扣减一次
+     * @param requests 每个商品的扣减数量
+     * @return 包含操作结果和端口信息的Map
+     */
+    @PostMapping("/api/inventorys/decrease-batch")
+    ResponseEntity<Map<String, Object>> decreaseStockBatch(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                                           @RequestBody List<InventoryUpdateRequest> requests);
+
+    /**
+     * 调用 inventory-service 批量增加库存（整单取消或结算失败时的补偿）。
+     * @param idempotencyKey 本次补偿的幂等键，重复发送时库存服务只增加一次
+     * @param requests 每个商品的增加数量
+     * @return 包含操作结果和端口信息的Map
+     */
+    @PostMapping("/api/inventorys/increase-batch")
+    ResponseEntity<Map<String, Object>> increaseStockBatch(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                                           @RequestBody List<InventoryUpdateRequest> requests);
+
+    /**
+     * 发件箱中继批量投递库存事件，库存服务按事件ID去重。
+     * @param events 待投递的事件
+     * @return data 为库存服务已确认的事件ID，未确认的事件稍后重投
+     */
+    @PostMapping("/api/inventorys/events")
+    ResponseEntity<Map<String, Object>> deliverEvents(@RequestBody List<InventoryEvent> events);
 
 }
@@ -1,10 +1,12 @@
 package com.zjsu.pjt.order.client;
 
+import com.zjsu.pjt.order.dto.ProductChangeFeed;
 import com.zjsu.pjt.order.dto.ProductClientDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import java.util.UUID;
 
 // 注意：这里只定义接口
@@ -12,4 +14,10 @@ import java.util.UUID;
 public interface ProductClient {
     @GetMapping("/api/products/{id}")
     ResponseEntity<ProductClientDTO> getProductById(@PathVariable("id") UUID id);
+
+    // 商品变更流，用于维护本地商品副本（since 为空时全量分页）
+    @GetMapping("/api/products/changes")
+    ResponseEntity<ProductChangeFeed> getProductChanges(@RequestParam(value = "since", required = false) String since,
+                                                        @RequestParam(value = "afterId", required = false) UUID afterId,
+                                                        @RequestParam("limit") int limit);
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package com.zjsu.pjt.order.client;
 
+import com.zjsu.pjt.order.dto.ProductChangeFeed;
 import com.zjsu.pjt.order.dto.ProductClientDTO;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -28,4 +30,11 @@ public class ProductClientFallback implements ProductClient {
         // 这里返回 200 OK 但数据为空，保证前端不报错
         return ResponseEntity.ok(fallbackDTO);
     }
+
+    @Override
+    public ResponseEntity<ProductChangeFeed> getProductChanges(String since, UUID afterId, int limit) {
+        // 降级结果以 port=fallback 标识，调用方据此跳过本轮同步，不能当作“没有变更”；
+        // 这里不打印日志，ProductReplica 会记录“商品服务不可用”的警告，避免每个同步周期重复输出
+        return ResponseEntity.ok(new ProductChangeFeed(List.of(), ProductChangeFeed.FALLBACK_PORT));
+    }
 }
\ No newline at end of file
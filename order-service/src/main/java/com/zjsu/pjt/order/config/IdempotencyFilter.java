@@ -0,0 +1,209 @@
+package com.zjsu.pjt.order.config;
+
+import com.zjsu.pjt.order.service.IdempotencyStore;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Idempotency-Key 请求头处理：对配置的 POST 接口，同一个键只执行一次，之后的重复请求直接返回原始响应。
+ * <p>
+ * 原请求仍在执行时（如对冲请求、超时后立即重试），重复请求最多等待 wait-ms 毫秒，原请求完成则重放其响应，否则返回 409。
+ * 同一个键配不同的请求体返回 422。以 5xx 结束的请求会放弃该键，调用方可以用同一个键重试。
+ * 不带该请求头的请求不受影响。
+ */
+@Component
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final IdempotencyStore idempotencyStore;
+    private final Set<String> paths;
+    private final long waitMs;
+
+    public IdempotencyFilter(IdempotencyStore idempotencyStore,
+                             @Value("${order.idempotency.paths:/api/orders,/api/orders/checkout,/api/orders/async}") List<String> paths,
+                             @Value("${order.idempotency.wait-ms:2000}") long waitMs) {
+        this.idempotencyStore = idempotencyStore;
+        this.paths = Set.copyOf(paths);
+        this.waitMs = waitMs;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(HEADER) == null
+                || !paths.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            writeMessage(response, HttpStatus.BAD_REQUEST, HEADER + " 长度必须在 1 到 " + MAX_KEY_LENGTH + " 之间。");
+            return;
+        }
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        String scope = request.getMethod() + " " + request.getRequestURI();
+        String requestHash = sha256(body);
+
+        IdempotencyStore.Claim claim = idempotencyStore.claim(scope, key, requestHash);
+        long deadline = System.currentTimeMillis() + waitMs;
+        while (claim.outcome() == IdempotencyStore.Outcome.IN_PROGRESS && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            claim = idempotencyStore.claim(scope, key, requestHash);
+        }
+
+        switch (claim.outcome()) {
+            case REPLAY -> replay(response, claim);
+            case MISMATCH -> writeMessage(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    "该 " + HEADER + " 已用于不同的请求内容。");
+            case IN_PROGRESS -> writeMessage(response, HttpStatus.CONFLICT,
+                    "相同 " + HEADER + " 的请求正在处理中，请稍后重试。");
+            case ACQUIRED -> execute(new CachedBodyRequest(request, body), response, chain, claim);
+        }
+    }
+
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                         IdempotencyStore.Claim claim) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            chain.doFilter(request, wrapper);
+        } catch (ServletException | IOException | RuntimeException e) {
+            idempotencyStore.abandon(claim.record());
+            throw e;
+        }
+        int status = wrapper.getStatus();
+        try {
+            if (status >= 500) {
+                idempotencyStore.abandon(claim.record());
+            } else {
+                idempotencyStore.complete(claim.record(), status, wrapper.getContentType(),
+                        new String(wrapper.getContentAsByteArray(), StandardCharsets.UTF_8));
+            }
+        } catch (Exception e) {
+            // 业务已执行成功，保存响应失败不影响本次返回；该键的租约过期后重试会被再次执行
+            log.error("保存幂等键响应失败: {}", e.getMessage());
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyStore.Claim claim) throws IOException {
+        response.setStatus(claim.record().getResponseStatus());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (claim.record().getResponseContentType() != null) {
+            response.setContentType(claim.record().getResponseContentType());
+        }
+        if (claim.record().getResponseBody() != null) {
+            byte[] bytes = claim.record().getResponseBody().getBytes(StandardCharsets.UTF_8);
+            response.setContentLength(bytes.length);
+            response.getOutputStream().write(bytes);
+        }
+    }
+
+    private static void writeMessage(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("{\"message\":\"" + message + "\"}");
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 请求体已被读取用于计算摘要，包装后让后续的消息转换器可以再次读取
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
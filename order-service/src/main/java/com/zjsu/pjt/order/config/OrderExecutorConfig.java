@@ -0,0 +1,31 @@
+package com.zjsu.pjt.order.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 下单流程使用的线程池：用户校验与库存扣减并行执行时，用户校验在此线程池中运行。
+ * 队列有界，线程池满时由调用线程自己执行，退化为串行而不是拒绝下单。
+ */
+@Configuration
+public class OrderExecutorConfig {
+
+    @Bean(name = "orderCheckExecutor")
+    public ThreadPoolTaskExecutor orderCheckExecutor(
+            @Value("${order.check-executor.core-size:8}") int coreSize,
+            @Value("${order.check-executor.max-size:32}") int maxSize,
+            @Value("${order.check-executor.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("order-check-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
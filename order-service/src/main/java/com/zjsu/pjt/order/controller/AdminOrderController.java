@@ -1,67 +1,137 @@
 package com.zjsu.pjt.order.controller;
 
-import com.zjsu.pjt.order.client.ProductClient;
-import com.zjsu.pjt.order.dto.ProductClientDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zjsu.pjt.order.dto.AdminOrderDTO;
-import com.zjsu.pjt.order.model.Order;
+import com.zjsu.pjt.order.dto.AdminOrderFilter;
+import com.zjsu.pjt.order.exception.BusinessException;
 import com.zjsu.pjt.order.repository.OrderRepository;
+import com.zjsu.pjt.order.service.AdminOrderService;
+import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/admin/orders")
 @RequiredArgsConstructor
 public class AdminOrderController {
 
-    private final OrderRepository orderRepository;
-
-    // 只需要 ProductClient，删除了 UserClient
-    private final ProductClient productClient;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final String CSV_HEADER =
+            "id,productId,productBrand,productModel,productCategory,price,buyerId,quantity,status,createdAt";
 
-    @GetMapping("/all")
-    public ResponseEntity<List<AdminOrderDTO>> getAllOrders() {
-        List<Order> orders = orderRepository.findAll();
+    private final OrderRepository orderRepository;
 
-        List<AdminOrderDTO> dtos = orders.stream().map(order -> {
-            AdminOrderDTO dto = new AdminOrderDTO();
+    private final AdminOrderService adminOrderService;
 
-            // 1. 复制订单基本信息 (包含 buyerId)
-            dto.setId(order.getId());
-            dto.setProductId(order.getProductId());
-            dto.setBuyerId(order.getBuyerId()); // 这里已经设置了 BuyerID
-            dto.setQuantity(order.getQuantity());
-            dto.setStatus(order.getStatus());
-            dto.setCreatedAt(order.getCreatedAt());
+    private final ObjectMapper objectMapper;
 
-            // 2. 远程调用商品服务获取信息
-            try {
-                // 注意：根据之前的修改，Client 返回的是 ResponseEntity，需要 .getBody()
-                ResponseEntity<ProductClientDTO> response = productClient.getProductById(order.getProductId());
+    @GetMapping
+    @Operation(summary = "分页查询订单（可按状态、买家、商品、创建时间区间过滤，按创建时间倒序）")
+    public Page<AdminOrderDTO> getOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) UUID buyerId,
+            @RequestParam(required = false) UUID productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        if (page < 0 || size <= 0) {
+            throw new BusinessException("分页参数不合法", HttpStatus.BAD_REQUEST);
+        }
+        PageRequest pageable = PageRequest.of(page, Math.min(size, MAX_PAGE_SIZE),
+                Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")));
+        return adminOrderService.findOrders(new AdminOrderFilter(status, buyerId, productId, from, to), pageable);
+    }
 
-                if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                    ProductClientDTO product = response.getBody();
+    @GetMapping("/export")
+    @Operation(summary = "流式导出订单（format=ndjson 或 csv），过滤条件与分页查询相同，内存占用与订单总数无关")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) UUID buyerId,
+            @RequestParam(required = false) UUID productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new BusinessException("不支持的导出格式: " + format, HttpStatus.BAD_REQUEST);
+        }
+        AdminOrderFilter filter = new AdminOrderFilter(status, buyerId, productId, from, to);
 
-                    dto.setProductBrand(product.getBrand());
-                    dto.setProductModel(product.getModel());
-                    dto.setProductCategory(product.getCategory());
-                    dto.setPrice(product.getPrice());
-                    dto.setProductImage(product.getImageUrl());
-                }
-            } catch (Exception e) {
-                // 如果商品服务调用失败，设置默认值
-                dto.setProductModel("未知商品 (获取失败)");
+        // 响应体在异步线程中边查边写，数据库游标和事务都在 exportOrders 内部打开
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            if (csv) {
+                writer.write('\uFEFF'); // BOM，保证 Excel 正确识别中文
+                writer.write(CSV_HEADER);
+                writer.write('\n');
             }
+            adminOrderService.exportOrders(filter, batch -> {
+                try {
+                    for (AdminOrderDTO dto : batch) {
+                        writer.write(csv ? toCsvLine(dto) : objectMapper.writeValueAsString(dto));
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
 
+        String fileName = "orders-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                + (csv ? ".csv" : ".ndjson");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(csv
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
 
-            return dto;
-        }).collect(Collectors.toList());
+    private String toCsvLine(AdminOrderDTO dto) {
+        return String.join(",",
+                csvField(dto.getId()),
+                csvField(dto.getProductId()),
+                csvField(dto.getProductBrand()),
+                csvField(dto.getProductModel()),
+                csvField(dto.getProductCategory()),
+                csvField(dto.getPrice()),
+                csvField(dto.getBuyerId()),
+                csvField(dto.getQuantity()),
+                csvField(dto.getStatus()),
+                csvField(dto.getCreatedAt()));
+    }
 
-        return ResponseEntity.ok(dtos);
+    // 按 RFC 4180 转义：含逗号、引号或换行的字段用双引号包裹，内部引号加倍
+    private String csvField(Object value) {
+        String text = Objects.toString(value, "");
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
     }
 
     @DeleteMapping("/{id}")
@@ -1,7 +1,10 @@
 package com.zjsu.pjt.order.controller;
 
+import com.zjsu.pjt.order.config.IdempotencyFilter;
+import com.zjsu.pjt.order.dto.InventoryUpdateRequest;
 import com.zjsu.pjt.order.model.Order;
 import com.zjsu.pjt.order.repository.OrderRepository;
+import com.zjsu.pjt.order.service.AsyncOrderPipeline;
 import com.zjsu.pjt.order.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -9,14 +12,22 @@ import jakarta.validation.Valid;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.net.URI;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Data
@@ -30,14 +41,99 @@ public class OrderController {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private AsyncOrderPipeline asyncOrderPipeline;
+
+    // 状态查询长轮询的最长等待时间
+    @Value("${order.async.max-wait-ms:30000}")
+    private long maxWaitMs;
+
     @PostMapping
     @Operation(summary = "创建新订单")
     @ResponseStatus(HttpStatus.CREATED)
     public Order createOrder(@RequestHeader(value = "X-User-Id", required = false) String userId,
                              @RequestHeader(value = "X-Username", required = false) String username,
+                             @RequestHeader(value = IdempotencyFilter.HEADER, required = false) String idempotencyKey,
                              @Valid @RequestBody CreateOrderRequest request) {
         log.info("用户 {} (ID: {}) 发起选课请求", username, userId);
-        return orderService.createOrder(request.getBuyerId(), request.getProductId(), request.getQuantity());
+        return orderService.createOrder(request.getBuyerId(), request.getProductId(), request.getQuantity(),
+                parseUserId(userId), idempotencyKey);
+    }
+
+    @PostMapping("/async")
+    @Operation(summary = "异步创建订单 (立即返回 202 和订单ID，通过状态接口查询结果)")
+    public ResponseEntity<Map<String, Object>> submitOrder(@RequestHeader(value = "X-User-Id", required = false) String userId,
+                                                           @RequestHeader(value = "X-Username", required = false) String username,
+                                                           @Valid @RequestBody CreateOrderRequest request) {
+        log.info("用户 {} (ID: {}) 发起异步下单请求", username, userId);
+        int quantity = request.getQuantity() == null ? 0 : request.getQuantity();
+        Optional<Order> accepted = asyncOrderPipeline.submit(request.getBuyerId(), request.getProductId(), quantity,
+                parseUserId(userId));
+        if (accepted.isEmpty()) {
+            // 背压：队列已满时直接拒绝，客户端按 Retry-After 退避后重试
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("message", "下单请求过多，请稍后重试"));
+        }
+        Order order = accepted.get();
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/orders/" + order.getId() + "/status"))
+                .body(statusBody(order));
+    }
+
+    @GetMapping("/{id}/status")
+    @Operation(summary = "查询订单处理状态 (waitMs > 0 时长轮询，订单处理完成或超时后返回)")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> getOrderStatus(@PathVariable UUID id,
+                                                                              @RequestParam(defaultValue = "0") long waitMs) {
+        DeferredResult<ResponseEntity<Map<String, Object>>> result =
+                new DeferredResult<>(Math.max(1, Math.min(waitMs, maxWaitMs)), () -> currentStatus(id));
+        Optional<Order> order = orderRepository.findById(id);
+        Optional<CompletableFuture<Order>> completion = asyncOrderPipeline.completionOf(id);
+        if (order.isEmpty() || !OrderService.STATUS_PENDING.equals(order.get().getStatus())
+                || waitMs <= 0 || completion.isEmpty()) {
+            // 已完成、不需要等待，或订单不在本实例处理：直接返回当前状态，由客户端继续轮询
+            result.setResult(order.map(o -> ResponseEntity.ok(statusBody(o)))
+                    .orElseGet(() -> ResponseEntity.notFound().build()));
+            return result;
+        }
+        // 长轮询期间不占用请求线程，订单处理完成时由工作线程写回结果
+        completion.get().whenComplete((processed, error) -> result.setResult(
+                processed != null ? ResponseEntity.ok(statusBody(processed)) : currentStatus(id)));
+        return result;
+    }
+
+    private ResponseEntity<Map<String, Object>> currentStatus(UUID id) {
+        return orderRepository.findById(id)
+                .map(order -> ResponseEntity.ok(statusBody(order)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static Map<String, Object> statusBody(Order order) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("orderId", order.getId());
+        body.put("status", order.getStatus());
+        body.put("failureReason", order.getFailureReason());
+        return body;
+    }
+
+    @PostMapping("/checkout")
+    @Operation(summary = "购物车结算 (一次生成多行订单，库存整单扣减)")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Map<String, Object> checkout(@RequestHeader(value = "X-User-Id", required = false) String userId,
+                                        @RequestHeader(value = "X-Username", required = false) String username,
+                                        @RequestHeader(value = IdempotencyFilter.HEADER, required = false) String idempotencyKey,
+                                        @Valid @RequestBody CheckoutRequest request) {
+        log.info("用户 {} (ID: {}) 发起购物车结算", username, userId);
+        List<Order> orders = orderService.checkout(request.getBuyerId(), request.getItems(), parseUserId(userId),
+                idempotencyKey);
+        return Map.of("checkoutId", orders.get(0).getCheckoutId(), "orders", orders);
+    }
+
+    @DeleteMapping("/checkout/{checkoutId}")
+    @Operation(summary = "整单取消一次购物车结算并回滚库存")
+    public ResponseEntity<Void> cancelCheckout(@PathVariable UUID checkoutId) {
+        orderService.cancelCheckout(checkoutId);
+        return ResponseEntity.noContent().build();
     }
 
     // --- 新增：适配前端的 GET /api/orders/user/{userId} ---
@@ -95,10 +191,28 @@ public class OrderController {
         return orderRepository.findAll();
     }
 
+    // X-User-Id 由网关在校验 JWT 后写入；格式不合法时视为未认证，交由用户服务校验
+    private UUID parseUserId(String userId) {
+        if (userId == null || userId.isBlank()) {
+            return null;
+        }
+        try {
+            return UUID.fromString(userId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     @lombok.Data
     static class CreateOrderRequest {
         private UUID buyerId;
         private UUID productId;
         private Integer quantity;
     }
+
+    @lombok.Data
+    static class CheckoutRequest {
+        private UUID buyerId;
+        private List<InventoryUpdateRequest> items;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.zjsu.pjt.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 管理端订单查询条件，所有字段均可为空，为空表示不按该条件过滤。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminOrderFilter {
+    private String status;          // 订单状态
+    private UUID buyerId;           // 购买者ID
+    private UUID productId;         // 商品ID
+    private LocalDateTime from;     // 创建时间下限（含）
+    private LocalDateTime to;       // 创建时间上限（不含）
+}
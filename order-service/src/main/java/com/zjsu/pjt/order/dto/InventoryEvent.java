@@ -0,0 +1,32 @@
+package com.zjsu.pjt.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 通过事务发件箱投递给库存服务的事件，格式与库存服务 POST /api/inventorys/events 的请求项一致。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryEvent {
+
+    public static final String STOCK_RELEASED = "STOCK_RELEASED";
+
+    private UUID eventId;
+    private String type;
+    private UUID aggregateId; // 订单ID
+    private List<InventoryUpdateRequest> items;
+
+    /**
+     * 订单取消后归还库存。事件ID由订单ID确定：同一订单无论被取消几次（如并发的单个取消与整单取消），库存只归还一次。
+     */
+    public static InventoryEvent stockReleased(UUID orderId, UUID productId, int quantity) {
+        UUID eventId = UUID.nameUUIDFromBytes(("order-cancel-" + orderId).getBytes(StandardCharsets.UTF_8));
+        return new InventoryEvent(eventId, STOCK_RELEASED, orderId, List.of(new InventoryUpdateRequest(productId, quantity)));
+    }
+}
@@ -0,0 +1,20 @@
+package com.zjsu.pjt.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+/**
+ * 商品服务变更流 GET /api/products/changes 的响应体。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangeFeed {
+
+    public static final String FALLBACK_PORT = "fallback";
+
+    private List<ProductClientDTO> data; // 按 (updatedAt, id) 或 id 排序的商品
+    private String port;                 // 响应的商品服务实例端口，降级时为 fallback
+}
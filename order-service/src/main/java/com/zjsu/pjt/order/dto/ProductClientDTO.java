@@ -3,6 +3,7 @@ package com.zjsu.pjt.order.dto;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Data
@@ -15,4 +16,5 @@ public class ProductClientDTO {
     private String category;
     private Integer price;
     private String imageUrl;
+    private LocalDateTime updatedAt; // 商品最后修改时间，用于增量同步本地商品副本
 }
\ No newline at end of file
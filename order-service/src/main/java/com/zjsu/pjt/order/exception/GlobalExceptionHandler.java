@@ -18,12 +18,12 @@ import java.util.stream.Collectors;
 @Slf4j
 public class GlobalExceptionHandler {
 
-    // 业务异常（自定义）
+    // 业务异常（自定义），按异常携带的状态码返回：下游服务不可用时为 503，客户端可用同一个 Idempotency-Key 重试
     @ExceptionHandler(BusinessException.class)
     public ResponseEntity<Response<Void>> handleBusinessException(BusinessException e) {
         log.error("业务异常：{}", e.getMessage());
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                .body(Response.error(400, e.getMessage()));
+        return ResponseEntity.status(e.getStatus())
+                .body(Response.error(e.getStatus().value(), e.getMessage()));
     }
 
     // 资源不存在异常
@@ -0,0 +1,59 @@
+package com.zjsu.pjt.order.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * 幂等键记录：同一接口（scope）上同一个 Idempotency-Key 只执行一次，重放时直接返回这里保存的原始响应。
+ * <p>
+ * processing 状态下 expiresAt 是执行租约，超过后视为原请求已中断，可被重试接管；
+ * completed 状态下 expiresAt 是保存期限，到期后由清理任务删除，表的大小因此有界。
+ */
+@Entity
+@Table(name = "idempotency_record",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_idempotency_scope_key", columnNames = {"scope", "idempotencyKey"})
+        },
+        indexes = {
+                @Index(name = "idx_idempotency_expires_at", columnList = "expiresAt")
+        })
+@Data
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id; // 主键
+
+    @Column(nullable = false, length = 128)
+    private String scope; // 请求方法与路径，如 POST /api/orders
+
+    @Column(nullable = false, length = 128)
+    private String idempotencyKey; // 调用方提供的幂等键
+
+    @Column(nullable = false, length = 64)
+    private String requestHash; // 请求体的 SHA-256，同一个键配不同请求体时拒绝
+
+    @Column(nullable = false, length = 16)
+    private String status = "processing"; // processing / completed
+
+    private Integer responseStatus; // 原始响应状态码
+
+    @Column(length = 128)
+    private String responseContentType; // 原始响应的 Content-Type
+
+    @Lob
+    private String responseBody; // 原始响应体
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt; // 执行租约或保存期限，见类注释
+
+    public IdempotencyRecord(String scope, String idempotencyKey, String requestHash, LocalDateTime expiresAt) {
+        this.scope = scope;
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.expiresAt = expiresAt;
+    }
+}
@@ -19,7 +19,11 @@ import java.util.UUID;
 @Entity
 @Table(name = "orders", indexes = {
         @Index(name = "idx_buyer_id", columnList = "buyerId"),
-        @Index(name = "idx_product_id", columnList = "productId")
+        @Index(name = "idx_product_id", columnList = "productId"),
+        // 管理端订单列表按创建时间倒序分页/导出，并常按状态过滤
+        @Index(name = "idx_order_created_at", columnList = "createdAt"),
+        @Index(name = "idx_order_status_created_at", columnList = "status, createdAt"),
+        @Index(name = "idx_order_checkout_id", columnList = "checkoutId")
 })
 public class Order {
 
@@ -44,6 +48,13 @@ public class Order {
     @Schema(description = "订单购买数量", example = "3", required = true)
     private Integer quantity; // 订单购买数量
 
+    @Schema(description = "购物车结算批次ID，同一次结算生成的订单共享该ID；单独下单的订单为空", example = "5b7c2a10-3d4e-4f5a-8b6c-7d8e9f0a1b2c", readOnly = true)
+    private UUID checkoutId; // 结算批次ID
+
+    @Column(length = 255)
+    @Schema(description = "异步下单失败的原因，仅 FAILED 状态的订单有值", example = "库存不足", readOnly = true)
+    private String failureReason; // 异步下单失败原因
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     @Schema(description = "订单创建时间（系统自动生成）", example = "2024-10-01T10:30:00", readOnly = true)
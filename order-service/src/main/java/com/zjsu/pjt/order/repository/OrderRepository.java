@@ -1,8 +1,14 @@
 package com.zjsu.pjt.order.repository;
 
 import com.zjsu.pjt.order.model.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -11,7 +17,7 @@ import java.util.UUID;
  * 订单数据访问接口
  */
 @Repository
-public interface OrderRepository extends JpaRepository<Order, UUID> {
+public interface OrderRepository extends JpaRepository<Order, UUID>, JpaSpecificationExecutor<Order> {
 
     /**
      * 根据购买者ID查询订单列表，并按创建时间降序排列
@@ -27,6 +33,20 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
      */
     List<Order> findByStatus(String status);
 
+    /**
+     * 异步下单：把仍处于 PENDING 的订单更新为最终状态。多个实例重复处理同一订单时只有第一次更新生效。
+     * @return 更新的行数，0 表示订单已被其他处理者完成
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Order o SET o.status = :status, o.failureReason = :reason WHERE o.id = :id AND o.status = 'PENDING'")
+    int finishPending(@Param("id") UUID id, @Param("status") String status, @Param("reason") String reason);
+
+    /**
+     * 创建时间早于 before 仍为 PENDING 的异步订单（如实例重启时队列中未处理的订单），走 (status, createdAt) 索引
+     */
+    List<Order> findByStatusAndCreatedAtBeforeOrderByCreatedAt(String status, LocalDateTime before, Pageable pageable);
+
     /**
      * 根据购买者ID和订单状态查询订单列表
      * @param buyerId 购买者ID
@@ -42,5 +62,12 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
      * @return 订单列表
      */
     List<Order> findByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * 查询同一次购物车结算生成的所有订单
+     * @param checkoutId 结算批次ID
+     * @return 订单列表
+     */
+    List<Order> findByCheckoutId(UUID checkoutId);
 }
 
@@ -0,0 +1,40 @@
+package com.zjsu.pjt.order.repository;
+
+import com.zjsu.pjt.order.dto.AdminOrderFilter;
+import com.zjsu.pjt.order.model.Order;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 订单动态查询条件。只为非空的过滤字段生成谓词，分页查询和流式导出共用同一套条件。
+ */
+public final class OrderSpecifications {
+
+    private OrderSpecifications() {
+    }
+
+    public static Specification<Order> matching(AdminOrderFilter filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.getStatus() != null && !filter.getStatus().isBlank()) {
+                predicates.add(cb.equal(root.get("status"), filter.getStatus()));
+            }
+            if (filter.getBuyerId() != null) {
+                predicates.add(cb.equal(root.get("buyerId"), filter.getBuyerId()));
+            }
+            if (filter.getProductId() != null) {
+                predicates.add(cb.equal(root.get("productId"), filter.getProductId()));
+            }
+            if (filter.getFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), filter.getFrom()));
+            }
+            if (filter.getTo() != null) {
+                predicates.add(cb.lessThan(root.get("createdAt"), filter.getTo()));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package com.zjsu.pjt.order.service;
+
+import com.zjsu.pjt.order.cache.ProductReplica;
+import com.zjsu.pjt.order.dto.AdminOrderDTO;
+import com.zjsu.pjt.order.dto.AdminOrderFilter;
+import com.zjsu.pjt.order.dto.ProductClientDTO;
+import com.zjsu.pjt.order.model.Order;
+import com.zjsu.pjt.order.repository.OrderRepository;
+import com.zjsu.pjt.order.repository.OrderSpecifications;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 管理端订单查询：分页筛选和流式导出，并为订单补充商品信息。
+ */
+@Service
+@Slf4j
+public class AdminOrderService {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    // 本地商品副本，补充商品信息时不发起远程调用
+    @Autowired
+    private ProductReplica productReplica;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // 导出时 JDBC 的 fetch size。MySQL Connector/J 只有在 Integer.MIN_VALUE 时才逐行流式读取，
+    // 否则会把整个结果集读入内存；若连接串开启了 useCursorFetch=true，也可以改为正数按批读取
+    @Value("${order.export.fetch-size:-2147483648}")
+    private int exportFetchSize;
+
+    // 导出时每攒够多少条订单写出一次
+    @Value("${order.export.batch-size:500}")
+    private int exportBatchSize;
+
+    /**
+     * 分页查询订单，并从本地副本补充当前页的商品信息。
+     */
+    @Transactional(readOnly = true)
+    public Page<AdminOrderDTO> findOrders(AdminOrderFilter filter, Pageable pageable) {
+        Page<Order> orderPage = orderRepository.findAll(OrderSpecifications.matching(filter), pageable);
+        return new PageImpl<>(toDtos(orderPage.getContent()), pageable, orderPage.getTotalElements());
+    }
+
+    /**
+     * 流式导出订单：通过数据库游标逐行读取，每 exportBatchSize 条补充商品信息后交给 consumer 写出。
+     * 读过的实体立即从持久化上下文中移除，内存占用与订单总数无关。
+     * <p>
+     * 必须在调用方的写出线程中执行，事务（以及数据库连接）在整个导出期间保持打开。
+     *
+     * @param consumer 接收一批已补充商品信息的订单
+     * @return 导出的订单总数
+     */
+    @Transactional(readOnly = true)
+    public long exportOrders(AdminOrderFilter filter, Consumer<List<AdminOrderDTO>> consumer) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Order> query = cb.createQuery(Order.class);
+        Root<Order> root = query.from(Order.class);
+        query.where(OrderSpecifications.matching(filter).toPredicate(root, query, cb))
+                .orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+
+        long exported = 0;
+        List<Order> buffer = new ArrayList<>(exportBatchSize);
+        try (Stream<Order> orders = entityManager.createQuery(query)
+                .setHint("org.hibernate.fetchSize", exportFetchSize)
+                .setHint("org.hibernate.readOnly", true)
+                .getResultStream()) {
+            for (Order order : (Iterable<Order>) orders::iterator) {
+                entityManager.detach(order);
+                buffer.add(order);
+                if (buffer.size() == exportBatchSize) {
+                    consumer.accept(toDtos(buffer));
+                    exported += buffer.size();
+                    buffer.clear();
+                }
+            }
+        }
+        if (!buffer.isEmpty()) {
+            consumer.accept(toDtos(buffer));
+            exported += buffer.size();
+        }
+        log.info("订单导出完成，共 {} 条。", exported);
+        return exported;
+    }
+
+    /**
+     * 将订单转换为管理端展示对象，商品信息取自本地商品副本。
+     */
+    private List<AdminOrderDTO> toDtos(List<Order> orders) {
+        return orders.stream().map(order -> {
+            AdminOrderDTO dto = new AdminOrderDTO();
+
+            // 复制订单基本信息 (包含 buyerId)
+            dto.setId(order.getId());
+            dto.setProductId(order.getProductId());
+            dto.setBuyerId(order.getBuyerId());
+            dto.setQuantity(order.getQuantity());
+            dto.setStatus(order.getStatus());
+            dto.setCreatedAt(order.getCreatedAt());
+
+            // 从本地商品副本中填充商品信息
+            ProductClientDTO product = productReplica.get(order.getProductId());
+            if (product != null) {
+                dto.setProductBrand(product.getBrand());
+                dto.setProductModel(product.getModel());
+                dto.setProductCategory(product.getCategory());
+                dto.setPrice(product.getPrice());
+                dto.setProductImage(product.getImageUrl());
+            } else {
+                // 副本尚未预热完成，或商品在本服务启动前就已被删除
+                dto.setProductModel(productReplica.isWarm() ? "未知商品" : "未知商品 (商品信息同步中)");
+            }
+            return dto;
+        }).collect(Collectors.toList());
+    }
+}
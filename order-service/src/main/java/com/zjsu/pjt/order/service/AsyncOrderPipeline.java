@@ -0,0 +1,185 @@
+package com.zjsu.pjt.order.service;
+
+import com.zjsu.pjt.order.model.Order;
+import com.zjsu.pjt.order.repository.OrderRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步下单流水线：接口只写入一条 PENDING 订单并放入有界队列后立即返回 202，
+ * 固定数量的工作线程每次从队列取出一批订单交给 {@link OrderService#processPendingOrders(List)} 处理。
+ * <p>
+ * 背压：queue-capacity 同时限制排队和处理中的订单数，已满时拒绝新订单（接口返回 503 和 Retry-After），
+ * 不写入订单，也不让请求线程阻塞等待。
+ * 队列只在内存中，订单本身已持久化：实例重启时队列中的订单仍为 PENDING，
+ * 由恢复任务在 recovery-after-ms 后重新入队（可能由另一个实例处理，幂等键保证库存只扣减一次）。
+ */
+@Component
+@Slf4j
+public class AsyncOrderPipeline {
+
+    private final OrderService orderService;
+    private final OrderRepository orderRepository;
+    private final int workerCount;
+    private final int batchSize;
+    private final long recoveryAfterMs;
+
+    private final BlockingQueue<Order> queue;
+    private final Semaphore capacity;
+    // 本实例排队或处理中的订单，值在处理完成后完成，供状态查询长轮询等待
+    private final Map<UUID, CompletableFuture<Order>> inFlight = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public AsyncOrderPipeline(OrderService orderService,
+                              OrderRepository orderRepository,
+                              @Value("${order.async.workers:8}") int workerCount,
+                              @Value("${order.async.queue-capacity:2000}") int queueCapacity,
+                              @Value("${order.async.batch-size:32}") int batchSize,
+                              @Value("${order.async.recovery-after-ms:60000}") long recoveryAfterMs) {
+        this.orderService = orderService;
+        this.orderRepository = orderRepository;
+        this.workerCount = workerCount;
+        this.batchSize = Math.max(1, batchSize);
+        this.recoveryAfterMs = recoveryAfterMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.capacity = new Semaphore(queueCapacity);
+    }
+
+    @PostConstruct
+    void startWorkers() {
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::workLoop, "order-async-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * 接收一个异步订单。
+     *
+     * @return PENDING 状态的订单；队列已满时为空，调用方应稍后重试
+     */
+    public Optional<Order> submit(UUID buyerId, UUID productId, int quantity, UUID authenticatedUserId) {
+        if (!capacity.tryAcquire()) {
+            return Optional.empty();
+        }
+        Order order;
+        try {
+            order = orderService.submitOrder(buyerId, productId, quantity, authenticatedUserId);
+        } catch (RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+        enqueue(order);
+        return Optional.of(order);
+    }
+
+    /**
+     * 本实例上该订单的处理结果；订单不在本实例处理时为空，调用方直接读取数据库中的状态。
+     */
+    public Optional<CompletableFuture<Order>> completionOf(UUID orderId) {
+        return Optional.ofNullable(inFlight.get(orderId));
+    }
+
+    public int queuedCount() {
+        return queue.size();
+    }
+
+    // 调用方已占用一个容量
+    private void enqueue(Order order) {
+        inFlight.put(order.getId(), new CompletableFuture<>());
+        queue.add(order);
+    }
+
+    private void workLoop() {
+        while (running) {
+            List<Order> batch = new ArrayList<>(batchSize);
+            try {
+                Order first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                List<Order> processed = orderService.processPendingOrders(batch);
+                for (Order order : processed) {
+                    complete(order.getId(), order);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // 订单仍为 PENDING，由恢复任务稍后重新入队
+                log.error("异步订单批处理失败，共 {} 个订单等待恢复任务重试。原因: {}", batch.size(), e.getMessage());
+            } finally {
+                for (Order order : batch) {
+                    complete(order.getId(), null);
+                }
+                capacity.release(batch.size());
+            }
+        }
+    }
+
+    private void complete(UUID orderId, Order order) {
+        CompletableFuture<Order> completion = inFlight.remove(orderId);
+        if (completion != null) {
+            completion.complete(order);
+        }
+    }
+
+    /**
+     * 把超过 recovery-after-ms 仍为 PENDING、且不在本实例队列中的订单重新入队，每轮最多占用当前剩余容量。
+     */
+    @Scheduled(fixedDelayString = "${order.async.recovery-interval-ms:30000}")
+    public void recoverStalePending() {
+        try {
+            int available = capacity.availablePermits();
+            if (available == 0) {
+                return;
+            }
+            LocalDateTime before = LocalDateTime.now().minus(Duration.ofMillis(recoveryAfterMs));
+            List<Order> stale = orderRepository.findByStatusAndCreatedAtBeforeOrderByCreatedAt(
+                    OrderService.STATUS_PENDING, before, PageRequest.of(0, Math.min(available, 500)));
+            int recovered = 0;
+            for (Order order : stale) {
+                if (inFlight.containsKey(order.getId()) || !capacity.tryAcquire()) {
+                    continue;
+                }
+                enqueue(order);
+                recovered++;
+            }
+            if (recovered > 0) {
+                log.warn("恢复任务重新入队 {} 个超时未完成的异步订单", recovered);
+            }
+        } catch (Exception e) {
+            log.warn("异步订单恢复任务失败，下一轮重试。原因: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+}
@@ -1,21 +1,33 @@
 package com.zjsu.pjt.order.service;
 
+import com.zjsu.pjt.order.cache.VerifiedUserCache;
 import com.zjsu.pjt.order.client.InventoryClient;
 import com.zjsu.pjt.order.client.UserClient;
+import com.zjsu.pjt.order.dto.InventoryEvent;
 import com.zjsu.pjt.order.dto.InventoryUpdateRequest;
 import com.zjsu.pjt.order.exception.BusinessException;
 import com.zjsu.pjt.order.exception.ResourceNotFoundException;
 import com.zjsu.pjt.order.model.Order;
 import com.zjsu.pjt.order.repository.OrderRepository;
+import feign.FeignException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 @Service
 @Slf4j
@@ -33,33 +45,52 @@ public class OrderService {
     @Autowired
     private InventoryClient inventoryClient;
 
+    // 取消订单后的库存归还写入发件箱，随本地事务提交后异步投递
+    @Autowired
+    private InventoryOutbox inventoryOutbox;
+
+    // 已确认存在的用户，命中时下单无需调用用户服务
+    @Autowired
+    private VerifiedUserCache verifiedUserCache;
+
+    @Autowired
+    @Qualifier("orderCheckExecutor")
+    private Executor orderCheckExecutor;
+
+    // 异步下单的中间状态与失败状态
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_FAILED = "FAILED";
+
+    // 一次购物车结算最多包含的商品种数
+    @Value("${order.checkout.max-items:50}")
+    private int checkoutMaxItems;
+
     /**
      * 创建订单 (已使用 OpenFeign 改造)
+     * <p>
+     * 用户校验与库存扣减并行执行：已验证的用户（网关转发的当前登录用户，或近期校验过的用户）直接跳过用户服务调用，
+     * 此时下单只需一次远程调用；否则用户校验在线程池中与库存扣减同时进行，若用户校验失败则补偿已扣减的库存。
+     *
      * @param buyerId 购买者ID
      * @param productId 商品ID
      * @param quantity 购买数量
+     * @param authenticatedUserId 网关校验 JWT 后转发的当前用户ID（X-User-Id），可为空
+     * @param idempotencyKey 客户端请求头中的 Idempotency-Key，可为空
      * @return 创建成功的订单对象
      */
     @Transactional
-    public Order createOrder(UUID buyerId, UUID productId, int quantity) {
-        // 1. 调用 User-Service 验证用户是否存在 (通过 UserClient)
-        try {
-            log.info("正在验证用户是否存在, buyerId: {}", buyerId);
-            ResponseEntity<Map<String, Object>> userResponse = userClient.getUserById(buyerId);
-            if (!userResponse.getStatusCode().is2xxSuccessful() || userResponse.getBody() == null) {
-                throw new ResourceNotFoundException("创建订单失败：购买者用户不存在或用户服务响应异常，ID: " + buyerId);
-            }
-            log.info("用户验证成功, 响应端口: {}", userResponse.getBody().get("port"));
-        } catch (Exception e) {
-            // 捕获 Feign 调用可能产生的异常 (包括熔断)
-            throw new BusinessException("用户服务调用失败: " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
-        }
+    public Order createOrder(UUID buyerId, UUID productId, int quantity, UUID authenticatedUserId, String idempotencyKey) {
+        // 1~2. 校验买家（与库存扣减并行）
+        CompletableFuture<Void> userCheck = startUserCheck(buyerId, authenticatedUserId);
 
-        // 2. 调用 Inventory-Service 扣减库存 (通过 InventoryClient)
+        // 3. 调用 Inventory-Service 扣减库存 (通过 InventoryClient)
+        // 扣减与补偿的幂等键由客户端的 Idempotency-Key 确定：客户端超时后用同一个键重试时，库存服务重放上次的扣减结果而不会再扣一次；
+        // 同一次请求内的 Feign 重试同样只扣减一次
+        String stockKey = "order-" + operationId("order", buyerId, idempotencyKey);
         try {
             log.info("正在调用库存服务扣减库存, productId: {}, quantity: {}", productId, quantity);
             InventoryUpdateRequest request = new InventoryUpdateRequest(productId, quantity);
-            ResponseEntity<Map<String, Object>> inventoryResponse = inventoryClient.decreaseStock(request);
+            ResponseEntity<Map<String, Object>> inventoryResponse = inventoryClient.decreaseStock(stockKey + "-decrease", request);
 
             if (inventoryResponse.getBody() != null && inventoryResponse.getBody().containsKey("port")) {
                 log.info("库存扣减成功, 响应端口: {}", inventoryResponse.getBody().get("port"));
@@ -68,10 +99,23 @@ public class OrderService {
             // 这个异常可能是 Feign 熔断异常，也可能是库存服务主动抛出的业务异常（如库存不足）
             // Feign 会将服务端的异常信息包装后抛出
             log.error("库存服务调用失败或业务逻辑不通过: {}", e.getMessage());
+            if (!isStockRejection(e)) {
+                // 库存服务不可用或超时时返回 503，调用方可以用同一个 Idempotency-Key 重试
+                throw e instanceof BusinessException be && be.getStatus().is5xxServerError() ? be
+                        : new BusinessException("库存服务暂时不可用，请稍后重试: " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+            }
             throw new BusinessException("创建订单失败: " + e.getMessage(), HttpStatus.BAD_REQUEST);
         }
 
-        // 3. 如果库存扣减成功，创建并保存订单
+        // 4. 等待用户校验结果，失败则补偿库存
+        try {
+            userCheck.join();
+        } catch (CompletionException e) {
+            RuntimeException cause = e.getCause() instanceof RuntimeException c ? c : e;
+            throw afterCompensation(compensateStock(stockKey, productId, quantity), idempotencyKey, cause);
+        }
+
+        // 5. 创建并保存订单，保存失败同样补偿库存
         log.info("所有检查通过，正在创建订单...");
         Order order = new Order();
         order.setBuyerId(buyerId);
@@ -79,11 +123,335 @@ public class OrderService {
         order.setQuantity(quantity);
         order.setStatus("ACTIVE"); // 统一使用大写状态
 
+        try {
+            return orderRepository.save(order);
+        } catch (RuntimeException e) {
+            throw afterCompensation(compensateStock(stockKey, productId, quantity), idempotencyKey, e);
+        }
+    }
+
+    /**
+     * 库存服务是否明确拒绝了本次请求（库存不足、商品不存在、参数错误等 4xx）。
+     * 超时、熔断降级、5xx 以及 409（相同幂等键的请求仍在执行）都不能确定扣减是否发生。
+     */
+    private static boolean isStockRejection(Exception e) {
+        int status = e instanceof FeignException fe ? fe.status()
+                : e instanceof BusinessException be ? be.getStatus().value() : -1;
+        return status >= 400 && status < 500 && status != HttpStatus.CONFLICT.value();
+    }
+
+    /**
+     * 一次下单操作的ID，用于派生库存扣减与补偿的幂等键。客户端带了 Idempotency-Key 时由买家与该键确定，
+     * 重试得到同一个ID；否则每次随机生成。
+     */
+    private static UUID operationId(String operation, UUID buyerId, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return UUID.randomUUID();
+        }
+        return UUID.nameUUIDFromBytes((operation + ':' + buyerId + ':' + idempotencyKey.trim())
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 库存已补偿后决定返回给客户端的异常。补偿用掉了本次扣减的幂等键，若仍以 5xx 结束，客户端用同一个
+     * Idempotency-Key 重试时库存服务只会重放上次的扣减结果，订单会在没有扣减库存的情况下创建；
+     * 因此带键的请求在补偿成功后以 409 结束（该结果会被保存并重放），提示客户端换一个新键重新下单。
+     */
+    private static RuntimeException afterCompensation(boolean compensated, String idempotencyKey, RuntimeException cause) {
+        boolean serverError = !(cause instanceof BusinessException be && be.getStatus().is4xxClientError())
+                && !(cause instanceof ResourceNotFoundException);
+        if (compensated && serverError && idempotencyKey != null && !idempotencyKey.isBlank()) {
+            return new BusinessException("下单失败，库存已退回，请使用新的 Idempotency-Key 重新下单: " + cause.getMessage(),
+                    HttpStatus.CONFLICT);
+        }
+        return cause;
+    }
+
+    /**
+     * 异步下单第一步：只写入一条 PENDING 订单并返回，用户校验、库存扣减由 {@link AsyncOrderPipeline} 的工作线程批量完成。
+     *
+     * @param authenticatedUserId 网关校验 JWT 后转发的当前用户ID（X-User-Id），可为空
+     * @return PENDING 状态的订单
+     */
+    @Transactional
+    public Order submitOrder(UUID buyerId, UUID productId, int quantity, UUID authenticatedUserId) {
+        if (buyerId == null || productId == null || quantity <= 0) {
+            throw new BusinessException("购买者、商品不能为空，数量必须大于0", HttpStatus.BAD_REQUEST);
+        }
+        // 为自己下单时网关已校验过令牌，工作线程处理时无需再调用用户服务
+        if (buyerId.equals(authenticatedUserId)) {
+            verifiedUserCache.markVerified(buyerId);
+        }
+        Order order = new Order();
+        order.setBuyerId(buyerId);
+        order.setProductId(productId);
+        order.setQuantity(quantity);
+        order.setStatus(STATUS_PENDING);
         return orderRepository.save(order);
     }
 
     /**
-     * 取消订单 (已使用 OpenFeign 改造)
+     * 处理一批 PENDING 订单：批内买家去重后并行校验，各订单的库存扣减并行发起（库存服务会合并同一商品的并发扣减），
+     * 最后逐个把订单条件更新为 ACTIVE 或 FAILED。
+     * <p>
+     * 扣减与补偿的幂等键由订单ID确定，同一订单被多个实例重复处理时库存也只扣减一次；
+     * 只有成功把订单更新为 FAILED 的处理者才会补偿库存。
+     * 只有明确的拒绝（库存不足、商品或用户不存在）才会把订单置为 FAILED；超时、熔断降级等无法确定结果的失败
+     * 保持 PENDING，由恢复任务稍后用同一个幂等键重放，库存不会因为一次超时而既被扣减又被判定失败。
+     *
+     * @return 处理后的订单（从数据库重新读取）
+     */
+    public List<Order> processPendingOrders(List<Order> orders) {
+        Map<UUID, CompletableFuture<Void>> userChecks = new LinkedHashMap<>();
+        for (Order order : orders) {
+            userChecks.computeIfAbsent(order.getBuyerId(), buyerId -> startUserCheck(buyerId, null));
+        }
+        List<CompletableFuture<String>> decreases = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            decreases.add(CompletableFuture.supplyAsync(() -> decreaseForPendingOrder(order), orderCheckExecutor));
+        }
+
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            String stockFailure;
+            String failure;
+            try {
+                stockFailure = decreases.get(i).join();
+                failure = stockFailure != null ? stockFailure : userCheckFailure(userChecks.get(order.getBuyerId()));
+            } catch (CompletionException e) {
+                log.warn("异步订单 {} 的处理结果不确定，保持 PENDING 等待恢复任务重试。原因: {}", order.getId(),
+                        e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                continue;
+            }
+            if (failure == null) {
+                orderRepository.finishPending(order.getId(), "ACTIVE", null);
+            } else if (orderRepository.finishPending(order.getId(), STATUS_FAILED, truncate(failure)) == 1 && stockFailure == null) {
+                compensateStock("order-" + order.getId(), order.getProductId(), order.getQuantity());
+            }
+        }
+        return orderRepository.findAllById(orders.stream().map(Order::getId).toList());
+    }
+
+    // 扣减异步订单的库存：成功返回 null，库存服务明确拒绝时返回原因，结果不确定时抛出异常
+    private String decreaseForPendingOrder(Order order) {
+        try {
+            inventoryClient.decreaseStock("order-" + order.getId() + "-decrease",
+                    new InventoryUpdateRequest(order.getProductId(), order.getQuantity()));
+            return null;
+        } catch (Exception e) {
+            log.warn("异步订单 {} 扣减库存失败: {}", order.getId(), e.getMessage());
+            if (!isStockRejection(e)) {
+                throw new BusinessException("库存服务暂时不可用: " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return "库存扣减失败: " + e.getMessage();
+        }
+    }
+
+    // 用户校验：通过返回 null，用户不存在时返回原因，用户服务不可用等结果不确定时抛出 CompletionException
+    private static String userCheckFailure(CompletableFuture<Void> userCheck) {
+        try {
+            userCheck.join();
+            return null;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ResourceNotFoundException notFound) {
+                return notFound.getMessage();
+            }
+            throw e;
+        }
+    }
+
+    private static String truncate(String reason) {
+        return reason.length() <= 255 ? reason : reason.substring(0, 255);
+    }
+
+    /**
+     * 购物车结算：一次生成多行订单，所有商品的库存通过一次批量调用在库存服务的同一个事务中扣减，
+     * 任一商品库存不足则全部不扣，无论购物车有多少商品都只需一次库存服务往返。
+     * <p>
+     * 同一次结算生成的订单共享 checkoutId，可通过 {@link #cancelCheckout(UUID)} 整单取消；
+     * 每行订单仍可像普通订单一样单独取消。
+     *
+     * @param buyerId 购买者ID
+     * @param items 购物车商品及数量，同一商品出现多次时数量合并
+     * @param authenticatedUserId 网关校验 JWT 后转发的当前用户ID（X-User-Id），可为空
+     * @param idempotencyKey 客户端请求头中的 Idempotency-Key，可为空
+     * @return 创建成功的订单列表
+     */
+    @Transactional
+    public List<Order> checkout(UUID buyerId, List<InventoryUpdateRequest> items, UUID authenticatedUserId,
+                                String idempotencyKey) {
+        List<InventoryUpdateRequest> lines = mergeCheckoutItems(items);
+
+        // 1. 校验买家（与库存扣减并行）
+        CompletableFuture<Void> userCheck = startUserCheck(buyerId, authenticatedUserId);
+
+        // 2. 一次调用批量扣减全部商品库存
+        // checkoutId 预先生成（带 Idempotency-Key 时由买家与该键确定），批量扣减与补偿的幂等键都由它派生，
+        // 客户端超时重试或 Feign 重试都不会重复扣减
+        UUID checkoutId = operationId("checkout", buyerId, idempotencyKey);
+        String stockKey = "checkout-" + checkoutId;
+        try {
+            log.info("正在调用库存服务批量扣减库存, 商品种数: {}", lines.size());
+            ResponseEntity<Map<String, Object>> inventoryResponse = inventoryClient.decreaseStockBatch(stockKey + "-decrease", lines);
+
+            if (inventoryResponse.getBody() != null && inventoryResponse.getBody().containsKey("port")) {
+                log.info("批量库存扣减成功, 响应端口: {}", inventoryResponse.getBody().get("port"));
+            }
+        } catch (Exception e) {
+            log.error("批量扣减库存失败: {}", e.getMessage());
+            if (!isStockRejection(e)) {
+                // 库存服务不可用或超时时返回 503，调用方可以用同一个 Idempotency-Key 重试
+                throw e instanceof BusinessException be && be.getStatus().is5xxServerError() ? be
+                        : new BusinessException("库存服务暂时不可用，请稍后重试: " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            throw new BusinessException("结算失败: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        // 3. 等待用户校验结果，失败则整单补偿库存
+        try {
+            userCheck.join();
+        } catch (CompletionException e) {
+            RuntimeException cause = e.getCause() instanceof RuntimeException c ? c : e;
+            throw afterCompensation(compensateStockBatch(stockKey, lines), idempotencyKey, cause);
+        }
+
+        // 4. 生成共享同一 checkoutId 的多行订单
+        List<Order> orders = new ArrayList<>(lines.size());
+        for (InventoryUpdateRequest line : lines) {
+            Order order = new Order();
+            order.setBuyerId(buyerId);
+            order.setProductId(line.getProductId());
+            order.setQuantity(line.getQuantity());
+            order.setStatus("ACTIVE");
+            order.setCheckoutId(checkoutId);
+            orders.add(order);
+        }
+
+        try {
+            List<Order> saved = orderRepository.saveAll(orders);
+            log.info("结算 {} 完成，共生成 {} 个订单", checkoutId, saved.size());
+            return saved;
+        } catch (RuntimeException e) {
+            throw afterCompensation(compensateStockBatch(stockKey, lines), idempotencyKey, e);
+        }
+    }
+
+    /**
+     * 整单取消一次购物车结算：未取消的订单行统一标记为 CANCELLED，每行的库存归还事件与之在同一事务中写入发件箱，
+     * 由中继一次批量投递给库存服务。
+     * @param checkoutId 结算批次ID
+     */
+    @Transactional
+    public void cancelCheckout(UUID checkoutId) {
+        List<Order> orders = orderRepository.findByCheckoutId(checkoutId);
+        if (orders.isEmpty()) {
+            throw new ResourceNotFoundException("结算记录不存在，ID: " + checkoutId);
+        }
+
+        List<Order> activeOrders = orders.stream()
+                .filter(order -> !"CANCELLED".equalsIgnoreCase(order.getStatus()))
+                .toList();
+        if (activeOrders.isEmpty()) {
+            throw new IllegalStateException("该结算下的订单均已取消，请勿重复操作");
+        }
+
+        log.info("正在取消结算 {}，库存归还事件写入发件箱, 订单行数: {}", checkoutId, activeOrders.size());
+        for (Order order : activeOrders) {
+            order.setStatus("CANCELLED");
+            inventoryOutbox.enqueue(InventoryEvent.stockReleased(order.getId(), order.getProductId(), order.getQuantity()));
+        }
+        orderRepository.saveAll(activeOrders);
+        log.info("结算 {} 已整单取消，共 {} 个订单", checkoutId, activeOrders.size());
+    }
+
+    // 校验购物车明细并按商品合并数量，保持商品首次出现的顺序
+    private List<InventoryUpdateRequest> mergeCheckoutItems(List<InventoryUpdateRequest> items) {
+        if (items == null || items.isEmpty()) {
+            throw new BusinessException("购物车为空，无法结算", HttpStatus.BAD_REQUEST);
+        }
+        Map<UUID, Integer> merged = new LinkedHashMap<>();
+        for (InventoryUpdateRequest item : items) {
+            if (item == null || item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new BusinessException("购物车商品或数量不合法", HttpStatus.BAD_REQUEST);
+            }
+            merged.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        if (merged.size() > checkoutMaxItems) {
+            throw new BusinessException("一次最多结算 " + checkoutMaxItems + " 种商品", HttpStatus.BAD_REQUEST);
+        }
+        List<InventoryUpdateRequest> lines = new ArrayList<>(merged.size());
+        merged.forEach((productId, quantity) -> lines.add(new InventoryUpdateRequest(productId, quantity)));
+        return lines;
+    }
+
+    /**
+     * 开始校验买家：为自己下单时网关已校验过令牌，买家必然存在；
+     * 已验证的用户直接通过，否则在线程池中调用 User-Service 校验，调用方可同时扣减库存。
+     */
+    private CompletableFuture<Void> startUserCheck(UUID buyerId, UUID authenticatedUserId) {
+        if (buyerId.equals(authenticatedUserId)) {
+            verifiedUserCache.markVerified(buyerId);
+        }
+        return verifiedUserCache.isVerified(buyerId)
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(() -> verifyUser(buyerId), orderCheckExecutor);
+    }
+
+    /**
+     * 调用 User-Service 验证用户是否存在，成功后写入已验证用户缓存。
+     */
+    private void verifyUser(UUID buyerId) {
+        try {
+            log.info("正在验证用户是否存在, buyerId: {}", buyerId);
+            ResponseEntity<Map<String, Object>> userResponse = userClient.getUserById(buyerId);
+            if (!userResponse.getStatusCode().is2xxSuccessful() || userResponse.getBody() == null) {
+                throw new ResourceNotFoundException("创建订单失败：购买者用户不存在或用户服务响应异常，ID: " + buyerId);
+            }
+            log.info("用户验证成功, 响应端口: {}", userResponse.getBody().get("port"));
+        } catch (ResourceNotFoundException e) {
+            throw e;
+        } catch (FeignException.NotFound e) {
+            throw new ResourceNotFoundException("创建订单失败：购买者用户不存在，ID: " + buyerId);
+        } catch (Exception e) {
+            // 捕获 Feign 调用可能产生的异常 (包括熔断)
+            throw new BusinessException("用户服务调用失败: " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        verifiedUserCache.markVerified(buyerId);
+    }
+
+    /**
+     * 下单失败时归还已扣减的库存。补偿失败只记录日志，需要人工介入核对库存。
+     * @return 补偿是否成功
+     */
+    private boolean compensateStock(String stockKey, UUID productId, int quantity) {
+        try {
+            log.warn("下单失败，正在补偿库存, productId: {}, quantity: {}", productId, quantity);
+            inventoryClient.increaseStock(stockKey + "-compensate", new InventoryUpdateRequest(productId, quantity));
+            return true;
+        } catch (Exception e) {
+            log.error("库存补偿失败，需要人工核对! ProductId: {}, Quantity: {}. 错误: {}", productId, quantity, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 结算失败时一次归还全部已扣减的库存。补偿失败只记录日志，需要人工介入核对库存。
+     * @return 补偿是否成功
+     */
+    private boolean compensateStockBatch(String stockKey, List<InventoryUpdateRequest> lines) {
+        try {
+            log.warn("结算失败，正在批量补偿库存, 商品种数: {}", lines.size());
+            inventoryClient.increaseStockBatch(stockKey + "-compensate", lines);
+            return true;
+        } catch (Exception e) {
+            log.error("批量库存补偿失败，需要人工核对! 明细: {}. 错误: {}", lines, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 取消订单。库存归还事件与订单状态在同一个本地事务中写入发件箱，提交后由中继投递给库存服务，
+     * 不再在事务中同步调用库存服务；库存服务暂时不可用时取消照常成功，库存稍后归还。
      * @param orderId 要取消的订单ID
      */
     @Transactional
@@ -94,28 +462,18 @@ public class OrderService {
         if ("CANCELLED".equalsIgnoreCase(order.getStatus())) {
             throw new IllegalStateException("订单已取消，请勿重复操作");
         }
-
-        // 1. 调用 Inventory-Service 回滚（增加）库存 (通过 InventoryClient)
-        try {
-            log.info("正在调用库存服务增加库存 (回滚), productId: {}, quantity: {}", order.getProductId(), order.getQuantity());
-            // 注意: `increaseStock` 方法也需要在 InventoryClient 中定义
-            InventoryUpdateRequest request = new InventoryUpdateRequest(order.getProductId(), order.getQuantity());
-            ResponseEntity<java.util.Map<String, Object>> inventoryResponse = inventoryClient.increaseStock(request);
-
-            if (inventoryResponse.getBody() != null && inventoryResponse.getBody().containsKey("port")) {
-                log.info("库存增加(回滚)成功, 响应端口: {}", inventoryResponse.getBody().get("port"));
-            }
-        } catch (Exception e) {
-            // 如果回滚库存失败，这是一个严重问题，需要记录并可能需要人工介入
-            log.error("取消订单时，回滚库存失败! OrderId: {}, ProductId: {}. 错误: {}", orderId, order.getProductId(), e.getMessage());
-            // 抛出异常，让事务回滚，订单状态不会被更新为 CANCELLED，以便后续重试或处理
-            throw new BusinessException("取消订单失败：无法回滚库存 - " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        if (STATUS_PENDING.equals(order.getStatus()) || STATUS_FAILED.equals(order.getStatus())) {
+            // 处理中的订单库存尚未确定，失败的订单没有扣减库存，均不能取消
+            throw new IllegalStateException("订单尚未创建成功，无法取消");
         }
 
-        // 2. 更新订单状态为 "CANCELLED"
+        // 1. 更新订单状态为 "CANCELLED"
         order.setStatus("CANCELLED");
         orderRepository.save(order);
-        log.info("订单 {} 已成功取消", orderId);
+
+        // 2. 库存归还事件写入发件箱（与订单状态同一事务），事件ID由订单ID确定，库存只会归还一次
+        inventoryOutbox.enqueue(InventoryEvent.stockReleased(orderId, order.getProductId(), order.getQuantity()));
+        log.info("订单 {} 已成功取消，库存归还事件已写入发件箱", orderId);
     }
     
 }
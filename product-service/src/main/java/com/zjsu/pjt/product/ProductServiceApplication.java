@@ -7,6 +7,7 @@ import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.retry.annotation.EnableRetry; // <--- 添加这一行 import 语句
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 /**
@@ -16,6 +17,7 @@ import org.springframework.retry.annotation.EnableRetry; // <--- 添加这一行
 @EnableDiscoveryClient
 @EnableFeignClients
 @EnableRetry
+@EnableScheduling
 public class ProductServiceApplication {
 
 
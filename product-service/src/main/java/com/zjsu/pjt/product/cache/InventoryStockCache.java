@@ -0,0 +1,152 @@
+package com.zjsu.pjt.product.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zjsu.pjt.product.client.InventoryClient;
+import com.zjsu.pjt.product.client.InventoryStockFetcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 商品服务内的库存近端缓存（productId -> stock）。
+ * <p>
+ * 页面渲染优先从内存读取库存，只有未命中的商品才批量调用库存服务。
+ * 缓存条目有两道失效机制：
+ * <ul>
+ *     <li>TTL：即“陈旧预算”（product.stock-cache.staleness-budget-ms），任何条目最多陈旧这么久；</li>
+ *     <li>事件失效：定时拉取库存服务的库存变更流（decrease/increase/updateStock 提交后产生），主动剔除变更过的商品。</li>
+ * </ul>
+ * 命中/未命中/淘汰等指标通过 Micrometer 以 cache.* 前缀（cache=inventory.stock）暴露在 /actuator/metrics。
+ */
+@Component
+@Slf4j
+public class InventoryStockCache {
+
+    // 库存服务从未产生过变更记录时使用的起始水位线
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final InventoryClient inventoryClient;
+    private final InventoryStockFetcher inventoryStockFetcher;
+    private final boolean enabled;
+    private final Duration pollOverlap;
+    private final Cache<UUID, Integer> cache;
+    private final Counter invalidationCounter;
+
+    // 已同步到的库存变更水位线，取自库存服务数据库时钟，避免跨服务时钟偏差
+    private volatile LocalDateTime watermark;
+
+    public InventoryStockCache(InventoryClient inventoryClient,
+                               InventoryStockFetcher inventoryStockFetcher,
+                               MeterRegistry meterRegistry,
+                               @Value("${product.stock-cache.enabled:true}") boolean enabled,
+                               @Value("${product.stock-cache.max-size:10000}") long maxSize,
+                               @Value("${product.stock-cache.staleness-budget-ms:30000}") long stalenessBudgetMs,
+                               @Value("${product.stock-cache.poll-overlap-ms:5000}") long pollOverlapMs) {
+        this.inventoryClient = inventoryClient;
+        this.inventoryStockFetcher = inventoryStockFetcher;
+        this.enabled = enabled;
+        this.pollOverlap = Duration.ofMillis(pollOverlapMs);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(stalenessBudgetMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "inventory.stock");
+        this.invalidationCounter = meterRegistry.counter("inventory.stock.cache.invalidations");
+    }
+
+    /**
+     * 批量获取库存，命中部分直接返回，未命中部分一次性向库存服务补齐。
+     * 库存服务降级时返回的空 Map 不会写入缓存。
+     */
+    public Map<UUID, Integer> getStocks(List<UUID> productIds) {
+        if (!enabled) {
+            return inventoryStockFetcher.fetch(productIds);
+        }
+
+        Map<UUID, Integer> result = new HashMap<>(cache.getAllPresent(productIds));
+        List<UUID> missing = productIds.stream()
+                .filter(id -> !result.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+
+        if (!missing.isEmpty()) {
+            log.debug("库存缓存未命中 {} 个商品，正在向库存服务补齐...", missing.size());
+            Map<UUID, Integer> fetched = inventoryStockFetcher.fetch(missing);
+            if (fetched != null && !fetched.isEmpty()) {
+                cache.putAll(fetched);
+                result.putAll(fetched);
+            }
+        }
+        return result;
+    }
+
+    public void invalidate(Collection<UUID> productIds) {
+        cache.invalidateAll(productIds);
+        invalidationCounter.increment(productIds.size());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 拉取库存变更流并剔除对应缓存条目。
+     * 每次都从 (水位线 - 重叠窗口) 开始查询：既能覆盖提交时间晚于语句时间的事务，
+     * 也能再次剔除“变更前发起、变更后才写入”的并发回填值。重复剔除是无害的。
+     */
+    @Scheduled(initialDelayString = "${product.stock-cache.invalidation-poll-ms:1000}",
+            fixedDelayString = "${product.stock-cache.invalidation-poll-ms:1000}")
+    public void pollStockChanges() {
+        if (!enabled) {
+            return;
+        }
+
+        String since = watermark == null ? null : watermark.minus(pollOverlap).toString();
+        Map<String, Object> body;
+        try {
+            ResponseEntity<Map<String, Object>> responseEntity = inventoryClient.getStockChanges(since);
+            body = responseEntity.getBody();
+        } catch (Exception e) {
+            log.warn("拉取库存变更流失败，本轮跳过，依赖TTL兜底。原因: {}", e.getMessage());
+            return;
+        }
+        if (body == null || "fallback".equals(body.get("port"))) {
+            return;
+        }
+
+        List<String> changedIds = (List<String>) body.get("data");
+        if (changedIds != null && !changedIds.isEmpty()) {
+            invalidate(changedIds.stream().map(UUID::fromString).collect(Collectors.toList()));
+            log.debug("根据库存变更流剔除了 {} 个商品的库存缓存。", changedIds.size());
+        }
+
+        Object next = body.get("watermark");
+        if (watermark == null) {
+            // 首次建立水位线之前读入的值无法确认是否陈旧，全部丢弃
+            invalidateAll();
+            watermark = next == null ? EPOCH : LocalDateTime.parse(next.toString());
+            log.info("库存缓存已与库存变更流建立同步，起始水位线: {}", watermark);
+        } else if (next != null) {
+            LocalDateTime parsed = LocalDateTime.parse(next.toString());
+            if (parsed.isAfter(watermark)) {
+                watermark = parsed;
+            }
+        }
+    }
+}
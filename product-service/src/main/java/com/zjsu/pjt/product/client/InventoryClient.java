@@ -1,7 +1,9 @@
 package com.zjsu.pjt.product.client;
 
 import com.zjsu.pjt.product.dto.InventoryCreateRequest;
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.Map;
@@ -9,7 +11,9 @@ import java.util.UUID;
 import org.springframework.web.bind.annotation.PostMapping; // 导入
 import org.springframework.web.bind.annotation.RequestBody; // 导入
 import java.util.List;
+import com.zjsu.pjt.product.dto.InventoryEvent;
 import com.zjsu.pjt.product.dto.InventoryUpdateRequest; // 确保你创建了这个DTO
+import com.zjsu.pjt.product.util.StockBatchCodec;
 
 
 @FeignClient(name = "inventory-service", fallback = InventoryClientFallback.class)
@@ -24,8 +28,14 @@ public interface InventoryClient {
     @PutMapping("/api/inventorys/{productId}/on-shelf")
     ResponseEntity<Map<String, Object>> updateOnShelfStatus(@PathVariable("productId") UUID productId, @RequestParam("onShelf") boolean onShelf);
 
+    // 条件请求：ifNoneMatch 与库存服务当前快照版本一致时返回 304 且不带ID列表。
+    // 返回原始 Response，304 不会被 Feign 当作错误而触发降级，由调用方自行解析响应体
     @GetMapping("/api/inventorys/on-shelf-product-ids")
-    ResponseEntity<Map<String, Object>> getOnShelfProductIds();
+    Response getOnShelfProductIds(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
+
+    // 发件箱中继批量投递库存事件，响应 data 为库存服务已确认的事件ID
+    @PostMapping("/api/inventorys/events")
+    ResponseEntity<Map<String, Object>> deliverEvents(@RequestBody List<InventoryEvent> events);
 
 
     @PostMapping("/api/inventorys/decrease")
@@ -38,4 +48,12 @@ public interface InventoryClient {
     @PostMapping("/api/inventorys/stocks")
     Map<UUID, Integer> getStocksByProductIds(@RequestBody List<UUID> productIds);
 
+    // 同一接口的紧凑二进制版本，由 InventoryStockFetcher 优先使用
+    @PostMapping(value = "/api/inventorys/stocks", consumes = StockBatchCodec.MEDIA_TYPE, produces = StockBatchCodec.MEDIA_TYPE)
+    byte[] getStocksByProductIdsBinary(@RequestBody byte[] packedProductIds);
+
+    // 库存变更流，since 为空时只返回起始水位线
+    @GetMapping("/api/inventorys/stock-changes")
+    ResponseEntity<Map<String, Object>> getStockChanges(@RequestParam(value = "since", required = false) String since);
+
 }
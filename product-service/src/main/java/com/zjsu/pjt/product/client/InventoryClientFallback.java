@@ -2,6 +2,7 @@ package com.zjsu.pjt.product.client;
 
 import com.zjsu.pjt.product.dto.InventoryCreateRequest;
 import com.zjsu.pjt.product.exception.BusinessException;
+import feign.Response;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -10,6 +11,7 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.UUID;
 import java.util.List; // 导入 List
+import com.zjsu.pjt.product.dto.InventoryEvent;
 import com.zjsu.pjt.product.dto.InventoryUpdateRequest; // 确保你创建了这个DTO
 
 
@@ -38,15 +40,17 @@ public class InventoryClientFallback implements InventoryClient {
     }
 
     @Override
-    public ResponseEntity<Map<String, Object>> getOnShelfProductIds() {
-        log.warn("InventoryClient#getOnShelfProductIds fallback triggered. 返回空列表作为降级响应。");
-        // 对于查询操作，返回一个空的成功响应是比抛出异常更好的降级策略
-        Map<String, Object> fallbackResponse = Map.of(
-                "data", Collections.emptyList(),
-                "port", "fallback",
-                "message", "Service unavailable, returning empty list."
-        );
-        return ResponseEntity.ok(fallbackResponse);
+    public Response getOnShelfProductIds(String ifNoneMatch) {
+        log.warn("InventoryClient#getOnShelfProductIds fallback triggered. 返回null，由调用方跳过本轮对账。");
+        // 不能返回空列表：调用方会把它当作“没有上架商品”而把所有商品下架
+        return null;
+    }
+
+    @Override
+    public ResponseEntity<Map<String, Object>> deliverEvents(List<InventoryEvent> events) {
+        log.warn("InventoryClient#deliverEvents fallback for {} events", events.size());
+        // 抛出异常，发件箱中的事件保持未确认，稍后重投
+        throw new BusinessException(UNAVAILABLE_MSG, HttpStatus.SERVICE_UNAVAILABLE);
     }
 
     @Override
@@ -56,6 +60,21 @@ public class InventoryClientFallback implements InventoryClient {
         return Collections.emptyMap();
     }
 
+    @Override
+    public byte[] getStocksByProductIdsBinary(byte[] packedProductIds) {
+        log.warn("InventoryClient#getStocksByProductIdsBinary fallback triggered. 返回null，由调用方退回JSON接口。");
+        return null;
+    }
+
+    @Override
+    public ResponseEntity<Map<String, Object>> getStockChanges(String since) {
+        log.warn("InventoryClient#getStockChanges fallback triggered, since: {}. 本轮缓存失效跳过，依赖TTL兜底。", since);
+        return ResponseEntity.ok(Map.of(
+                "data", Collections.emptyList(),
+                "port", "fallback"
+        ));
+    }
+
 
     @Override
     public ResponseEntity<Map<String, Object>> decreaseStock(InventoryUpdateRequest request) {
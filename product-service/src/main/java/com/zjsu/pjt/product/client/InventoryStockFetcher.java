@@ -0,0 +1,56 @@
+package com.zjsu.pjt.product.client;
+
+import com.zjsu.pjt.product.util.StockBatchCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 批量库存查询的编码协商。
+ * 优先使用 application/x-stock-batch 二进制编码；若库存服务不支持（旧版本返回 415）或调用失败，
+ * 本次退回 JSON 接口，并在 binary-retry-ms 内不再尝试二进制，避免每次请求都多一次失败往返。
+ */
+@Component
+@Slf4j
+public class InventoryStockFetcher {
+
+    private final InventoryClient inventoryClient;
+    private final boolean binaryEnabled;
+    private final long binaryRetryMs;
+
+    // 在此时间点之前直接走 JSON
+    private volatile long binaryRetryAfterMillis = 0;
+
+    public InventoryStockFetcher(InventoryClient inventoryClient,
+                                 @Value("${product.stock-fetch.binary-encoding:true}") boolean binaryEnabled,
+                                 @Value("${product.stock-fetch.binary-retry-ms:60000}") long binaryRetryMs) {
+        this.inventoryClient = inventoryClient;
+        this.binaryEnabled = binaryEnabled;
+        this.binaryRetryMs = binaryRetryMs;
+    }
+
+    public Map<UUID, Integer> fetch(List<UUID> productIds) {
+        if (productIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        if (binaryEnabled && System.currentTimeMillis() >= binaryRetryAfterMillis) {
+            try {
+                byte[] response = inventoryClient.getStocksByProductIdsBinary(StockBatchCodec.encodeIds(productIds));
+                if (response != null) {
+                    return StockBatchCodec.decodeStocks(response);
+                }
+            } catch (Exception e) {
+                log.warn("二进制批量库存接口调用失败，退回JSON。原因: {}", e.getMessage());
+            }
+            binaryRetryAfterMillis = System.currentTimeMillis() + binaryRetryMs;
+        }
+
+        return inventoryClient.getStocksByProductIds(productIds);
+    }
+}
@@ -6,16 +6,26 @@ import com.zjsu.pjt.product.exception.ResourceNotFoundException;
 import com.zjsu.pjt.product.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.HttpStatus;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import jakarta.validation.Valid;
 import java.util.UUID;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import com.zjsu.pjt.product.dto.ProductDetailDTO;
+import com.zjsu.pjt.product.dto.ProductCursorSlice;
+import com.zjsu.pjt.product.dto.ProductSearchResult;
+import com.zjsu.pjt.product.index.CatalogFacetIndex;
 
 
 
@@ -28,6 +38,8 @@ public class ProductController {
     private ProductRepository productRepository;
     @Autowired
     private ProductService productService;
+    @Autowired
+    private Environment environment;
 
     // --- 对外展示接口 ---
     @GetMapping
@@ -52,6 +64,55 @@ public class ProductController {
         return productService.findProductsByCategoryWithStock(category, pageable);
     }
 
+    @GetMapping("/scroll")
+    @Operation(summary = "获取所有上架商品（游标分页，适用于无限滚动，不返回总数）")
+    public ProductCursorSlice scrollOnShelfProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "6") int size
+    ) {
+        return productService.scrollOnShelfProductsWithStock(cursor, size);
+    }
+
+    @GetMapping("/category/{category}/scroll")
+    @Operation(summary = "按分类展示上架商品（游标分页 + 库存）")
+    public ProductCursorSlice scrollProductsByCategory(
+            @PathVariable String category,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "6") int size
+    ) {
+        return productService.scrollProductsByCategoryWithStock(category, cursor, size);
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "搜索上架商品：关键词全文检索（支持中文）+ 多维筛选（品牌/分类/车架尺寸/变速系统/颜色/价格区间），返回各筛选项计数")
+    public ProductSearchResult searchProducts(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) List<String> brand,
+            @RequestParam(required = false) List<String> category,
+            @RequestParam(required = false) List<String> frameSize,
+            @RequestParam(required = false) List<String> gearSystem,
+            @RequestParam(required = false) List<String> color,
+            @RequestParam(required = false) Integer minPrice,
+            @RequestParam(required = false) Integer maxPrice,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "6") int size
+    ) {
+        Map<String, Set<String>> selections = new HashMap<>();
+        putSelection(selections, CatalogFacetIndex.BRAND, brand);
+        putSelection(selections, CatalogFacetIndex.CATEGORY, category);
+        putSelection(selections, CatalogFacetIndex.FRAME_SIZE, frameSize);
+        putSelection(selections, CatalogFacetIndex.GEAR_SYSTEM, gearSystem);
+        putSelection(selections, CatalogFacetIndex.COLOR, color);
+        return productService.searchProducts(q, selections, minPrice, maxPrice, sort, page, size);
+    }
+
+    private void putSelection(Map<String, Set<String>> selections, String facet, List<String> values) {
+        if (values != null && !values.isEmpty()) {
+            selections.put(facet, new HashSet<>(values));
+        }
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "获取单个商品详情")
     public ResponseEntity<Product> getProductById(@PathVariable UUID id) {
@@ -60,6 +121,25 @@ public class ProductController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "按ID列表批量获取商品详情（供其他服务调用，不存在的ID会被忽略）")
+    public ResponseEntity<List<Product>> getProductsByIds(@RequestBody List<UUID> ids) {
+        return ResponseEntity.ok(productService.getProductsByIds(ids));
+    }
+
+    // 商品变更流：订单服务等据此维护本地商品信息副本，调用方用最后一条记录的 (updatedAt, id) 继续翻页
+    @GetMapping("/changes")
+    @Operation(summary = "获取商品变更流（since 为空时全量分页返回所有商品）")
+    public ResponseEntity<Map<String, Object>> getProductChanges(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) UUID afterId,
+            @RequestParam(defaultValue = "500") int limit) {
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("data", productService.getProductChanges(since, afterId, limit));
+        responseBody.put("port", environment.getProperty("local.server.port"));
+        return ResponseEntity.ok(responseBody);
+    }
+
     // --- 新增、修改、删除接口 ---
 
     @PostMapping
@@ -0,0 +1,31 @@
+package com.zjsu.pjt.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.UUID;
+
+/**
+ * 通过事务发件箱投递给库存服务的事件，格式与库存服务 POST /api/inventorys/events 的请求项一致。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryEvent {
+
+    public static final String PRODUCT_CREATED = "PRODUCT_CREATED";
+    public static final String PRODUCT_DELETED = "PRODUCT_DELETED";
+
+    private UUID eventId;
+    private String type;
+    private UUID aggregateId; // 商品ID，库存服务按它保证同一商品的事件顺序
+    private UUID productId;
+
+    public static InventoryEvent productCreated(UUID productId) {
+        return new InventoryEvent(UUID.randomUUID(), PRODUCT_CREATED, productId, productId);
+    }
+
+    public static InventoryEvent productDeleted(UUID productId) {
+        return new InventoryEvent(UUID.randomUUID(), PRODUCT_DELETED, productId, productId);
+    }
+}
@@ -0,0 +1,21 @@
+package com.zjsu.pjt.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页（无限滚动）的返回结果：只告知是否还有下一页，不包含总数。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductCursorSlice {
+
+    private List<ProductDetailDTO> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor; // 下一页的游标，没有下一页时为 null
+}
@@ -0,0 +1,23 @@
+package com.zjsu.pjt.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多维筛选的返回结果：当前页商品（含库存）、命中总数，以及各维度取值的命中数量。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchResult {
+
+    private List<ProductDetailDTO> content;
+    private int total;
+    private int page;
+    private int size;
+    private Map<String, Map<String, Integer>> facets; // 维度名 -> (取值 -> 命中数量)
+}
@@ -0,0 +1,448 @@
+package com.zjsu.pjt.product.index;
+
+import com.zjsu.pjt.product.model.Product;
+import com.zjsu.pjt.product.repository.ProductRepository;
+import com.zjsu.pjt.product.service.ProductChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * 商品目录的内存倒排索引，用于全文检索、多维筛选和筛选项计数。
+ * <p>
+ * 每个商品分配一个稠密的文档序号，每个维度取值对应一个 BitSet（包含该取值的文档集合），
+ * 价格和创建时间各维护一个排好序的文档序号数组。筛选即 BitSet 的与/或运算，价格区间通过二分查找定位，
+ * 整个过程不访问数据库。
+ * <p>
+ * 全文检索同样以 BitSet 作为倒排表：品牌、型号、分类、变速系统、颜色经 {@link CatalogTextAnalyzer} 分词后，
+ * 每个词对应一个文档集合。检索词之间为“与”，命中结果与上架状态、筛选条件共用同一套位运算。
+ * <p>
+ * 索引在商品增删改、上下架的事务提交后增量更新；由于商品服务是多实例部署，
+ * 其他实例上的修改只能通过定期全量重建（product.facet-index.rebuild-interval-ms）同步过来。
+ */
+@Component
+@Slf4j
+public class CatalogFacetIndex {
+
+    public static final String BRAND = "brand";
+    public static final String CATEGORY = "category";
+    public static final String FRAME_SIZE = "frameSize";
+    public static final String GEAR_SYSTEM = "gearSystem";
+    public static final String COLOR = "color";
+
+    public static final List<String> FACETS = List.of(BRAND, CATEGORY, FRAME_SIZE, GEAR_SYSTEM, COLOR);
+
+    private static final Map<String, Function<Product, String>> FACET_EXTRACTORS = Map.of(
+            BRAND, Product::getBrand,
+            CATEGORY, Product::getCategory,
+            FRAME_SIZE, Product::getFrameSize,
+            GEAR_SYSTEM, Product::getGearSystem,
+            COLOR, Product::getColor);
+
+    // 参与全文检索的字段及其相关度权重，型号和品牌命中比颜色等描述性字段更重要
+    private static final Map<Function<Product, String>, Integer> TEXT_FIELD_WEIGHTS = Map.of(
+            Product::getModel, 3,
+            Product::getBrand, 2,
+            Product::getCategory, 2,
+            Product::getGearSystem, 1,
+            Product::getColor, 1);
+
+    private final ProductRepository productRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 整体替换的索引状态；增量更新在写锁内原地修改
+    private State state = new State();
+
+    // 全量重建期间到达的增量变更，替换状态后重放，避免被重建时读到的旧数据覆盖
+    private boolean rebuilding;
+    private final Set<UUID> changedDuringRebuild = new HashSet<>();
+
+    public CatalogFacetIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * 索引的全部数据。文档序号只增不减，删除的商品留下空位，下次全量重建时压缩。
+     */
+    private static final class State {
+        final List<Product> docs = new ArrayList<>();
+        final Map<UUID, Integer> docIdByProduct = new HashMap<>();
+        final BitSet onShelf = new BitSet();
+        final Map<String, Map<String, BitSet>> postings = new HashMap<>();
+        // 全文检索倒排表：字段 -> 词 -> 文档集合
+        final Map<Function<Product, String>, Map<String, BitSet>> textPostings = new HashMap<>();
+
+        // 按价格升序的文档序号及对应价格，用于价格区间二分查找和价格排序
+        int[] docsByPrice = new int[0];
+        int[] sortedPrices = new int[0];
+        // 按创建时间倒序（同一时间再按ID倒序）排列的文档序号
+        int[] docsByNewest = new int[0];
+        // 文档序号 -> 在 docsByNewest 中的位置，相关度相同时用于按新旧排序
+        int[] newestRank = new int[0];
+
+        State() {
+            for (String facet : FACETS) {
+                postings.put(facet, new HashMap<>());
+            }
+            for (Function<Product, String> field : TEXT_FIELD_WEIGHTS.keySet()) {
+                textPostings.put(field, new HashMap<>());
+            }
+        }
+
+        void add(Product product) {
+            Integer existing = docIdByProduct.get(product.getId());
+            int doc;
+            if (existing != null) {
+                doc = existing;
+                clearPostings(doc);
+                docs.set(doc, product);
+            } else {
+                doc = docs.size();
+                docs.add(product);
+                docIdByProduct.put(product.getId(), doc);
+            }
+            FACET_EXTRACTORS.forEach((facet, extractor) -> {
+                String value = extractor.apply(product);
+                if (value != null && !value.isBlank()) {
+                    postings.get(facet).computeIfAbsent(value, v -> new BitSet()).set(doc);
+                }
+            });
+            textPostings.forEach((field, terms) -> {
+                for (String term : CatalogTextAnalyzer.indexTerms(field.apply(product))) {
+                    terms.computeIfAbsent(term, t -> new BitSet()).set(doc);
+                }
+            });
+            onShelf.set(doc, product.isOnShelf());
+        }
+
+        void remove(UUID productId) {
+            Integer doc = docIdByProduct.remove(productId);
+            if (doc == null) {
+                return;
+            }
+            clearPostings(doc);
+            docs.set(doc, null);
+            onShelf.clear(doc);
+        }
+
+        private void clearPostings(int doc) {
+            Product old = docs.get(doc);
+            if (old == null) {
+                return;
+            }
+            FACET_EXTRACTORS.forEach((facet, extractor) -> {
+                String value = extractor.apply(old);
+                Map<String, BitSet> values = postings.get(facet);
+                BitSet bits = value == null ? null : values.get(value);
+                if (bits != null) {
+                    bits.clear(doc);
+                    if (bits.isEmpty()) {
+                        values.remove(value);
+                    }
+                }
+            });
+            textPostings.forEach((field, terms) -> {
+                for (String term : CatalogTextAnalyzer.indexTerms(field.apply(old))) {
+                    BitSet bits = terms.get(term);
+                    if (bits != null) {
+                        bits.clear(doc);
+                        if (bits.isEmpty()) {
+                            terms.remove(term);
+                        }
+                    }
+                }
+            });
+        }
+
+        // 排序数组在每次写入后整体重建；商品写入频率低，目录规模下开销可以忽略
+        void resort() {
+            List<Integer> liveDocs = new ArrayList<>(docIdByProduct.values());
+
+            liveDocs.sort(Comparator.comparingInt(doc -> docs.get(doc).getPrice()));
+            docsByPrice = liveDocs.stream().mapToInt(Integer::intValue).toArray();
+            sortedPrices = Arrays.stream(docsByPrice).map(doc -> docs.get(doc).getPrice()).toArray();
+
+            liveDocs.sort(Comparator.<Integer, Product>comparing(docs::get,
+                    Comparator.comparing(Product::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+                            .thenComparing(Product::getId, Comparator.reverseOrder())));
+            docsByNewest = liveDocs.stream().mapToInt(Integer::intValue).toArray();
+            newestRank = new int[docs.size()];
+            for (int i = 0; i < docsByNewest.length; i++) {
+                newestRank[docsByNewest[i]] = i;
+            }
+        }
+    }
+
+    // --- 索引维护 ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${product.facet-index.rebuild-interval-ms:60000}",
+            fixedDelayString = "${product.facet-index.rebuild-interval-ms:60000}")
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+            changedDuringRebuild.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // 读库期间不持有锁，查询继续使用旧状态
+        State rebuilt = new State();
+        productRepository.findAll().forEach(rebuilt::add);
+        rebuilt.resort();
+
+        List<UUID> pending;
+        lock.writeLock().lock();
+        try {
+            state = rebuilt;
+            rebuilding = false;
+            pending = new ArrayList<>(changedDuringRebuild);
+            changedDuringRebuild.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        pending.forEach(this::refresh);
+        log.debug("商品筛选索引已全量重建，共 {} 个商品，耗时 {} ms。",
+                rebuilt.docIdByProduct.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 商品写入事务提交后，从数据库重新读取该商品并更新索引；商品已不存在则从索引中删除。
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isAll()) {
+            rebuild();
+            return;
+        }
+        refresh(event.productId());
+    }
+
+    private void refresh(UUID productId) {
+        Product product = productRepository.findById(productId).orElse(null);
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                changedDuringRebuild.add(productId);
+            }
+            if (product == null) {
+                state.remove(productId);
+            } else {
+                state.add(product);
+            }
+            state.resort();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- 查询 ---
+
+    /**
+     * 在已上架商品中按关键词和条件筛选，返回当前页商品、命中总数和各维度取值的计数。
+     * <p>
+     * 某个维度的计数按“除该维度自身外的其余条件”统计，这样用户在已选“Giant”时仍能看到“Trek”有多少件，
+     * 可以直接切换或追加品牌。
+     */
+    public CatalogFacetResult search(CatalogFacetQuery query) {
+        lock.readLock().lock();
+        try {
+            State s = state;
+            // 关键词和价格区间对所有维度的计数都生效，合并为一个固定条件
+            Set<String> terms = CatalogTextAnalyzer.queryTerms(query.text());
+            BitSet fixedBits = priceRange(s, query.minPrice(), query.maxPrice());
+            if (!terms.isEmpty()) {
+                BitSet textBits = matchText(s, terms);
+                if (fixedBits == null) {
+                    fixedBits = textBits;
+                } else {
+                    fixedBits.and(textBits);
+                }
+            }
+
+            Map<String, BitSet> facetBits = new HashMap<>();
+            for (String facet : FACETS) {
+                Set<String> selected = query.selections().get(facet);
+                if (selected == null || selected.isEmpty()) {
+                    continue;
+                }
+                BitSet union = new BitSet();
+                Map<String, BitSet> values = s.postings.get(facet);
+                for (String value : selected) {
+                    BitSet bits = values.get(value);
+                    if (bits != null) {
+                        union.or(bits);
+                    }
+                }
+                facetBits.put(facet, union);
+            }
+
+            BitSet matched = filterExcluding(s, fixedBits, facetBits, null);
+
+            Map<String, Map<String, Integer>> facetCounts = new LinkedHashMap<>();
+            for (String facet : FACETS) {
+                BitSet filter = facetBits.containsKey(facet)
+                        ? filterExcluding(s, fixedBits, facetBits, facet)
+                        : matched;
+                Map<String, Integer> counts = new TreeMap<>();
+                s.postings.get(facet).forEach((value, bits) -> {
+                    BitSet hit = (BitSet) bits.clone();
+                    hit.and(filter);
+                    int count = hit.cardinality();
+                    if (count > 0) {
+                        counts.put(value, count);
+                    }
+                });
+                facetCounts.put(facet, counts);
+            }
+
+            List<Product> products = query.sort() == CatalogFacetQuery.SortOrder.RELEVANCE && !terms.isEmpty()
+                    ? pageByRelevance(s, matched, terms, query)
+                    : page(s, matched, query);
+            return new CatalogFacetResult(products, matched.cardinality(), facetCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet filterExcluding(State s, BitSet fixedBits, Map<String, BitSet> facetBits, String excludedFacet) {
+        BitSet filter = (BitSet) s.onShelf.clone();
+        if (fixedBits != null) {
+            filter.and(fixedBits);
+        }
+        facetBits.forEach((facet, bits) -> {
+            if (!facet.equals(excludedFacet)) {
+                filter.and(bits);
+            }
+        });
+        return filter;
+    }
+
+    // 每个词在任一字段中出现即算命中该词，所有词都命中的文档才算匹配
+    private BitSet matchText(State s, Set<String> terms) {
+        BitSet result = null;
+        for (String term : terms) {
+            BitSet termBits = new BitSet();
+            for (Map<String, BitSet> fieldTerms : s.textPostings.values()) {
+                BitSet bits = fieldTerms.get(term);
+                if (bits != null) {
+                    termBits.or(bits);
+                }
+            }
+            if (result == null) {
+                result = termBits;
+            } else {
+                result.and(termBits);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    // 相关度 = 每个词在各字段命中时的字段权重之和；相关度相同的按新旧排序
+    private List<Product> pageByRelevance(State s, BitSet matched, Set<String> terms, CatalogFacetQuery query) {
+        List<int[]> scored = new ArrayList<>(matched.cardinality());
+        for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+            int score = 0;
+            for (Map.Entry<Function<Product, String>, Integer> field : TEXT_FIELD_WEIGHTS.entrySet()) {
+                Map<String, BitSet> fieldTerms = s.textPostings.get(field.getKey());
+                for (String term : terms) {
+                    BitSet bits = fieldTerms.get(term);
+                    if (bits != null && bits.get(doc)) {
+                        score += field.getValue();
+                    }
+                }
+            }
+            scored.add(new int[]{doc, score});
+        }
+        scored.sort(Comparator.<int[]>comparingInt(e -> -e[1]).thenComparingInt(e -> s.newestRank[e[0]]));
+
+        // 按 long 计算起点并截断到结果集大小，页码很大时不会溢出成负数
+        int from = (int) Math.min((long) query.page() * query.size(), scored.size());
+        int to = Math.min(from + query.size(), scored.size());
+        List<Product> result = new ArrayList<>(to - from);
+        for (int[] entry : scored.subList(from, to)) {
+            result.add(s.docs.get(entry[0]));
+        }
+        return result;
+    }
+
+    // 价格不限时返回 null，避免构造一个全集 BitSet
+    private BitSet priceRange(State s, Integer minPrice, Integer maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return null;
+        }
+        int from = minPrice == null ? 0 : lowerBound(s.sortedPrices, minPrice);
+        // 上界按 long 计算，maxPrice 为 Integer.MAX_VALUE 时加一不会溢出成负数
+        int to = maxPrice == null ? s.sortedPrices.length : lowerBound(s.sortedPrices, maxPrice + 1L);
+        BitSet bits = new BitSet();
+        for (int i = from; i < to; i++) {
+            bits.set(s.docsByPrice[i]);
+        }
+        return bits;
+    }
+
+    // 第一个 >= key 的位置
+    private static int lowerBound(int[] sorted, long key) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private List<Product> page(State s, BitSet matched, CatalogFacetQuery query) {
+        if (matched.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 页码很大时 page * size 超出 int 范围，按 long 计算，超出结果集时自然返回空页
+        long skip = (long) query.page() * query.size();
+        List<Product> result = new ArrayList<>(query.size());
+        boolean byPrice = query.sort() == CatalogFacetQuery.SortOrder.PRICE_ASC
+                || query.sort() == CatalogFacetQuery.SortOrder.PRICE_DESC;
+        int[] order = byPrice ? s.docsByPrice : s.docsByNewest;
+        boolean descending = query.sort() == CatalogFacetQuery.SortOrder.PRICE_DESC;
+        for (int i = 0; i < order.length && result.size() < query.size(); i++) {
+            int doc = order[descending ? order.length - 1 - i : i];
+            if (matched.get(doc) && skip-- <= 0) {
+                result.add(s.docs.get(doc));
+            }
+        }
+        return result;
+    }
+}
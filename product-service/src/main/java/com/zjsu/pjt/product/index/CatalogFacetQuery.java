@@ -0,0 +1,32 @@
+package com.zjsu.pjt.product.index;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 检索条件。关键词中的各个词之间为“与”；同一维度内的多个取值为“或”，不同维度之间为“与”；
+ * 价格区间为闭区间，null 表示不限。
+ *
+ * @param text       全文检索关键词，为空表示不按关键词过滤
+ * @param selections 维度名 -> 选中的取值（维度名见 {@link CatalogFacetIndex#FACETS}）
+ */
+public record CatalogFacetQuery(String text,
+                                Map<String, Set<String>> selections,
+                                Integer minPrice,
+                                Integer maxPrice,
+                                SortOrder sort,
+                                int page,
+                                int size) {
+
+    public enum SortOrder {
+        RELEVANCE, NEWEST, PRICE_ASC, PRICE_DESC;
+
+        // 未指定排序时：有关键词按相关度，否则按新品优先
+        public static SortOrder parse(String value, boolean hasText) {
+            if (value == null || value.isBlank()) {
+                return hasText ? RELEVANCE : NEWEST;
+            }
+            return SortOrder.valueOf(value.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+}
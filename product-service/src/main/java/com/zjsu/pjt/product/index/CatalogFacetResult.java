@@ -0,0 +1,14 @@
+package com.zjsu.pjt.product.index;
+
+import com.zjsu.pjt.product.model.Product;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 筛选结果：当前页商品、命中总数，以及每个维度下各取值的命中数量（用于前端显示筛选项计数）。
+ */
+public record CatalogFacetResult(List<Product> products,
+                                 int total,
+                                 Map<String, Map<String, Integer>> facetCounts) {
+}
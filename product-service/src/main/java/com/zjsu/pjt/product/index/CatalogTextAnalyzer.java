@@ -0,0 +1,98 @@
+package com.zjsu.pjt.product.index;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 商品全文检索的分词器，索引和查询共用同一套规则，保证两边切出的词一致。
+ * <ul>
+ *     <li>先做 NFKC 归一化并转小写，全角字母数字（如“ＴＣＲ”）与半角等价；</li>
+ *     <li>连续的字母/数字作为一个词，如 “tcr”、“105”；建索引时额外写入长度不小于 2 的前缀，支持边输入边搜索；</li>
+ *     <li>连续的中日韩文字按二元组（bigram）切分，如“公路车”切为“公路”“路车”；
+ *     建索引时同时写入单字，使单字查询（如“山”）也能命中；</li>
+ *     <li>其余字符（空格、标点、连字符等）均视为分隔符。</li>
+ * </ul>
+ * 二元切分不依赖词典，对商品名称、型号这类短文本足够，且无需引入额外的分词依赖。
+ */
+public final class CatalogTextAnalyzer {
+
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private CatalogTextAnalyzer() {
+    }
+
+    /**
+     * 建索引时的分词：包含字母数字词的前缀和中日韩单字。
+     */
+    public static Set<String> indexTerms(String text) {
+        return analyze(text, true);
+    }
+
+    /**
+     * 查询时的分词：只产出完整的词和二元组，单个中日韩字符单独成词。
+     */
+    public static Set<String> queryTerms(String text) {
+        return analyze(text, false);
+    }
+
+    private static Set<String> analyze(String text, boolean forIndex) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+
+        int i = 0;
+        int length = normalized.length();
+        while (i < length) {
+            int codePoint = normalized.codePointAt(i);
+            int start = i;
+            if (isCjk(codePoint)) {
+                while (i < length && isCjk(normalized.codePointAt(i))) {
+                    i += Character.charCount(normalized.codePointAt(i));
+                }
+                addCjkTerms(normalized.substring(start, i), forIndex, terms);
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                while (i < length && isWordChar(normalized.codePointAt(i))) {
+                    i += Character.charCount(normalized.codePointAt(i));
+                }
+                String word = normalized.substring(start, i);
+                terms.add(word);
+                if (forIndex) {
+                    for (int end = MIN_PREFIX_LENGTH; end < word.length(); end++) {
+                        terms.add(word.substring(0, end));
+                    }
+                }
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return terms;
+    }
+
+    private static void addCjkTerms(String run, boolean forIndex, Set<String> terms) {
+        int[] chars = run.codePoints().toArray();
+        if (chars.length == 1 || forIndex) {
+            for (int c : chars) {
+                terms.add(new String(Character.toChars(c)));
+            }
+        }
+        for (int k = 0; k + 1 < chars.length; k++) {
+            terms.add(new String(chars, k, 2));
+        }
+    }
+
+    private static boolean isWordChar(int codePoint) {
+        return Character.isLetterOrDigit(codePoint) && !isCjk(codePoint);
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
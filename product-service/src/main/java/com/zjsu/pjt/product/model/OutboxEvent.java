@@ -0,0 +1,57 @@
+package com.zjsu.pjt.product.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 事务发件箱：需要通知其他服务的变更与业务数据在同一个本地事务中写入这里，
+ * 提交后由后台中继批量投递，投递成功即删除，失败按指数退避重投。
+ */
+@Entity
+@Table(name = "outbox_event",
+        indexes = {
+                @Index(name = "idx_outbox_event_next_attempt_at", columnList = "nextAttemptAt"),
+                @Index(name = "idx_outbox_event_aggregate_id", columnList = "aggregateId, id")
+        })
+@Data
+@NoArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id; // 主键，自增顺序即同一对象事件的投递顺序
+
+    @Column(nullable = false)
+    private UUID eventId; // 事件ID，接收方据此去重
+
+    @Column(nullable = false, length = 32)
+    private String eventType; // 事件类型
+
+    @Column(nullable = false)
+    private UUID aggregateId; // 事件所属对象，同一对象的事件按 id 顺序投递
+
+    @Lob
+    @Column(nullable = false)
+    private String payload; // 事件内容（JSON）
+
+    @Column(nullable = false)
+    private int attempts = 0; // 已失败的投递次数
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt; // 下一次可投递的时间
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt; // 写入时间
+
+    public OutboxEvent(UUID eventId, String eventType, UUID aggregateId, String payload) {
+        this.eventId = eventId;
+        this.eventType = eventType;
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
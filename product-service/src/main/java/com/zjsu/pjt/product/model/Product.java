@@ -9,6 +9,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.SourceType;
+import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
 import java.util.UUID;
@@ -22,7 +24,13 @@ import java.util.UUID;
 @Schema(description = "产品实体类")
 @Entity
 @Table(name = "products", indexes = {
-        @Index(name = "idx_product_brand_model", columnList = "brand, model")
+        @Index(name = "idx_product_brand_model", columnList = "brand, model"),
+        @Index(name = "idx_product_on_shelf_category", columnList = "onShelf, category"),
+        // 游标分页按 (createdAt DESC, id DESC) 顺序扫描，以下两个索引让每一页都是一次有界的索引范围扫描
+        @Index(name = "idx_product_on_shelf_created", columnList = "onShelf, createdAt, id"),
+        @Index(name = "idx_product_on_shelf_category_created", columnList = "onShelf, category, createdAt, id"),
+        // 商品变更流按 (updatedAt, id) 顺序读取
+        @Index(name = "idx_product_updated_at", columnList = "updatedAt, id")
 })
 public class Product {
 
@@ -63,10 +71,18 @@ public class Product {
     @Schema(description = "产品图片URL", example = "/images/giant-tcr.jpg")
     private String imageUrl; // 新增产品图片URL字段
 
+    @Column(nullable = false)
+    @Schema(description = "上架状态（库存服务上架状态的本地副本）", example = "true", readOnly = true)
+    private boolean onShelf = false; // 本地上架投影，随上下架操作同步，并定期与库存服务对账
 
 
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt; // 系统生成创建时间
 
+    // 取数据库时钟而非各实例的本地时钟，保证多实例写入时变更流的顺序一致
+    @UpdateTimestamp(source = SourceType.DB)
+    @Schema(description = "最后修改时间（系统自动生成）", readOnly = true)
+    private LocalDateTime updatedAt; // 系统生成的最后修改时间，供其他服务增量同步商品信息
+
 }
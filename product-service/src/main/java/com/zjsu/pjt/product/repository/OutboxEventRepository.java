@@ -0,0 +1,31 @@
+package com.zjsu.pjt.product.repository;
+
+import com.zjsu.pjt.product.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // 已到投递时间的事件，按写入顺序
+    @Query("SELECT o FROM OutboxEvent o WHERE o.nextAttemptAt <= :now ORDER BY o.id")
+    List<OutboxEvent> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // 各对象中仍在退避、尚未到投递时间的最早事件ID：同一对象在它之后的事件本轮不投递，避免乱序
+    @Query("SELECT o.aggregateId, MIN(o.id) FROM OutboxEvent o " +
+            "WHERE o.aggregateId IN :aggregateIds AND o.nextAttemptAt > :now GROUP BY o.aggregateId")
+    List<Object[]> findEarliestWaitingIds(@Param("aggregateIds") Collection<UUID> aggregateIds,
+                                         @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent o SET o.attempts = o.attempts + 1, o.nextAttemptAt = :nextAttemptAt WHERE o.id = :id")
+    int markFailed(@Param("id") Long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+}
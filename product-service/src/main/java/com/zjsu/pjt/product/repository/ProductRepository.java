@@ -2,7 +2,9 @@ package com.zjsu.pjt.product.repository;
 
 import com.zjsu.pjt.product.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.Optional; // 导入 Optional
 
@@ -11,6 +13,8 @@ import java.util.Optional;
 import java.util.UUID;
 import org.springframework.data.domain.Page; // 导入 Page
 import org.springframework.data.domain.Pageable; // 导入 Pageable
+import org.springframework.data.domain.Slice;
+import java.time.LocalDateTime;
 
 /**
  * 产品数据访问
@@ -30,4 +34,67 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
 
 
     Page<Product> findByIdInAndCategory(List<UUID> ids, String category, Pageable pageable);
+
+    // --- 基于本地上架投影的查询，走 idx_product_on_shelf_category 索引，无需跨服务传递ID列表 ---
+
+    List<Product> findByOnShelfTrue();
+
+    List<Product> findByOnShelfTrueAndCategory(String category);
+
+    Page<Product> findByOnShelfTrue(Pageable pageable);
+
+    Page<Product> findByOnShelfTrueAndCategory(String category, Pageable pageable);
+
+    // --- 游标（keyset）分页：按 (createdAt DESC, id DESC) 从上一页末尾继续扫描 ---
+    // 返回 Slice，Spring Data 只多取一行判断是否有下一页，不执行 COUNT 查询
+
+    Slice<Product> findByOnShelfTrueOrderByCreatedAtDescIdDesc(Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE p.onShelf = true " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    Slice<Product> findOnShelfAfter(@Param("createdAt") LocalDateTime createdAt,
+                                    @Param("id") UUID id,
+                                    Pageable pageable);
+
+    Slice<Product> findByOnShelfTrueAndCategoryOrderByCreatedAtDescIdDesc(String category, Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE p.onShelf = true AND p.category = :category " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    Slice<Product> findOnShelfByCategoryAfter(@Param("category") String category,
+                                              @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") UUID id,
+                                              Pageable pageable);
+
+    // --- 商品变更流：供其他服务维护商品信息副本 ---
+
+    // 全量同步：按主键顺序分页读取全部商品
+    List<Product> findByIdGreaterThanOrderByIdAsc(UUID afterId, Pageable pageable);
+
+    // 增量同步：读取 (since, afterId) 之后修改过的商品，按 (updatedAt, id) 排序，支持同一时间戳下继续翻页
+    @Query("SELECT p FROM Product p WHERE p.updatedAt > :since " +
+            "OR (p.updatedAt = :since AND p.id > :afterId) ORDER BY p.updatedAt, p.id")
+    List<Product> findChangedAfter(@Param("since") LocalDateTime since,
+                                   @Param("afterId") UUID afterId,
+                                   Pageable pageable);
+
+    // 更新单个商品的本地上架状态
+    @Modifying
+    @Query("UPDATE Product p SET p.onShelf = :onShelf WHERE p.id = :id")
+    int updateOnShelf(@Param("id") UUID id, @Param("onShelf") boolean onShelf);
+
+    // 对账：将库存服务认定为上架、但本地仍为下架的商品标记为上架
+    @Modifying
+    @Query("UPDATE Product p SET p.onShelf = true WHERE p.onShelf = false AND p.id IN :ids")
+    int markOnShelf(@Param("ids") List<UUID> ids);
+
+    // 对账：将本地为上架、但已不在库存服务上架列表中的商品标记为下架
+    @Modifying
+    @Query("UPDATE Product p SET p.onShelf = false WHERE p.onShelf = true AND p.id IN :ids")
+    int markOffShelf(@Param("ids") List<UUID> ids);
+
+    // 对账：按主键顺序分块读取本地上架商品的ID
+    @Query("SELECT p.id FROM Product p WHERE p.onShelf = true AND p.id > :afterId ORDER BY p.id")
+    List<UUID> findOnShelfIdsAfter(@Param("afterId") UUID afterId, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,219 @@
+package com.zjsu.pjt.product.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjsu.pjt.product.client.InventoryClient;
+import com.zjsu.pjt.product.dto.InventoryEvent;
+import com.zjsu.pjt.product.model.OutboxEvent;
+import com.zjsu.pjt.product.repository.OutboxEventRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 发往库存服务的事务发件箱及其中继。
+ * <p>
+ * 业务方法在自己的事务中调用 {@link #enqueue(InventoryEvent)}，事件与业务数据一起提交，接口只需一次本地提交即可返回；
+ * 事务提交后立即唤醒中继，另有定时轮询兜底。中继按写入顺序批量投递，库存服务按 eventId 去重，
+ * 已确认的事件删除，未确认的按指数退避重投；同一商品的事件不会越过仍在退避中的更早事件。
+ * 多个实例的中继可能重复投递同一事件，由库存服务的幂等处理保证只生效一次。
+ */
+@Service
+@Slf4j
+public class InventoryOutbox {
+
+    // 连续失败达到该次数后每次失败都记录错误日志，提示人工检查
+    private static final int ALERT_ATTEMPTS = 10;
+
+    private final OutboxEventRepository outboxRepository;
+    private final InventoryClient inventoryClient;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaction;
+    private final int batchSize;
+    private final long retryBaseMs;
+    private final long retryMaxMs;
+
+    private final ReentrantLock relayLock = new ReentrantLock();
+    private final AtomicBoolean wakeUpRequested = new AtomicBoolean();
+    private final ExecutorService wakeUpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inventory-outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InventoryOutbox(OutboxEventRepository outboxRepository,
+                           InventoryClient inventoryClient,
+                           ObjectMapper objectMapper,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${product.outbox.batch-size:100}") int batchSize,
+                           @Value("${product.outbox.retry-base-ms:1000}") long retryBaseMs,
+                           @Value("${product.outbox.retry-max-ms:300000}") long retryMaxMs) {
+        this.outboxRepository = outboxRepository;
+        this.inventoryClient = inventoryClient;
+        this.objectMapper = objectMapper;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.retryBaseMs = retryBaseMs;
+        this.retryMaxMs = retryMaxMs;
+    }
+
+    /**
+     * 在调用方的事务中写入事件，事务提交后唤醒中继。
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(InventoryEvent event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("库存事件无法序列化: " + event, e);
+        }
+        outboxRepository.save(new OutboxEvent(event.getEventId(), event.getType(), event.getAggregateId(), payload));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                wakeUp();
+            }
+        });
+    }
+
+    private void wakeUp() {
+        if (wakeUpRequested.compareAndSet(false, true)) {
+            wakeUpExecutor.execute(this::relay);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${product.outbox.poll-interval-ms:1000}")
+    public void relay() {
+        if (!relayLock.tryLock()) {
+            // 另一轮投递正在进行，它结束前会检查唤醒标记
+            return;
+        }
+        try {
+            do {
+                wakeUpRequested.set(false);
+                while (relayBatch() == batchSize) {
+                    // 积压时连续投递，直到取不满一批
+                }
+            } while (wakeUpRequested.get());
+        } catch (Exception e) {
+            log.warn("发件箱投递中断，下一轮重试。原因: {}", e.getMessage());
+        } finally {
+            relayLock.unlock();
+        }
+    }
+
+    // 投递一批到期事件，返回本批实际投递的事件数
+    private int relayBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> due = outboxRepository.findDue(now, PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+        List<OutboxEvent> sendable = excludeOutOfOrder(due, now);
+        if (sendable.isEmpty()) {
+            return 0;
+        }
+
+        List<InventoryEvent> events = new ArrayList<>(sendable.size());
+        for (OutboxEvent outboxEvent : sendable) {
+            try {
+                events.add(objectMapper.readValue(outboxEvent.getPayload(), InventoryEvent.class));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("发件箱事件 " + outboxEvent.getEventId() + " 无法解析", e);
+            }
+        }
+
+        Set<UUID> acknowledged = new HashSet<>();
+        try {
+            ResponseEntity<Map<String, Object>> response = inventoryClient.deliverEvents(events);
+            Object data = response.getBody() == null ? null : response.getBody().get("data");
+            if (data instanceof List<?> ids) {
+                for (Object id : ids) {
+                    acknowledged.add(UUID.fromString(String.valueOf(id)));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("投递 {} 个库存事件失败，稍后重投。原因: {}", events.size(), e.getMessage());
+        }
+
+        List<Long> delivered = new ArrayList<>();
+        List<OutboxEvent> failed = new ArrayList<>();
+        for (OutboxEvent outboxEvent : sendable) {
+            if (acknowledged.contains(outboxEvent.getEventId())) {
+                delivered.add(outboxEvent.getId());
+            } else {
+                failed.add(outboxEvent);
+            }
+        }
+        transaction.executeWithoutResult(status -> {
+            if (!delivered.isEmpty()) {
+                outboxRepository.deleteAllByIdInBatch(delivered);
+            }
+            for (OutboxEvent outboxEvent : failed) {
+                outboxRepository.markFailed(outboxEvent.getId(), now.plus(Duration.ofMillis(backoffMs(outboxEvent.getAttempts()))));
+                if (outboxEvent.getAttempts() + 1 >= ALERT_ATTEMPTS) {
+                    log.error("库存事件 {} ({}) 已连续投递失败 {} 次，需要人工检查!", outboxEvent.getEventId(),
+                            outboxEvent.getEventType(), outboxEvent.getAttempts() + 1);
+                }
+            }
+        });
+        return sendable.size();
+    }
+
+    // 去掉同一对象中排在仍在退避的更早事件之后的事件
+    private List<OutboxEvent> excludeOutOfOrder(List<OutboxEvent> due, LocalDateTime now) {
+        Set<UUID> aggregateIds = new HashSet<>();
+        for (OutboxEvent outboxEvent : due) {
+            aggregateIds.add(outboxEvent.getAggregateId());
+        }
+        Map<UUID, Long> earliestWaiting = new HashMap<>();
+        for (Object[] row : outboxRepository.findEarliestWaitingIds(aggregateIds, now)) {
+            earliestWaiting.put((UUID) row[0], (Long) row[1]);
+        }
+        if (earliestWaiting.isEmpty()) {
+            return due;
+        }
+        List<OutboxEvent> sendable = new ArrayList<>(due.size());
+        for (OutboxEvent outboxEvent : due) {
+            Long waitingId = earliestWaiting.get(outboxEvent.getAggregateId());
+            if (waitingId == null || outboxEvent.getId() < waitingId) {
+                sendable.add(outboxEvent);
+            }
+        }
+        return sendable;
+    }
+
+    private long backoffMs(int attempts) {
+        return Math.min(retryMaxMs, retryBaseMs << Math.min(attempts, 20));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wakeUpExecutor.shutdownNow();
+    }
+}
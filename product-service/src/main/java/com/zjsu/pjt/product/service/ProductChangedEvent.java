@@ -0,0 +1,18 @@
+package com.zjsu.pjt.product.service;
+
+import java.util.UUID;
+
+/**
+ * 商品数据（属性或上架状态）发生变化的事件，事务提交后由内存索引等订阅者处理。
+ * productId 为 null 表示批量变更（如上架投影对账），订阅者应整体重建。
+ */
+public record ProductChangedEvent(UUID productId) {
+
+    public static ProductChangedEvent all() {
+        return new ProductChangedEvent(null);
+    }
+
+    public boolean isAll() {
+        return productId == null;
+    }
+}
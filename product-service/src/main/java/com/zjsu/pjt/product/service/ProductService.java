@@ -1,27 +1,49 @@
 package com.zjsu.pjt.product.service;
 
+import com.zjsu.pjt.product.cache.InventoryStockCache;
 import com.zjsu.pjt.product.client.InventoryClient; // 引入Feign客户端
-import com.zjsu.pjt.product.dto.InventoryCreateRequest; // 引入DTO
+import com.zjsu.pjt.product.client.InventoryStockFetcher;
+import com.zjsu.pjt.product.dto.InventoryEvent;
+import com.zjsu.pjt.product.dto.ProductCursorSlice;
+import com.zjsu.pjt.product.dto.ProductSearchResult;
+import com.zjsu.pjt.product.index.CatalogFacetIndex;
+import com.zjsu.pjt.product.index.CatalogFacetQuery;
+import com.zjsu.pjt.product.index.CatalogFacetResult;
 import com.zjsu.pjt.product.exception.BusinessException; // 引入自定义业务异常
 import com.zjsu.pjt.product.model.Product;
 import com.zjsu.pjt.product.exception.ResourceNotFoundException;
 import com.zjsu.pjt.product.repository.ProductRepository;
+import com.zjsu.pjt.product.util.CatalogCursor;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import com.zjsu.pjt.product.dto.ProductDetailDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 @Service
 @Slf4j // 使用Lombok的Slf4j进行日志记录
 public class ProductService {
@@ -35,6 +57,40 @@ public class ProductService {
     @Autowired
     private InventoryClient inventoryClient;
 
+    @Autowired
+    private InventoryStockFetcher inventoryStockFetcher;
+
+    // 库存近端缓存，页面浏览优先走内存
+    @Autowired
+    private InventoryStockCache inventoryStockCache;
+
+    // 商品多维筛选的内存索引
+    @Autowired
+    private CatalogFacetIndex catalogFacetIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // 解析上架ID列表的原始响应体
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 需要通知库存服务的变更写入发件箱，随本地事务提交后异步投递
+    @Autowired
+    private InventoryOutbox inventoryOutbox;
+
+    // 游标分页单页上限，防止客户端一次拉取过多
+    private static final int MAX_SCROLL_SIZE = 100;
+
+    // 批量查询商品时单条 SQL 的 IN 参数上限
+    private static final int BATCH_CHUNK_SIZE = 1000;
+
+    // 变更流翻页的起始游标，比任何商品ID都小
+    private static final UUID MIN_UUID = new UUID(0L, 0L);
+
+    // 最近一次对账成功时库存服务上架快照的版本，版本不变时跳过对账
+    private volatile String reconciledOnShelfVersion;
+
 
     public List<ProductDetailDTO> findAllProductsWithStock() {
         List<Product> allProducts = productRepository.findAll();
@@ -42,7 +98,7 @@ public class ProductService {
             return Collections.emptyList();
         }
         List<UUID> allProductIds = allProducts.stream().map(Product::getId).collect(Collectors.toList());
-        Map<UUID, Integer> stockMap = inventoryClient.getStocksByProductIds(allProductIds);
+        Map<UUID, Integer> stockMap = inventoryStockFetcher.fetch(allProductIds);
 
         return allProducts.stream()
                 .map(product -> new ProductDetailDTO(product, stockMap.getOrDefault(product.getId(), 0)))
@@ -50,27 +106,49 @@ public class ProductService {
     }
 
     /**
-     * 新增商品，并通知库存服务创建记录 (已使用Feign改造)
+     * 按ID列表批量查询商品，供其他服务一次性获取多个商品信息。
+     * 重复ID会被去重，不存在的ID直接忽略；超长列表按 BATCH_CHUNK_SIZE 分块查询。
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getProductsByIds(List<UUID> ids) {
+        List<UUID> distinctIds = ids.stream().distinct().collect(Collectors.toList());
+        List<Product> products = new ArrayList<>(distinctIds.size());
+        for (int from = 0; from < distinctIds.size(); from += BATCH_CHUNK_SIZE) {
+            products.addAll(productRepository.findAllById(
+                    distinctIds.subList(from, Math.min(from + BATCH_CHUNK_SIZE, distinctIds.size()))));
+        }
+        return products;
+    }
+
+    /**
+     * 商品变更流。since 为空时按主键分页返回全部商品（全量同步），
+     * 否则返回 (since, afterId) 之后修改过的商品（增量同步）。被删除的商品不会出现在变更流中。
+     *
+     * @param afterId 上一页最后一个商品的ID，第一页为空
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getProductChanges(LocalDateTime since, UUID afterId, int limit) {
+        UUID cursorId = afterId == null ? MIN_UUID : afterId;
+        PageRequest pageable = PageRequest.of(0, Math.min(Math.max(limit, 1), BATCH_CHUNK_SIZE));
+        if (since == null) {
+            return productRepository.findByIdGreaterThanOrderByIdAsc(cursorId, pageable);
+        }
+        return productRepository.findChangedAfter(since, cursorId, pageable);
+    }
+
+    /**
+     * 新增商品。库存记录由发件箱中继在本事务提交后通知库存服务创建，库存服务暂时不可用不影响新增商品。
      */
     @Transactional
     public Product createProduct(Product product) {
+        // 新商品在库存服务中默认为下架，本地投影保持一致，不接受客户端传入的上架状态
+        product.setOnShelf(false);
         Product savedProduct = productRepository.save(product);
 
-        try {
-            log.info("正在调用库存服务为新商品创建库存记录, productId: {}", savedProduct.getId());
-            // 使用DTO，更类型安全
-            InventoryCreateRequest request = new InventoryCreateRequest(savedProduct.getId(), 0);
-            ResponseEntity<Map<String, Object>> responseEntity = inventoryClient.createInventoryRecord(request);
-
-            if (responseEntity.getBody() != null && responseEntity.getBody().containsKey("port")) {
-                log.info("请求 Inventory Service 创建库存记录成功, 实例端口: {}", responseEntity.getBody().get("port"));
-            }
-        } catch (Exception e) {
-            log.error("错误：调用库存服务创建记录失败！商品ID: {}. 原因: {}", savedProduct.getId(), e.getMessage());
-            // 抛出异常以回滚事务
-            throw new BusinessException("创建商品成功，但通知库存服务失败！", HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        log.info("新商品 {} 已保存，库存记录创建事件写入发件箱", savedProduct.getId());
+        inventoryOutbox.enqueue(InventoryEvent.productCreated(savedProduct.getId()));
 
+        eventPublisher.publishEvent(new ProductChangedEvent(savedProduct.getId()));
         return savedProduct;
     }
 
@@ -90,11 +168,13 @@ public class ProductService {
         existingProduct.setColor(productDetails.getColor());
         existingProduct.setPrice(productDetails.getPrice());
 
-        return productRepository.save(existingProduct);
+        Product savedProduct = productRepository.save(existingProduct);
+        eventPublisher.publishEvent(new ProductChangedEvent(id));
+        return savedProduct;
     }
 
     /**
-     * 删除商品，并通知库存服务删除记录 (已使用Feign改造)
+     * 删除商品。库存记录由发件箱中继在本事务提交后通知库存服务删除。
      */
     @Transactional
     public void deleteProduct(UUID id) {
@@ -104,15 +184,9 @@ public class ProductService {
 
         productRepository.deleteById(id);
 
-        try {
-            log.info("正在通知库存服务删除商品 {} 的库存记录。", id);
-            inventoryClient.deleteInventoryRecord(id);
-            log.info("成功通知库存服务删除商品 {} 的库存记录。", id);
-        } catch (Exception e) {
-            log.error("错误：调用库存服务删除记录失败！商品ID: {}. 原因: {}", id, e.getMessage());
-            // 抛出异常以回滚商品删除操作
-            throw new BusinessException("删除商品成功，但通知库存服务失败！", HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        log.info("商品 {} 已删除，库存记录删除事件写入发件箱", id);
+        inventoryOutbox.enqueue(InventoryEvent.productDeleted(id));
+        eventPublisher.publishEvent(new ProductChangedEvent(id));
     }
 
 
@@ -120,45 +194,34 @@ public class ProductService {
 
     /**
      * 按分类查询上架商品（分页 + 库存填充）
-     * 逻辑：先获取所有上架ID，再在这些ID中按分类筛选并分页
+     * 逻辑：直接基于本地上架投影按分类分页，不再从库存服务拉取全部上架ID
      */
+    @Transactional(readOnly = true)
     public Page<ProductDetailDTO> findProductsByCategoryWithStock(String category, Pageable pageable) {
 
-        // 1. 获取所有上架商品的ID列表 (从 Inventory Service)
-        List<UUID> onShelfProductIds = getOnShelfProductIdsFromInventoryService();
-
-        if (onShelfProductIds.isEmpty()) {
-            return Page.empty(pageable);
-        }
-
-        // 2. 从数据库查询：ID 在上架列表中，且分类匹配 (需要 Repository 支持)
-        // 你的 Repository 可能需要加一个方法：findByIdInAndCategory(List<UUID> ids, String category, Pageable pageable)
-        // 如果没有这个方法，请先去 Repository 加上
-        Page<Product> productPage = productRepository.findByIdInAndCategory(onShelfProductIds, category, pageable);
+        // 1. 从本地投影查询：已上架且分类匹配
+        Page<Product> productPage = productRepository.findByOnShelfTrueAndCategory(category, pageable);
 
         if (productPage.isEmpty()) {
             return Page.empty(pageable);
         }
 
-        // 3. 提取当前页的商品ID
+        // 2. 提取当前页的商品ID
         List<UUID> productIdsOnPage = productPage.getContent().stream()
                 .map(Product::getId)
                 .collect(Collectors.toList());
 
-        // 4. 批量查询库存
+        // 3. 批量查询库存
         Map<UUID, Integer> stockMap;
         try {
-            log.info("正在批量调用库存服务获取 {} 个商品的库存 (分类: {})...", productIdsOnPage.size(), category);
-            // 假设 inventoryClient.getStocksByProductIds 返回的是 Map<UUID, Integer>
-            // 注意：如果你的 Client 返回的是 ResponseEntity<Map...>，请在这里加上 .getBody()
-            // 根据你上面的代码 findAllProductsWithStock 来看，Client 直接返回了 Map，所以这里保持一致
-            stockMap = inventoryClient.getStocksByProductIds(productIdsOnPage);
+            log.info("正在批量获取 {} 个商品的库存 (分类: {})...", productIdsOnPage.size(), category);
+            stockMap = inventoryStockCache.getStocks(productIdsOnPage);
         } catch (Exception e) {
             log.error("获取库存失败", e);
             stockMap = new HashMap<>(); // 降级处理
         }
 
-        // 5. 组装 DTO
+        // 4. 组装 DTO
         Map<UUID, Integer> finalStockMap = stockMap;
         List<ProductDetailDTO> dtos = productPage.getContent().stream()
                 .map(product -> new ProductDetailDTO(product, finalStockMap.getOrDefault(product.getId(), 0)))
@@ -184,40 +247,33 @@ public class ProductService {
             log.error("错误：调用库存服务更新商品状态失败！商品ID: {}. 原因: {}", productId, e.getMessage());
             throw new BusinessException("调用库存服务失败！", HttpStatus.INTERNAL_SERVER_ERROR);
         }
+        // 库存服务确认后，同步更新本地上架投影
+        productRepository.updateOnShelf(productId, onShelf);
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
     }
 
     /**
      * 查询所有上架商品 (已使用Feign改造)
      */
     public List<Product> findOnShelfProducts() {
-        List<UUID> onShelfProductIds = getOnShelfProductIdsFromInventoryService();
-        if (onShelfProductIds.isEmpty()) {
-            return Collections.emptyList();
-        }
-        return productRepository.findAllById(onShelfProductIds);
+        return productRepository.findByOnShelfTrue();
     }
     @Transactional(readOnly = true)
     public Page<ProductDetailDTO> findOnShelfProductsWithStock(Pageable pageable) {
-        // 1. 获取所有上架商品的ID列表
-        List<UUID> onShelfProductIds = getOnShelfProductIdsFromInventoryService();
-        if (onShelfProductIds.isEmpty()) {
-            return Page.empty(pageable);
-        }
-
-        // 2. 根据ID列表进行分页查询商品
-        Page<Product> productPage = productRepository.findByIdIn(onShelfProductIds, pageable);
+        // 1. 基于本地上架投影进行分页查询，一次索引查询即可
+        Page<Product> productPage = productRepository.findByOnShelfTrue(pageable);
         List<Product> productsOnPage = productPage.getContent();
 
         if (productsOnPage.isEmpty()) {
             return Page.empty(pageable);
         }
 
-        // 3. 提取当前页的商品ID，并批量获取库存
+        // 2. 提取当前页的商品ID，并批量获取库存
         List<UUID> productIdsOnPage = productsOnPage.stream().map(Product::getId).collect(Collectors.toList());
         Map<UUID, Integer> stockMap;
         try {
-            log.info("正在批量调用库存服务获取 {} 个商品的库存...", productIdsOnPage.size());
-            stockMap = inventoryClient.getStocksByProductIds(productIdsOnPage);
+            log.info("正在批量获取 {} 个商品的库存...", productIdsOnPage.size());
+            stockMap = inventoryStockCache.getStocks(productIdsOnPage);
             log.info("批量获取库存成功。");
         } catch (Exception e) {
             log.error("错误：批量调用库存服务失败！原因: {}", e.getMessage());
@@ -225,38 +281,232 @@ public class ProductService {
             stockMap = Collections.emptyMap();
         }
 
-        // 4. 组装成DTO列表
+        // 3. 组装成DTO列表
         final Map<UUID, Integer> finalStockMap = stockMap; // effectively final for lambda
         List<ProductDetailDTO> dtos = productsOnPage.stream()
                 .map(product -> new ProductDetailDTO(product, finalStockMap.getOrDefault(product.getId(), 0)))
                 .collect(Collectors.toList());
 
-        // 5. 使用 PageImpl 创建并返回最终的分页结果
+        // 4. 使用 PageImpl 创建并返回最终的分页结果
         return new PageImpl<>(dtos, pageable, productPage.getTotalElements());
     }
 
+    /**
+     * 游标分页查询上架商品（无限滚动）。
+     * 无论翻到多深，每页都是从游标位置开始的一次索引范围扫描，且不执行 COUNT 查询。
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    @Transactional(readOnly = true)
+    public ProductCursorSlice scrollOnShelfProductsWithStock(String cursor, int size) {
+        Pageable pageable = PageRequest.of(0, clampScrollSize(size));
+        Slice<Product> slice;
+        if (cursor == null || cursor.isBlank()) {
+            slice = productRepository.findByOnShelfTrueOrderByCreatedAtDescIdDesc(pageable);
+        } else {
+            CatalogCursor after = CatalogCursor.decode(cursor);
+            slice = productRepository.findOnShelfAfter(after.createdAt(), after.id(), pageable);
+        }
+        return toCursorSlice(slice);
+    }
+
+    /**
+     * 按分类游标分页查询上架商品（无限滚动）。
+     */
+    @Transactional(readOnly = true)
+    public ProductCursorSlice scrollProductsByCategoryWithStock(String category, String cursor, int size) {
+        Pageable pageable = PageRequest.of(0, clampScrollSize(size));
+        Slice<Product> slice;
+        if (cursor == null || cursor.isBlank()) {
+            slice = productRepository.findByOnShelfTrueAndCategoryOrderByCreatedAtDescIdDesc(category, pageable);
+        } else {
+            CatalogCursor after = CatalogCursor.decode(cursor);
+            slice = productRepository.findOnShelfByCategoryAfter(category, after.createdAt(), after.id(), pageable);
+        }
+        return toCursorSlice(slice);
+    }
+
+    private int clampScrollSize(int size) {
+        if (size <= 0) {
+            throw new BusinessException("每页数量必须大于0", HttpStatus.BAD_REQUEST);
+        }
+        return Math.min(size, MAX_SCROLL_SIZE);
+    }
+
+    private ProductCursorSlice toCursorSlice(Slice<Product> slice) {
+        List<Product> products = slice.getContent();
+        if (products.isEmpty()) {
+            return new ProductCursorSlice(Collections.emptyList(), slice.getSize(), false, null);
+        }
+
+        List<UUID> productIds = products.stream().map(Product::getId).collect(Collectors.toList());
+        Map<UUID, Integer> stockMap;
+        try {
+            stockMap = inventoryStockCache.getStocks(productIds);
+        } catch (Exception e) {
+            log.error("错误：批量获取库存失败！原因: {}", e.getMessage());
+            stockMap = Collections.emptyMap(); // 降级：库存显示为0
+        }
+
+        final Map<UUID, Integer> finalStockMap = stockMap;
+        List<ProductDetailDTO> dtos = products.stream()
+                .map(product -> new ProductDetailDTO(product, finalStockMap.getOrDefault(product.getId(), 0)))
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            Product last = products.get(products.size() - 1);
+            nextCursor = new CatalogCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new ProductCursorSlice(dtos, slice.getSize(), slice.hasNext(), nextCursor);
+    }
+
+    /**
+     * 全文检索 + 多维筛选上架商品：检索、筛选、计数和分页全部在内存索引中完成，只有当前页的库存需要查询。
+     *
+     * @param keyword    关键词，匹配品牌、型号、分类、变速系统、颜色，支持中文
+     * @param selections 维度名 -> 选中取值，同一维度内为“或”，不同维度间为“与”
+     * @param sort       relevance（有关键词时默认）、newest（无关键词时默认）、price_asc 或 price_desc
+     */
+    public ProductSearchResult searchProducts(String keyword,
+                                              Map<String, Set<String>> selections,
+                                              Integer minPrice, Integer maxPrice,
+                                              String sort, int page, int size) {
+        if (page < 0) {
+            throw new BusinessException("页码不能为负数", HttpStatus.BAD_REQUEST);
+        }
+        CatalogFacetQuery.SortOrder sortOrder;
+        try {
+            sortOrder = CatalogFacetQuery.SortOrder.parse(sort, keyword != null && !keyword.isBlank());
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("不支持的排序方式: " + sort, HttpStatus.BAD_REQUEST);
+        }
+        int pageSize = clampScrollSize(size);
+
+        CatalogFacetResult result = catalogFacetIndex.search(
+                new CatalogFacetQuery(keyword, selections, minPrice, maxPrice, sortOrder, page, pageSize));
+
+        List<ProductDetailDTO> dtos = Collections.emptyList();
+        if (!result.products().isEmpty()) {
+            List<UUID> productIds = result.products().stream().map(Product::getId).collect(Collectors.toList());
+            Map<UUID, Integer> stockMap;
+            try {
+                stockMap = inventoryStockCache.getStocks(productIds);
+            } catch (Exception e) {
+                log.error("错误：批量获取库存失败！原因: {}", e.getMessage());
+                stockMap = Collections.emptyMap(); // 降级：库存显示为0
+            }
+            final Map<UUID, Integer> finalStockMap = stockMap;
+            dtos = result.products().stream()
+                    .map(product -> new ProductDetailDTO(product, finalStockMap.getOrDefault(product.getId(), 0)))
+                    .collect(Collectors.toList());
+        }
+        return new ProductSearchResult(dtos, result.total(), page, pageSize, result.facetCounts());
+    }
+
     /**
      * 按分类查询上架商品 (已使用Feign改造)
      */
     public List<Product> findOnShelfProductsByCategory(String category) {
-        List<UUID> onShelfProductIds = getOnShelfProductIdsFromInventoryService();
-        if (onShelfProductIds.isEmpty()) {
-            return Collections.emptyList();
+        return productRepository.findByOnShelfTrueAndCategory(category);
+    }
+
+    /**
+     * 定期与库存服务对账本地上架投影。
+     * 正常情况下上下架都经过 updateOnShelfStatus 同步写入本地；
+     * 对账只用于修正绕过商品服务直接修改库存服务、或同步写入失败造成的偏差，不在页面请求路径上执行。
+     * <p>
+     * 以上次对账成功时的快照版本发起条件请求，库存服务返回 304（或版本相同）则跳过；否则按主键分块扫描本地上架商品，
+     * 每条 UPDATE 的 IN 列表不超过 BATCH_CHUNK_SIZE，不会把整个上架集合塞进一条 SQL。
+     */
+    @Scheduled(initialDelayString = "${product.on-shelf.sync-initial-delay-ms:30000}",
+            fixedDelayString = "${product.on-shelf.sync-interval-ms:60000}")
+    @Transactional
+    public void reconcileOnShelfProjection() {
+        Optional<OnShelfSnapshot> remote = getOnShelfProductIdsFromInventoryService();
+        if (remote.isEmpty()) {
+            // 库存服务不可用时保留本地投影，避免把所有商品误判为下架
+            log.warn("上架投影对账跳过：无法从库存服务获取上架商品ID列表。");
+            return;
+        }
+        String version = remote.get().version();
+        if (version != null && version.equals(reconciledOnShelfVersion)) {
+            return;
+        }
+
+        Set<UUID> onShelfIds = new HashSet<>(remote.get().productIds());
+        // 1. 本地为上架、但已不在上架集合中的商品逐块标记为下架，同时记下本地的上架集合
+        Set<UUID> localOnShelfIds = new HashSet<>();
+        int unpublished = 0;
+        UUID cursor = MIN_UUID;
+        List<UUID> chunk;
+        do {
+            chunk = productRepository.findOnShelfIdsAfter(cursor, PageRequest.of(0, BATCH_CHUNK_SIZE));
+            List<UUID> stale = new ArrayList<>();
+            for (UUID id : chunk) {
+                localOnShelfIds.add(id);
+                if (!onShelfIds.contains(id)) {
+                    stale.add(id);
+                }
+            }
+            if (!stale.isEmpty()) {
+                unpublished += productRepository.markOffShelf(stale);
+            }
+            if (!chunk.isEmpty()) {
+                cursor = chunk.get(chunk.size() - 1);
+            }
+        } while (chunk.size() == BATCH_CHUNK_SIZE);
+
+        // 2. 上架集合中本地尚未上架的商品逐块标记为上架（本地不存在的ID不会被更新）
+        List<UUID> missing = onShelfIds.stream().filter(id -> !localOnShelfIds.contains(id)).toList();
+        int published = 0;
+        for (int from = 0; from < missing.size(); from += BATCH_CHUNK_SIZE) {
+            published += productRepository.markOnShelf(missing.subList(from, Math.min(from + BATCH_CHUNK_SIZE, missing.size())));
+        }
+
+        if (published > 0 || unpublished > 0) {
+            log.info("上架投影对账完成：修正为上架 {} 条，修正为下架 {} 条。", published, unpublished);
+            eventPublisher.publishEvent(ProductChangedEvent.all());
+        }
+        if (version != null) {
+            // 事务提交后才记下版本，提交失败时下一轮仍会完整对账
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reconciledOnShelfVersion = version;
+                }
+            });
         }
-        // 使用JPA派生查询
-        return productRepository.findByIdInAndCategory(onShelfProductIds, category);
+    }
+
+    // 库存服务返回的上架商品ID快照；version 为快照版本（与 ETag 一致），旧版本的库存服务不返回时为 null。
+    // 库存服务返回 304 时 productIds 为 null，version 即上次对账的版本
+    private record OnShelfSnapshot(String version, List<UUID> productIds) {
     }
 
     // --- 私有辅助方法，用于和 inventory-service 通信 (已使用Feign改造) ---
-    private List<UUID> getOnShelfProductIdsFromInventoryService() {
-        try {
-            log.info("正在调用库存服务获取上架商品ID列表...");
-            ResponseEntity<Map<String, Object>> responseEntity = inventoryClient.getOnShelfProductIds();
-            Map<String, Object> responseBody = responseEntity.getBody();
+    // 以上次对账的版本发起条件请求，上架集合未变化时库存服务返回 304，不再传输完整ID列表。
+    // 返回 Optional.empty() 表示调用失败或触发了降级，调用方需与“确实没有上架商品”区分开
+    private Optional<OnShelfSnapshot> getOnShelfProductIdsFromInventoryService() {
+        String knownVersion = reconciledOnShelfVersion;
+        try (Response response = inventoryClient.getOnShelfProductIds(knownVersion)) {
+            if (response == null) {
+                log.warn("库存服务触发降级，上架商品ID列表不可信。");
+                return Optional.empty();
+            }
+            if (response.status() == HttpStatus.NOT_MODIFIED.value()) {
+                return Optional.of(new OnShelfSnapshot(knownVersion, null));
+            }
+            if (response.status() != HttpStatus.OK.value() || response.body() == null) {
+                log.warn("调用库存服务获取上架商品ID列表失败，状态码: {}", response.status());
+                return Optional.empty();
+            }
 
+            Map<String, Object> responseBody = objectMapper.readValue(response.body().asInputStream(),
+                    new TypeReference<Map<String, Object>>() {});
             if (responseBody == null) {
                 log.warn("调用库存服务获取上架商品ID列表时返回了空的响应体！");
-                return Collections.emptyList();
+                return Optional.empty();
             }
 
             log.info("请求 Inventory Service 成功, 实例详情: {}", responseBody.get("port"));
@@ -266,15 +516,16 @@ public class ProductService {
 
             if (idStringList == null) {
                 log.warn("响应体中缺少 'data' 字段或其值为null！");
-                return Collections.emptyList();
+                return Optional.empty();
             }
 
-            return idStringList.stream().map(UUID::fromString).collect(Collectors.toList());
+            Object version = responseBody.get("version");
+            return Optional.of(new OnShelfSnapshot(version == null ? null : version.toString(),
+                    idStringList.stream().map(UUID::fromString).collect(Collectors.toList())));
 
         } catch (Exception e) {
             log.error("错误：调用库存服务获取上架商品ID列表失败！原因: {}", e.getMessage());
-            // 在查询场景下，服务失败不应中断整个应用，返回空列表是合理的降级策略
-            return Collections.emptyList();
+            return Optional.empty();
         }
     }
 }
@@ -0,0 +1,39 @@
+package com.zjsu.pjt.product.util;
+
+import com.zjsu.pjt.product.exception.BusinessException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * 商品目录的游标（keyset 分页的续读令牌）。
+ * <p>
+ * 目录按 (createdAt DESC, id DESC) 排序，游标记录上一页最后一条商品的这两个字段，
+ * 下一页直接从该位置之后开始扫描索引，不需要 OFFSET，也不需要 COUNT。
+ * 对外以 Base64URL 编码的不透明字符串出现，客户端只需原样回传。
+ */
+public record CatalogCursor(LocalDateTime createdAt, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析客户端回传的游标。格式不合法时抛出 400，而不是退回第一页，避免前端无限滚动时重复加载。
+     */
+    public static CatalogCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int split = raw.indexOf(SEPARATOR);
+            return new CatalogCursor(LocalDateTime.parse(raw.substring(0, split)), UUID.fromString(raw.substring(split + 1)));
+        } catch (RuntimeException e) {
+            throw new BusinessException("无效的分页游标: " + token, HttpStatus.BAD_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.zjsu.pjt.product.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 批量库存接口的紧凑二进制编码（Content-Type: application/x-stock-batch）。
+ * <p>
+ * 请求体：N 个商品ID，每个ID为 16 字节（高64位 + 低64位，大端序），无分隔符。<br>
+ * 响应体：每条记录为 16 字节商品ID + 变长整数（varint，LEB128）编码的库存数量。
+ * <p>
+ * 与 JSON 相比，每个ID约从 40 字节文本降为 16 字节，库存通常只占 1~2 字节，且无需 Jackson 解析。
+ * 库存服务中有一份相同格式的实现，修改格式时两边需同步。
+ */
+public final class StockBatchCodec {
+
+    public static final String MEDIA_TYPE = "application/x-stock-batch";
+
+    private static final int UUID_BYTES = 16;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private StockBatchCodec() {
+    }
+
+    public static byte[] encodeIds(Collection<UUID> productIds) {
+        ByteBuffer buffer = ByteBuffer.allocate(productIds.size() * UUID_BYTES);
+        for (UUID id : productIds) {
+            buffer.putLong(id.getMostSignificantBits());
+            buffer.putLong(id.getLeastSignificantBits());
+        }
+        return buffer.array();
+    }
+
+    public static List<UUID> decodeIds(byte[] body) {
+        if (body.length % UUID_BYTES != 0) {
+            throw new IllegalArgumentException("请求体长度必须是16的整数倍，实际为 " + body.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        List<UUID> ids = new ArrayList<>(body.length / UUID_BYTES);
+        while (buffer.hasRemaining()) {
+            ids.add(new UUID(buffer.getLong(), buffer.getLong()));
+        }
+        return ids;
+    }
+
+    public static byte[] encodeStocks(Map<UUID, Integer> stocks) {
+        ByteBuffer buffer = ByteBuffer.allocate(stocks.size() * (UUID_BYTES + MAX_VARINT_BYTES));
+        for (Map.Entry<UUID, Integer> entry : stocks.entrySet()) {
+            buffer.putLong(entry.getKey().getMostSignificantBits());
+            buffer.putLong(entry.getKey().getLeastSignificantBits());
+            writeVarint(buffer, entry.getValue());
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    public static Map<UUID, Integer> decodeStocks(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        Map<UUID, Integer> stocks = new HashMap<>();
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < UUID_BYTES + 1) {
+                throw new IllegalArgumentException("响应体在偏移 " + buffer.position() + " 处被截断");
+            }
+            UUID id = new UUID(buffer.getLong(), buffer.getLong());
+            stocks.put(id, readVarint(buffer));
+        }
+        return stocks;
+    }
+
+    // 按无符号32位写出，负数占满5字节，读回时仍能还原
+    private static void writeVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new IllegalArgumentException("varint 被截断");
+            }
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint 超过5字节");
+    }
+}